@@ -0,0 +1,84 @@
+package com.booking.hotel.config;
+
+import com.booking.hotel.datasource.ReadWriteRoutingDataSource;
+import com.booking.hotel.datasource.ReplicaLagMonitor;
+import com.booking.hotel.datasource.ReplicaProperties;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces the data source of Spring Boot with one that sends the read-only transactions to the read replicas
+ * of booking.replica.urls. The primary database keeps the spring.datasource properties, and Flyway,
+ * the data scripts and everything outside of a read-only transaction use it.
+ */
+@Configuration
+@ConditionalOnProperty(name = "booking.replica.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReadWriteRoutingDataSource routingDataSource(HikariDataSource primaryDataSource,
+                                                       DataSourceProperties dataSourceProperties,
+                                                       ReplicaProperties replicaProperties,
+                                                       MeterRegistry meterRegistry) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        List<String> urls = replicaProperties.getUrls();
+        for (int i = 0; i < urls.size(); i++) {
+            String name = "replica-" + i;
+            replicas.put(name, replicaPool(primaryDataSource.getPoolName() + "-" + name, urls.get(i),
+                    dataSourceProperties, replicaProperties, meterRegistry));
+        }
+        return new ReadWriteRoutingDataSource(primaryDataSource, replicas, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(ReadWriteRoutingDataSource routingDataSource,
+                                               ReplicaProperties replicaProperties) {
+        return new ReplicaLagMonitor(routingDataSource, replicaProperties);
+    }
+
+    /**
+     * A pool that starts even when the replica is down, which the lag monitor then reports.
+     */
+    private static HikariDataSource replicaPool(String poolName, String url, DataSourceProperties dataSourceProperties,
+                                                ReplicaProperties replicaProperties, MeterRegistry meterRegistry) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(poolName);
+        config.setJdbcUrl(url);
+        config.setDriverClassName(dataSourceProperties.determineDriverClassName());
+        config.setUsername(replicaProperties.getUsername() != null
+                ? replicaProperties.getUsername() : dataSourceProperties.determineUsername());
+        config.setPassword(replicaProperties.getPassword() != null
+                ? replicaProperties.getPassword() : dataSourceProperties.determinePassword());
+        config.setMaximumPoolSize(replicaProperties.getMaximumPoolSize());
+        config.setReadOnly(true);
+        config.setInitializationFailTimeout(-1);
+        config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return new HikariDataSource(config);
+    }
+}
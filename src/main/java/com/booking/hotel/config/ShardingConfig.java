@@ -0,0 +1,85 @@
+package com.booking.hotel.config;
+
+import com.booking.hotel.sharding.BookingSequence;
+import com.booking.hotel.sharding.ShardMap;
+import com.booking.hotel.sharding.ShardRingStore;
+import com.booking.hotel.sharding.ShardedBookingRepository;
+import com.booking.hotel.sharding.ShardedBookingMigration;
+import com.booking.hotel.sharding.ShardingProperties;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Creates a pool for every shard of booking.sharding.shards, migrates its schema from db/shard and puts the
+ * shards of the stored ring on the hash ring, or the active shards when no ring is stored yet.
+ * The sharded repository is the primary source of the booking aggregates, and the bookings get their ids
+ * from the sequence of the main database.
+ */
+@Configuration
+@ConditionalOnProperty(name = "booking.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean
+    public ShardRingStore shardRingStore(JdbcTemplate jdbcTemplate) {
+        return new ShardRingStore(jdbcTemplate);
+    }
+
+    @Bean
+    @Primary
+    public ShardedBookingRepository shardedBookingRepository(ShardingProperties properties,
+                                                             ShardRingStore shardRingStore,
+                                                             MeterRegistry meterRegistry) {
+        Map<String, DataSource> dataSources = new LinkedHashMap<>();
+        for (ShardingProperties.Shard shard : properties.getShards()) {
+            HikariDataSource dataSource = shardPool(shard, properties, meterRegistry);
+            Flyway.configure().dataSource(dataSource).locations("classpath:db/shard").load().migrate();
+            dataSources.put(shard.getName(), dataSource);
+        }
+        List<String> activeShards = properties.getShards().stream()
+                .filter(ShardingProperties.Shard::isActive)
+                .map(ShardingProperties.Shard::getName)
+                .collect(Collectors.toList());
+        ShardMap shardMap = new ShardMap(shardRingStore.load(activeShards), properties.getVirtualNodes());
+        return new ShardedBookingRepository(dataSources, shardMap, shardRingStore,
+                Executors.newFixedThreadPool(properties.getThreads(), new CustomizableThreadFactory("shard-")));
+    }
+
+    @Bean
+    public BookingSequence bookingSequence(JdbcTemplate jdbcTemplate) {
+        return new BookingSequence(jdbcTemplate);
+    }
+
+    @Bean
+    public ShardedBookingMigration shardedBookingMigration(ShardedBookingRepository shardedBookingRepository,
+                                                           JdbcTemplate jdbcTemplate) {
+        return new ShardedBookingMigration(shardedBookingRepository, jdbcTemplate);
+    }
+
+    private static HikariDataSource shardPool(ShardingProperties.Shard shard, ShardingProperties properties,
+                                              MeterRegistry meterRegistry) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("booking-shard-" + shard.getName());
+        config.setJdbcUrl(shard.getUrl());
+        config.setUsername(shard.getUsername());
+        config.setPassword(shard.getPassword());
+        config.setMaximumPoolSize(properties.getMaximumPoolSize());
+        config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return new HikariDataSource(config);
+    }
+}
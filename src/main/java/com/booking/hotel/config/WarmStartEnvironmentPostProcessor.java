@@ -0,0 +1,102 @@
+package com.booking.hotel.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+
+/**
+ * Skips the data.sql seeding when the application opens an H2 file database that already holds hotels.
+ * Without it every restart of a file database would insert the sample data again.
+ * <p>
+ * The file alone is not enough, because H2 creates it before data.sql runs: a first start that stops while
+ * seeding leaves a file without data. data.sql inserts the hotels and their bookings in one transaction,
+ * so a database with hotels has been seeded completely, and a database without them is seeded again.
+ * <p>
+ * Only applies when spring.datasource.initialization-mode is not set, and runs after the application
+ * properties have been loaded.
+ */
+public class WarmStartEnvironmentPostProcessor implements EnvironmentPostProcessor, Ordered {
+
+    static final String URL_PROPERTY = "spring.datasource.url";
+    static final String USERNAME_PROPERTY = "spring.datasource.username";
+    static final String PASSWORD_PROPERTY = "spring.datasource.password";
+    static final String INITIALIZATION_MODE_PROPERTY = "spring.datasource.initialization-mode";
+    static final String PROPERTY_SOURCE_NAME = "warmStart";
+
+    private static final String H2_FILE_PREFIX = "jdbc:h2:file:";
+    private static final String MV_STORE_SUFFIX = ".mv.db";
+    private static final String SEEDED_QUERY = "SELECT 1 FROM hotel LIMIT 1";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (environment.containsProperty(INITIALIZATION_MODE_PROPERTY)) {
+            return;
+        }
+        if (isSeeded(environment.getProperty(URL_PROPERTY), environment.getProperty(USERNAME_PROPERTY),
+                environment.getProperty(PASSWORD_PROPERTY))) {
+            environment.getPropertySources().addLast(new MapPropertySource(PROPERTY_SOURCE_NAME,
+                    Collections.singletonMap(INITIALIZATION_MODE_PROPERTY, "never")));
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+
+    /**
+     * Whether the H2 file database of the URL exists and has hotels. The database is opened with IFEXISTS,
+     * so that a missing database is not created here.
+     *
+     * @param url the JDBC URL, may be null
+     * @param username the database user
+     * @param password the database password
+     * @return true when the database has been seeded
+     */
+    static boolean isSeeded(String url, String username, String password) {
+        Path store = storeFile(url);
+        if (store == null || !Files.exists(store)) {
+            return false;
+        }
+        try (Connection connection = DriverManager.getConnection(url + ";IFEXISTS=TRUE", username, password);
+             Statement statement = connection.createStatement();
+             ResultSet hotels = statement.executeQuery(SEEDED_QUERY)) {
+            return hotels.next();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The MVStore file of an H2 file URL.
+     *
+     * @param url the JDBC URL, may be null
+     * @return the file, or null when the URL is not of an H2 file database
+     */
+    static Path storeFile(String url) {
+        if (url == null || !url.startsWith(H2_FILE_PREFIX)) {
+            return null;
+        }
+        String name = url.substring(H2_FILE_PREFIX.length());
+        int settings = name.indexOf(';');
+        if (settings >= 0) {
+            name = name.substring(0, settings);
+        }
+        if (name.startsWith("~")) {
+            name = System.getProperty("user.home") + name.substring(1);
+        }
+        return Paths.get(name + MV_STORE_SUFFIX);
+    }
+}
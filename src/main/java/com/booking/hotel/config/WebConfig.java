@@ -1,21 +1,45 @@
 package com.booking.hotel.config;
 
+import com.booking.hotel.controller.CompletedFutureReturnValueHandler;
 import com.booking.hotel.interceptor.LoggingInterceptor;
+import com.booking.hotel.interceptor.SqlStatementInterceptor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
     private LoggingInterceptor loggingInterceptor;
+    private SqlStatementInterceptor sqlStatementInterceptor;
 
-    public WebConfig(LoggingInterceptor loggingInterceptor) {
+    public WebConfig(LoggingInterceptor loggingInterceptor, SqlStatementInterceptor sqlStatementInterceptor) {
         this.loggingInterceptor = loggingInterceptor;
+        this.sqlStatementInterceptor = sqlStatementInterceptor;
     }
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(loggingInterceptor);
+        registry.addInterceptor(sqlStatementInterceptor);
+    }
+
+    /**
+     * Handle the futures that controllers return already complete without an async dispatch.
+     */
+    @Bean
+    public static BeanPostProcessor completedFutureReturnValues() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof RequestMappingHandlerAdapter) {
+                    CompletedFutureReturnValueHandler.install((RequestMappingHandlerAdapter) bean);
+                }
+                return bean;
+            }
+        };
     }
 }
@@ -1,97 +1,270 @@
 package com.booking.hotel.controller;
 
+import com.booking.hotel.dto.BookingBatchResult;
+import com.booking.hotel.dto.BookingSummary;
+import com.booking.hotel.dto.CurrencyAmount;
+import com.booking.hotel.dto.NormalizedBookings;
 import com.booking.hotel.entity.Booking;
 import com.booking.hotel.entity.Hotel;
-import com.booking.hotel.exception.ResourceNotFoundException;
+import com.booking.hotel.exception.ServiceBusyException;
+import com.booking.hotel.execution.FanOutExecutor;
+import com.booking.hotel.execution.JdbcExecutor;
 import com.booking.hotel.service.BookingService;
 import com.booking.hotel.service.HotelService;
+import com.booking.hotel.service.TableVersionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 
+/**
+ * Booking endpoints. The database work of the endpoints returning a future runs on the {@link JdbcExecutor},
+ * on the request thread or on another thread depending on the execution mode.
+ */
 @RestController
 @RequestMapping("/bookings")
 public class BookingController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private HotelService hotelService;
     private BookingService bookingService;
+    private ObjectMapper objectMapper;
+    private JdbcExecutor jdbcExecutor;
+    private FanOutExecutor fanOutExecutor;
+    private TableVersionService tableVersionService;
+    private CacheControl cacheControl;
 
-    public BookingController(HotelService hotelService, BookingService bookingService) {
+    public BookingController(HotelService hotelService, BookingService bookingService, ObjectMapper objectMapper,
+                             JdbcExecutor jdbcExecutor, FanOutExecutor fanOutExecutor,
+                             TableVersionService tableVersionService,
+                             @Value("${booking.http.cache-max-age-seconds:5}") long cacheMaxAgeSeconds) {
         this.hotelService = hotelService;
         this.bookingService = bookingService;
+        this.objectMapper = objectMapper;
+        this.jdbcExecutor = jdbcExecutor;
+        this.fanOutExecutor = fanOutExecutor;
+        this.tableVersionService = tableVersionService;
+        this.cacheControl = CacheControl.maxAge(cacheMaxAgeSeconds, TimeUnit.SECONDS).cachePublic();
     }
 
     /**
      * Retrieve all the bookings.
+     * When a cursor or a page size is provided, only one page of bookings ordered by id is returned
+     * and the cursor of the next page is sent in the X-Next-Cursor header.
      *
-     * @return a list with all the bookings
+     * @param after the id of the last booking of the previous page
+     * @param size the page size
+     * @return a list with the bookings
      */
     @GetMapping
-    public ResponseEntity<List<Booking>> getAllBookings() {
-        List<Booking> bookings = bookingService.getAllBookings();
-        return new ResponseEntity<>(bookings, new HttpHeaders(), HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<List<Booking>>> getAllBookings(
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "size", required = false) Integer size) {
+        return jdbcExecutor.supply(() -> {
+            if (after == null && size == null) {
+                List<Booking> bookings = bookingService.getAllBookings();
+                return new ResponseEntity<>(bookings, new HttpHeaders(), HttpStatus.OK);
+            }
+            int pageSize = KeysetPages.pageSize(size);
+            List<Booking> bookings = bookingService.getBookingsAfter(after == null ? 0L : after, pageSize);
+            return new ResponseEntity<>(bookings, KeysetPages.headers(bookings, pageSize, Booking::getId),
+                    HttpStatus.OK);
+        });
+    }
+
+    /**
+     * Retrieve one page of booking summaries ordered by id, without the hotel details.
+     * The cursor of the next page is sent in the X-Next-Cursor header.
+     *
+     * @param after the id of the last booking of the previous page
+     * @param size the page size
+     * @return a list with the booking summaries
+     */
+    @GetMapping(params = "view=summary")
+    public CompletableFuture<ResponseEntity<List<BookingSummary>>> getBookingSummaries(
+            @RequestParam(value = "after", defaultValue = "0") long after,
+            @RequestParam(value = "size", required = false) Integer size) {
+        int pageSize = KeysetPages.pageSize(size);
+        return jdbcExecutor.supply(() -> {
+            List<BookingSummary> bookings = bookingService.getBookingSummariesAfter(after, pageSize);
+            return new ResponseEntity<>(bookings, KeysetPages.headers(bookings, pageSize, BookingSummary::getId),
+                    HttpStatus.OK);
+        });
+    }
+
+    /**
+     * Retrieve one page of bookings ordered by id, with every hotel of the page sent once and the bookings
+     * referencing their hotel by id. The cursor of the next page is sent in the X-Next-Cursor header.
+     *
+     * @param after the id of the last booking of the previous page
+     * @param size the page size
+     * @return the bookings of the page and their hotels
+     */
+    @GetMapping(params = "view=normalized")
+    public CompletableFuture<ResponseEntity<NormalizedBookings>> getNormalizedBookings(
+            @RequestParam(value = "after", defaultValue = "0") long after,
+            @RequestParam(value = "size", required = false) Integer size) {
+        int pageSize = KeysetPages.pageSize(size);
+        return jdbcExecutor.supply(() -> {
+            NormalizedBookings bookings = bookingService.getNormalizedBookingsAfter(after, pageSize);
+            return new ResponseEntity<>(bookings,
+                    KeysetPages.headers(bookings.getBookings(), pageSize, BookingSummary::getId), HttpStatus.OK);
+        });
+    }
+
+    /**
+     * Stream all the bookings as one JSON array, writing every booking as soon as it is read.
+     *
+     * @param response the http response
+     */
+    @GetMapping(params = "stream=true")
+    public void streamBookings(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonStreamWriter writer = JsonStreamWriter.array(objectMapper, response.getOutputStream())) {
+            bookingService.streamAllBookings(writer::accept);
+            writer.complete();
+        }
+    }
+
+    /**
+     * Export the bookings as newline-delimited JSON, writing every booking as soon as it is read.
+     * Disjoint id ranges can be exported in parallel.
+     *
+     * @param hotelId the hotel id, or all the hotels when missing
+     * @param fromId the lowest booking id, inclusive
+     * @param toId the highest booking id, exclusive
+     * @return the streaming response body
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportBookings(
+            @RequestParam(value = "hotelId", required = false) Long hotelId,
+            @RequestParam(value = "fromId", defaultValue = "0") long fromId,
+            @RequestParam(value = "toId", defaultValue = "9223372036854775807") long toId) {
+        StreamingResponseBody body = outputStream -> {
+            try (JsonStreamWriter writer = JsonStreamWriter.newlineDelimited(objectMapper, outputStream)) {
+                bookingService.exportBookings(hotelId, fromId, toId, writer::accept);
+                writer.complete();
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
     }
 
     /**
      * Retrieve a booking.
      *
      * @param id the booking id
-     * @return the booking based on the booking id
+     * @return the booking based on the booking id, with its version as ETag
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Booking> getBookingById(@PathVariable("id") Long id)
-            throws ResourceNotFoundException {
-        Booking booking = bookingService.getBookingById(id);
-        return new ResponseEntity<>(booking, new HttpHeaders(), HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<Booking>> getBookingById(@PathVariable("id") Long id) {
+        return jdbcExecutor.supply(() -> {
+            Booking booking = bookingService.getBookingById(id);
+            return ResponseEntity.ok().eTag(ETags.of(booking.getVersion())).body(booking);
+        });
     }
 
     /**
-     * Create a booking.
+     * Create a booking, or replace the booking with the same id, which answers 412 when the booking has been
+     * changed since the version of the request.
      *
      * @param booking the booking
      * @return the booking
      */
     @PostMapping
-    public ResponseEntity<Booking> createBooking(@Valid @RequestBody Booking booking) {
-        Hotel hotel = hotelService.getHotelByName(booking.getHotel().getName());
-        if (hotel == null) {
-            hotelService.createOrUpdateHotel(booking.getHotel());
-        }
-        bookingService.createOrUpdateBooking(booking);
-        return ResponseEntity.ok(booking);
+    public CompletableFuture<ResponseEntity<Booking>> createBooking(@Valid @RequestBody Booking booking) {
+        return jdbcExecutor.supply(() -> {
+            booking.setHotel(resolveHotel(booking.getHotel()));
+            return ResponseEntity.ok(bookingService.createOrUpdateBooking(booking));
+        });
+    }
+
+    /**
+     * Create a batch of bookings.
+     *
+     * @param bookings the bookings
+     * @return the result of every booking, in the order of the request
+     */
+    @PostMapping("/batch")
+    public CompletableFuture<ResponseEntity<List<BookingBatchResult>>> createBookings(
+            @RequestBody List<Booking> bookings) {
+        return jdbcExecutor.supply(() -> {
+            List<BookingBatchResult> results = bookingService.createBookings(bookings);
+            return new ResponseEntity<>(results, new HttpHeaders(), HttpStatus.OK);
+        });
     }
 
     /**
      * Update a booking.
+     * The update is conditional on the version of the If-Match header, or else of the booking,
+     * and answers 412 when the booking has been changed meanwhile.
      *
      * @param bookingId the booking id
+     * @param ifMatch the ETag of the booking the client has read
      * @param booking the booking information details
-     * @return the booking
+     * @return the booking, with its new version as ETag
      */
     @PutMapping
-    public ResponseEntity<Booking> updateBooking(
-            @RequestParam(value = "id") Long bookingId, @Valid @RequestBody Booking booking) {
-        Hotel hotel = hotelService.getHotelByName(booking.getHotel().getName());
-        if (hotel == null) {
-            hotelService.createOrUpdateHotel(booking.getHotel());
-        }
-        booking.setId(bookingId);
-        bookingService.createOrUpdateBooking(booking);
-        return ResponseEntity.ok(booking);
+    public CompletableFuture<ResponseEntity<Booking>> updateBooking(
+            @RequestParam(value = "id") Long bookingId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody Booking booking) {
+        Long expectedVersion = ifMatch != null ? ETags.expectedVersion(ifMatch) : booking.getVersion();
+        return jdbcExecutor.supply(() -> {
+            booking.setHotel(resolveHotel(booking.getHotel()));
+            Booking updated = bookingService.updateBooking(bookingId, booking, expectedVersion);
+            return ResponseEntity.ok().eTag(ETags.of(updated.getVersion())).body(updated);
+        });
+    }
+
+    /**
+     * Change some details of a booking. Only the details present in the request are changed.
+     * The update is conditional on the version of the If-Match header, or else of the request,
+     * and answers 412 when the booking has been changed meanwhile.
+     *
+     * @param bookingId the booking id
+     * @param ifMatch the ETag of the booking the client has read
+     * @param changes the changed booking details
+     * @return the booking, with its new version as ETag
+     */
+    @PatchMapping
+    public CompletableFuture<ResponseEntity<Booking>> patchBooking(
+            @RequestParam(value = "id") Long bookingId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody Booking changes) {
+        Long expectedVersion = ifMatch != null ? ETags.expectedVersion(ifMatch) : changes.getVersion();
+        return jdbcExecutor.supply(() -> {
+            if (changes.getHotel() != null) {
+                changes.setHotel(resolveHotel(changes.getHotel()));
+            }
+            Booking updated = bookingService.patchBooking(bookingId, changes, expectedVersion);
+            return ResponseEntity.ok().eTag(ETags.of(updated.getVersion())).body(updated);
+        });
     }
 
     /**
@@ -101,35 +274,170 @@ public class BookingController {
      * @return the status of deletion
      */
     @DeleteMapping("/{id}")
-    public HttpStatus deleteBookingById(@PathVariable("id") Long id) throws ResourceNotFoundException {
-        bookingService.deleteBooking(id);
-        return HttpStatus.OK;
+    public CompletableFuture<HttpStatus> deleteBookingById(@PathVariable("id") Long id) {
+        return jdbcExecutor.supply(() -> {
+            bookingService.deleteBooking(id);
+            return HttpStatus.OK;
+        });
     }
 
     /**
      * Retrieve all the bookings that are associated to the specified hotel name.
+     * When a cursor or a page size is provided, only one page of bookings ordered by id is returned
+     * and the cursor of the next page is sent in the X-Next-Cursor header.
      *
      * @param name the hotel name
+     * @param after the id of the last booking of the previous page
+     * @param size the page size
      * @return the list of bookings
      */
     @GetMapping("/hotel")
-    public ResponseEntity<List<Booking>> findBookingsByHotelName(@RequestParam("name") String name) {
-        List<Booking> bookings = hotelService.getBookingsByHotel(name);
-        return new ResponseEntity<>(bookings, new HttpHeaders(), HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<List<Booking>>> findBookingsByHotelName(
+            @RequestParam("name") String name,
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "size", required = false) Integer size) {
+        return jdbcExecutor.supply(() -> {
+            if (after == null && size == null) {
+                List<Booking> bookings = hotelService.getBookingsByHotel(name);
+                return new ResponseEntity<>(bookings, new HttpHeaders(), HttpStatus.OK);
+            }
+            int pageSize = KeysetPages.pageSize(size);
+            List<Booking> bookings = hotelService.getBookingsByHotelAfter(name, after == null ? 0L : after, pageSize);
+            return new ResponseEntity<>(bookings, KeysetPages.headers(bookings, pageSize, Booking::getId),
+                    HttpStatus.OK);
+        });
+    }
+
+    /**
+     * Retrieve all the bookings of the specified hotels. The hotel ids are queried in chunks at the same time,
+     * and a request that does not complete within its timeout is rejected.
+     *
+     * @param hotelIds the hotel ids
+     * @param timeoutMs the time the request may take, or the fan-out timeout when missing
+     * @return the list of bookings
+     */
+    @GetMapping("/hotels")
+    public CompletableFuture<ResponseEntity<List<Booking>>> findBookingsByHotels(
+            @RequestParam("hotelId") List<Long> hotelIds,
+            @RequestParam(value = "timeoutMs", required = false) Long timeoutMs) {
+        Duration timeout = fanOutTimeout(timeoutMs);
+        return jdbcExecutor.supply(() -> {
+            List<Booking> bookings = bookingService.getBookingsByHotels(hotelIds, timeout);
+            return new ResponseEntity<>(bookings, new HttpHeaders(), HttpStatus.OK);
+        });
+    }
+
+    /**
+     * Stream all the bookings of the specified hotels as one JSON array, writing the bookings of every chunk
+     * of hotel ids as soon as the chunk is read.
+     *
+     * @param hotelIds the hotel ids
+     * @param timeoutMs the time the request may take, or the fan-out timeout when missing
+     * @param response the http response
+     */
+    @GetMapping(value = "/hotels", params = "stream=true")
+    public void streamBookingsByHotels(@RequestParam("hotelId") List<Long> hotelIds,
+                                       @RequestParam(value = "timeoutMs", required = false) Long timeoutMs,
+                                       HttpServletResponse response) throws IOException, ServiceBusyException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonStreamWriter writer = JsonStreamWriter.array(objectMapper, response.getOutputStream())) {
+            bookingService.streamBookingsByHotels(hotelIds, fanOutTimeout(timeoutMs), writer::accept);
+            writer.complete();
+        }
+    }
+
+    /**
+     * Stream all the bookings that are associated to the specified hotel name as one JSON array,
+     * writing every booking as soon as it is read.
+     *
+     * @param name the hotel name
+     * @param response the http response
+     */
+    @GetMapping(value = "/hotel", params = "stream=true")
+    public void streamBookingsByHotelName(@RequestParam("name") String name, HttpServletResponse response)
+            throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonStreamWriter writer = JsonStreamWriter.array(objectMapper, response.getOutputStream())) {
+            hotelService.streamBookingsByHotel(name, writer::accept);
+            writer.complete();
+        }
+    }
+
+    /**
+     * Retrieve the summaries of all the bookings that are associated to the specified hotel name,
+     * without the hotel details.
+     *
+     * @param name the hotel name
+     * @return the list of booking summaries
+     */
+    @GetMapping(value = "/hotel", params = "view=summary")
+    public CompletableFuture<ResponseEntity<List<BookingSummary>>> findBookingSummariesByHotelName(
+            @RequestParam("name") String name) {
+        return jdbcExecutor.supply(() -> {
+            List<BookingSummary> bookings = hotelService.getBookingSummariesByHotel(name);
+            return new ResponseEntity<>(bookings, new HttpHeaders(), HttpStatus.OK);
+        });
     }
 
     /**
      * Get the sum of amounts of all the bookings for the specified hotel name.
+     * The ETag is made of the versions of the booking and hotel tables, so a client that has the current
+     * versions gets a 304 without the sum being computed.
      *
      * @param name the hotel name
+     * @param ifNoneMatch the ETags the client has
      * @return the sum of amount
      */
     @GetMapping("/amount")
-    public ResponseEntity<BigDecimal> findTotalBookingAmount(@RequestParam("name") String name) {
-        BigDecimal totalBookingAmount = hotelService.getTotalBookingAmountByHotel(name);
-        return new ResponseEntity<>(totalBookingAmount, new HttpHeaders(), HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<BigDecimal>> findTotalBookingAmount(
+            @RequestParam("name") String name,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String eTag = amountsETag();
+        if (ETags.matches(ifNoneMatch, eTag)) {
+            return CompletableFuture.completedFuture(ETags.notModified(eTag, cacheControl));
+        }
+        return jdbcExecutor.supply(() -> {
+            BigDecimal totalBookingAmount = hotelService.getTotalBookingAmountByHotel(name);
+            return ResponseEntity.ok().eTag(eTag).cacheControl(cacheControl).body(totalBookingAmount);
+        });
     }
-}
 
+    /**
+     * Get the sum of amounts per currency of all the bookings for the specified hotel name.
+     * Conditional like {@link #findTotalBookingAmount}.
+     *
+     * @param name the hotel name
+     * @param ifNoneMatch the ETags the client has
+     * @return the sum of amount for each currency
+     */
+    @GetMapping("/amount/currency")
+    public CompletableFuture<ResponseEntity<List<CurrencyAmount>>> findTotalBookingAmountPerCurrency(
+            @RequestParam("name") String name,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String eTag = amountsETag();
+        if (ETags.matches(ifNoneMatch, eTag)) {
+            return CompletableFuture.completedFuture(ETags.notModified(eTag, cacheControl));
+        }
+        return jdbcExecutor.supply(() -> {
+            List<CurrencyAmount> totalBookingAmounts = hotelService.getTotalBookingAmountsByHotel(name);
+            return ResponseEntity.ok().eTag(eTag).cacheControl(cacheControl).body(totalBookingAmounts);
+        });
+    }
 
+    /**
+     * The amounts are read by hotel name, so they change with both tables.
+     */
+    private String amountsETag() {
+        return ETags.ofTables("amounts", tableVersionService.getBookingsVersion(),
+                tableVersionService.getHotelsVersion());
+    }
 
+    private Hotel resolveHotel(Hotel hotel) {
+        Hotel existing = hotelService.getHotelByName(hotel.getName());
+        return existing != null ? existing : hotelService.getOrCreateHotel(hotel);
+    }
+
+    private Duration fanOutTimeout(Long timeoutMs) {
+        return timeoutMs == null ? fanOutExecutor.getDefaultTimeout() : Duration.ofMillis(timeoutMs);
+    }
+}
@@ -0,0 +1,103 @@
+package com.booking.hotel.controller;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandlerComposite;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Handles the result of a {@link CompletableFuture} returned by a controller right away when the future is
+ * already complete, as the database work of the blocking execution mode always is.
+ * Spring MVC would otherwise start async processing for every future and write its result in a second,
+ * async dispatch of the request. Futures that are not complete yet are still handled as async.
+ */
+public class CompletedFutureReturnValueHandler implements HandlerMethodReturnValueHandler {
+
+    private final HandlerMethodReturnValueHandlerComposite handlers = new HandlerMethodReturnValueHandlerComposite();
+
+    public CompletedFutureReturnValueHandler(List<HandlerMethodReturnValueHandler> handlers) {
+        this.handlers.addHandlers(handlers);
+    }
+
+    /**
+     * Add the handler in front of the return value handlers of an adapter, which handle the results and the
+     * futures that are not complete.
+     *
+     * @param adapter the initialized adapter
+     */
+    public static void install(RequestMappingHandlerAdapter adapter) {
+        List<HandlerMethodReturnValueHandler> handlers = new ArrayList<>(adapter.getReturnValueHandlers());
+        handlers.add(0, new CompletedFutureReturnValueHandler(adapter.getReturnValueHandlers()));
+        adapter.setReturnValueHandlers(handlers);
+    }
+
+    @Override
+    public boolean supportsReturnType(MethodParameter returnType) {
+        return CompletableFuture.class.isAssignableFrom(returnType.getParameterType());
+    }
+
+    @Override
+    public void handleReturnValue(Object returnValue, MethodParameter returnType,
+                                  ModelAndViewContainer mavContainer, NativeWebRequest webRequest) throws Exception {
+        CompletableFuture<?> future = (CompletableFuture<?>) returnValue;
+        if (future == null || !future.isDone()) {
+            handlers.handleReturnValue(returnValue, returnType, mavContainer, webRequest);
+            return;
+        }
+        Object result;
+        try {
+            result = future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+        handlers.handleReturnValue(result, new ResultType(returnType, result), mavContainer, webRequest);
+    }
+
+    /**
+     * The type of the result of a future, declared by the future type of the controller method.
+     */
+    private static final class ResultType extends MethodParameter {
+
+        private final Class<?> type;
+        private final Type genericType;
+
+        ResultType(MethodParameter futureType, Object result) {
+            super(futureType);
+            MethodParameter nested = futureType.nested();
+            this.type = result != null ? result.getClass() : nested.getNestedParameterType();
+            this.genericType = nested.getNestedGenericParameterType();
+        }
+
+        private ResultType(ResultType original) {
+            super(original);
+            this.type = original.type;
+            this.genericType = original.genericType;
+        }
+
+        @Override
+        public Class<?> getParameterType() {
+            return type;
+        }
+
+        @Override
+        public Type getGenericParameterType() {
+            return genericType;
+        }
+
+        @Override
+        public ResultType clone() {
+            return new ResultType(this);
+        }
+    }
+}
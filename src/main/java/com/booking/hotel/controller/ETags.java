@@ -0,0 +1,97 @@
+package com.booking.hotel.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Helpers for endpoints that expose the version of an entity, or of the tables they read, as their ETag.
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    /**
+     * Build the ETag of an entity version.
+     *
+     * @param version the entity version
+     * @return the quoted ETag
+     */
+    static String of(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Read the version expected by an If-Match header.
+     *
+     * @param ifMatch the If-Match header, may be null
+     * @return the expected version, or null when any version matches
+     */
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        try {
+            return Long.valueOf(tag.replace("\"", ""));
+        } catch (NumberFormatException e) {
+            // Never matches a version, so the update fails with 412 as required for an unknown entity tag.
+            return -1L;
+        }
+    }
+
+    /**
+     * Build the weak ETag of a response that depends on the versions of some tables.
+     *
+     * @param name the name of the response
+     * @param tableVersions the versions of the tables the response is read from
+     * @return the weak ETag
+     */
+    static String ofTables(String name, long... tableVersions) {
+        StringBuilder tag = new StringBuilder("W/\"").append(name);
+        for (long tableVersion : tableVersions) {
+            tag.append('-').append(Long.toHexString(tableVersion));
+        }
+        return tag.append('"').toString();
+    }
+
+    /**
+     * Check whether an If-None-Match header contains an ETag, using the weak comparison of conditional GETs.
+     *
+     * @param ifNoneMatch the If-None-Match header, may be null
+     * @param eTag the current ETag
+     * @return true when the client already has the current response
+     */
+    static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaqueTag = opaqueTag(eTag);
+        for (String tag : ifNoneMatch.split(",")) {
+            String trimmed = tag.trim();
+            if (trimmed.equals("*") || opaqueTag(trimmed).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Build the 304 response of a conditional GET.
+     *
+     * @param eTag the current ETag
+     * @param cacheControl the caching directives of the response
+     * @return the response without body
+     */
+    static <T> ResponseEntity<T> notModified(String eTag, CacheControl cacheControl) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(cacheControl).build();
+    }
+
+    private static String opaqueTag(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
@@ -1,24 +1,37 @@
 package com.booking.hotel.controller;
 
+import com.booking.hotel.dto.HotelBookingStats;
 import com.booking.hotel.entity.Hotel;
+import com.booking.hotel.exception.PreconditionFailedException;
 import com.booking.hotel.exception.ResourceNotFoundException;
 import com.booking.hotel.service.BookingService;
+import com.booking.hotel.service.HotelBookingStatsService;
 import com.booking.hotel.service.HotelService;
+import com.booking.hotel.service.TableVersionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/hotels")
@@ -26,62 +39,157 @@ public class HotelController {
 
     public HotelService hotelService;
     public BookingService bookingService;
+    private HotelBookingStatsService hotelBookingStatsService;
+    private ObjectMapper objectMapper;
+    private TableVersionService tableVersionService;
+    private CacheControl cacheControl;
 
-    public HotelController(HotelService hotelService, BookingService bookingService) {
+    public HotelController(HotelService hotelService, BookingService bookingService,
+                           HotelBookingStatsService hotelBookingStatsService, ObjectMapper objectMapper,
+                           TableVersionService tableVersionService,
+                           @Value("${booking.http.cache-max-age-seconds:5}") long cacheMaxAgeSeconds) {
         this.hotelService = hotelService;
         this.bookingService = bookingService;
+        this.hotelBookingStatsService = hotelBookingStatsService;
+        this.objectMapper = objectMapper;
+        this.tableVersionService = tableVersionService;
+        this.cacheControl = CacheControl.maxAge(cacheMaxAgeSeconds, TimeUnit.SECONDS).cachePublic();
     }
 
     /**
      * Retrieve all the hotels.
+     * When a cursor or a page size is provided, only one page of hotels ordered by id is returned
+     * and the cursor of the next page is sent in the X-Next-Cursor header.
+     * The ETag is the version of the hotel table, so a client that has the current version gets a 304
+     * without any hotel being read.
      *
-     * @return a list with all the hotels
+     * @param after the id of the last hotel of the previous page
+     * @param size the page size
+     * @param ifNoneMatch the ETags the client has
+     * @return a list with the hotels
      */
     @GetMapping
-    public ResponseEntity<List<Hotel>> getAllHotels() {
-        List<Hotel> hotels = hotelService.getAllHotels();
-        return new ResponseEntity<>(hotels, new HttpHeaders(), HttpStatus.OK);
+    public ResponseEntity<List<Hotel>> getAllHotels(
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "size", required = false) Integer size,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String eTag = ETags.ofTables("hotels", tableVersionService.getHotelsVersion());
+        if (ETags.matches(ifNoneMatch, eTag)) {
+            return ETags.notModified(eTag, cacheControl);
+        }
+        if (after == null && size == null) {
+            List<Hotel> hotels = hotelService.getAllHotels();
+            return ResponseEntity.ok().eTag(eTag).cacheControl(cacheControl).body(hotels);
+        }
+        int pageSize = KeysetPages.pageSize(size);
+        List<Hotel> hotels = hotelService.getHotelsAfter(after == null ? 0L : after, pageSize);
+        return ResponseEntity.ok()
+                .headers(KeysetPages.headers(hotels, pageSize, Hotel::getId))
+                .eTag(eTag)
+                .cacheControl(cacheControl)
+                .body(hotels);
+    }
+
+    /**
+     * Stream all the hotels as one JSON array, writing every hotel as soon as it is read.
+     *
+     * @param response the http response
+     */
+    @GetMapping(params = "stream=true")
+    public void streamHotels(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonStreamWriter writer = JsonStreamWriter.array(objectMapper, response.getOutputStream())) {
+            hotelService.streamAllHotels(writer::accept);
+            writer.complete();
+        }
     }
 
     /**
      * Retrieve a hotel.
+     * The hotel is usually served from the hotel cache, and a client that has its current version
+     * gets a 304 without the hotel being serialized.
      *
      * @param id the hotel id
-     * @return the hotel based on the hotel id
+     * @param ifNoneMatch the ETags the client has
+     * @return the hotel based on the hotel id, with its version as ETag
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Hotel> getHotelById(@PathVariable("id") Long id)
+    public ResponseEntity<Hotel> getHotelById(
+            @PathVariable("id") Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
             throws ResourceNotFoundException {
         Hotel hotel = hotelService.getHotelById(id);
+        String eTag = ETags.of(hotel.getVersion());
+        if (ETags.matches(ifNoneMatch, eTag)) {
+            return ETags.notModified(eTag, cacheControl);
+        }
+        return ResponseEntity.ok().eTag(eTag).cacheControl(cacheControl).body(hotel);
+    }
 
-        return new ResponseEntity<>(hotel, new HttpHeaders(), HttpStatus.OK);
+    /**
+     * Retrieve the booking statistics of a hotel.
+     *
+     * @param id the hotel id
+     * @return the booking count, total pax and amount per currency of the hotel
+     */
+    @GetMapping("/{id}/stats")
+    public ResponseEntity<HotelBookingStats> getHotelBookingStats(@PathVariable("id") Long id)
+            throws ResourceNotFoundException {
+        Hotel hotel = hotelService.getHotelById(id);
+        HotelBookingStats stats = hotelBookingStatsService.getStats(hotel.getId());
+        return new ResponseEntity<>(stats, new HttpHeaders(), HttpStatus.OK);
     }
 
     /**
-     * Create a hotel.
+     * Create a hotel, or replace the hotel with the same id, which answers 412 when the hotel has been
+     * changed since the version of the request.
      *
      * @param hotel the hotel
      * @return the hotel
      */
     @PostMapping
-    public ResponseEntity<Hotel> createHotel(@Valid @RequestBody Hotel hotel) {
-        hotelService.createOrUpdateHotel(hotel);
-        return ResponseEntity.ok(hotel);
+    public ResponseEntity<Hotel> createHotel(@Valid @RequestBody Hotel hotel) throws PreconditionFailedException {
+        return ResponseEntity.ok(hotelService.createOrUpdateHotel(hotel));
     }
 
     /**
      * Update a hotel.
+     * The update is conditional on the version of the If-Match header, or else of the hotel,
+     * and answers 412 when the hotel has been changed meanwhile.
      *
      * @param hotelId the hotel id
+     * @param ifMatch the ETag of the hotel the client has read
      * @param hotel the hotel
-     * @return the hotel
+     * @return the hotel, with its new version as ETag
      */
     @PutMapping
     public ResponseEntity<Hotel> updateHotel(
-            @RequestParam(value = "id") Long hotelId, @Valid @RequestBody Hotel hotel) {
-        hotel.setId(hotelId);
-        hotelService.createOrUpdateHotel(hotel);
-        return ResponseEntity.ok(hotel);
+            @RequestParam(value = "id") Long hotelId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody Hotel hotel) throws ResourceNotFoundException, PreconditionFailedException {
+        Long expectedVersion = ifMatch != null ? ETags.expectedVersion(ifMatch) : hotel.getVersion();
+        Hotel updated = hotelService.updateHotel(hotelId, hotel, expectedVersion);
+        return ResponseEntity.ok().eTag(ETags.of(updated.getVersion())).body(updated);
+    }
+
+    /**
+     * Change some details of a hotel. Only the details present in the request are changed.
+     * The update is conditional on the version of the If-Match header, or else of the request,
+     * and answers 412 when the hotel has been changed meanwhile.
+     *
+     * @param hotelId the hotel id
+     * @param ifMatch the ETag of the hotel the client has read
+     * @param changes the changed hotel details
+     * @return the hotel, with its new version as ETag
+     */
+    @PatchMapping
+    public ResponseEntity<Hotel> patchHotel(
+            @RequestParam(value = "id") Long hotelId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody Hotel changes) throws ResourceNotFoundException, PreconditionFailedException {
+        Long expectedVersion = ifMatch != null ? ETags.expectedVersion(ifMatch) : changes.getVersion();
+        Hotel updated = hotelService.patchHotel(hotelId, changes, expectedVersion);
+        return ResponseEntity.ok().eTag(ETags.of(updated.getVersion())).body(updated);
     }
 
     /**
@@ -97,7 +205,7 @@ public class HotelController {
     }
 
     /**
-     * Retrieve all the hotels that are associated to the specified booking surname.
+     * Retrieve the distinct hotels that are associated to the specified booking surname.
      *
      * @param surname the booking customer surname
      * @return the list of hotels
@@ -108,4 +216,16 @@ public class HotelController {
         return new ResponseEntity<>(hotels, new HttpHeaders(), HttpStatus.OK);
     }
 
-}
\ No newline at end of file
+    /**
+     * Retrieve the distinct hotels that are associated to any booking surname starting with the specified prefix.
+     *
+     * @param prefix the beginning of the booking customer surname
+     * @return the list of hotels
+     */
+    @GetMapping(value = "/booking", params = "prefix")
+    public ResponseEntity<List<Hotel>> getHotelsByBookingSurnamePrefix(@RequestParam("prefix") String prefix) {
+        List<Hotel> hotels = bookingService.getHotelsByBookingSurnamePrefix(prefix);
+        return new ResponseEntity<>(hotels, new HttpHeaders(), HttpStatus.OK);
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.booking.hotel.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Writes values as soon as they are accepted, either as the elements of one JSON array
+ * or as newline-delimited JSON, so the whole content is never held in memory.
+ * <p>
+ * The content is only ended by {@link #complete()}. When the writer is closed without it, because reading or
+ * writing failed half way, the array is left open and the response stream is neither flushed nor closed.
+ * A response that is not committed yet can still be answered with the error status, and a committed one is
+ * aborted by the container, so the client sees a broken body instead of a well-formed but truncated one.
+ */
+class JsonStreamWriter implements Consumer<Object>, Closeable {
+
+    private final ObjectWriter objectWriter;
+    private final JsonGenerator generator;
+    private final boolean newlineDelimited;
+    private boolean completed;
+
+    private JsonStreamWriter(ObjectMapper objectMapper, OutputStream outputStream, boolean newlineDelimited)
+            throws IOException {
+        this.objectWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.generator = objectMapper.getFactory().createGenerator(outputStream)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        this.newlineDelimited = newlineDelimited;
+        if (newlineDelimited) {
+            generator.setRootValueSeparator(null);
+        } else {
+            generator.writeStartArray();
+        }
+    }
+
+    static JsonStreamWriter array(ObjectMapper objectMapper, OutputStream outputStream) throws IOException {
+        return new JsonStreamWriter(objectMapper, outputStream, false);
+    }
+
+    static JsonStreamWriter newlineDelimited(ObjectMapper objectMapper, OutputStream outputStream)
+            throws IOException {
+        return new JsonStreamWriter(objectMapper, outputStream, true);
+    }
+
+    @Override
+    public void accept(Object value) {
+        try {
+            objectWriter.writeValue(generator, value);
+            if (newlineDelimited) {
+                generator.writeRaw('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * End the content after the last value and close the response stream.
+     */
+    public void complete() throws IOException {
+        if (!newlineDelimited) {
+            generator.writeEndArray();
+        }
+        completed = true;
+        generator.close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!completed) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            generator.close();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.booking.hotel.controller;
+
+import org.springframework.http.HttpHeaders;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Helpers for endpoints that page through a table by id instead of by offset.
+ */
+final class KeysetPages {
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private KeysetPages() {
+    }
+
+    /**
+     * Bound the requested page size.
+     *
+     * @param size the requested page size, may be null
+     * @return a page size between 1 and {@link #MAX_PAGE_SIZE}
+     */
+    static int pageSize(Integer size) {
+        if (size == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Build the headers of a page. A full page carries the id of its last element
+     * as the cursor of the next page.
+     *
+     * @param page the elements of the page
+     * @param pageSize the page size
+     * @param idExtractor the function that returns the id of an element
+     * @return the page headers
+     */
+    static <T> HttpHeaders headers(List<T> page, int pageSize, Function<T, Long> idExtractor) {
+        HttpHeaders headers = new HttpHeaders();
+        if (page.size() == pageSize) {
+            headers.set(NEXT_CURSOR_HEADER, String.valueOf(idExtractor.apply(page.get(page.size() - 1))));
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,83 @@
+package com.booking.hotel.controller;
+
+import com.booking.hotel.dto.BookingSummary;
+import com.booking.hotel.exception.ResourceNotFoundException;
+import com.booking.hotel.sharding.ShardedBookingRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/shards")
+@ConditionalOnProperty(name = "booking.sharding.enabled", havingValue = "true")
+public class ShardController {
+
+    private ShardedBookingRepository shardedBookingRepository;
+
+    public ShardController(ShardedBookingRepository shardedBookingRepository) {
+        this.shardedBookingRepository = shardedBookingRepository;
+    }
+
+    /**
+     * Retrieve the number of bookings of every shard.
+     *
+     * @return the booking count by shard name
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Long>> getBookingCounts() {
+        return new ResponseEntity<>(shardedBookingRepository.countByShard(), new HttpHeaders(), HttpStatus.OK);
+    }
+
+    /**
+     * Add a configured shard to the hash ring and move its hotels to it.
+     *
+     * @param name the shard name
+     * @return the number of bookings moved
+     * @throws ResourceNotFoundException when no shard of that name is configured
+     */
+    @PostMapping("/{name}")
+    public ResponseEntity<Long> addShard(@PathVariable("name") String name) throws ResourceNotFoundException {
+        if (!shardedBookingRepository.getConfiguredShards().contains(name)) {
+            throw new ResourceNotFoundException("Shard " + name + " is not configured");
+        }
+        if (shardedBookingRepository.getShardMap().getShards().contains(name)) {
+            return new ResponseEntity<>(0L, new HttpHeaders(), HttpStatus.OK);
+        }
+        long moved = shardedBookingRepository.rebalance(shardedBookingRepository.getShardMap().withShard(name));
+        return new ResponseEntity<>(moved, new HttpHeaders(), HttpStatus.OK);
+    }
+
+    /**
+     * Retrieve a page of the bookings of a customer surname from all the shards.
+     * The cursor of the next page is sent in the X-Next-Cursor header.
+     *
+     * @param surname the booking customer surname
+     * @param after the id of the last booking of the previous page
+     * @param size the page size
+     * @return the list of booking summaries
+     */
+    @GetMapping(value = "/bookings", params = "surname")
+    public ResponseEntity<List<BookingSummary>> findBookingsBySurname(
+            @RequestParam("surname") String surname,
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "size", required = false) Integer size) {
+        int pageSize = KeysetPages.pageSize(size);
+        List<BookingSummary> bookings = shardedBookingRepository.findBookingsByCustomerSurname(
+                surname, after == null ? 0L : after, pageSize).stream()
+                .map(BookingSummary::of)
+                .collect(Collectors.toList());
+        return new ResponseEntity<>(bookings, KeysetPages.headers(bookings, pageSize, BookingSummary::getId),
+                HttpStatus.OK);
+    }
+}
@@ -0,0 +1,132 @@
+package com.booking.hotel.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends the connections of read-only transactions to the read replicas, in turn, and all the other
+ * connections to the primary database.
+ * <p>
+ * A replica only gets connections while it is marked usable, which the {@link ReplicaLagMonitor} does when
+ * it is close enough behind the primary database. Read-only transactions fall back to the primary database
+ * when no replica is usable.
+ * <p>
+ * The route is decided when the connection is taken, so this data source has to be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: the transaction manager takes
+ * the connection before the transaction is marked read-only, and the proxy delays it to the first statement.
+ * Every routed connection is counted in booking.datasource.route, by route and by transaction type.
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    public static final String PRIMARY = "primary";
+    public static final String ROUTE_COUNTER = "booking.datasource.route";
+
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas;
+    private final List<String> replicaNames;
+    private final Set<String> usableReplicas = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final Map<String, Counter> readOnlyCounters = new HashMap<>();
+    private final Map<String, Counter> readWriteCounters = new HashMap<>();
+
+    public ReadWriteRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                      MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = Collections.unmodifiableMap(new LinkedHashMap<>(replicas));
+        this.replicaNames = new ArrayList<>(replicas.keySet());
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+        for (Object route : targets.keySet()) {
+            readOnlyCounters.put((String) route, counter((String) route, "read-only", meterRegistry));
+            readWriteCounters.put((String) route, counter((String) route, "read-write", meterRegistry));
+        }
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public Map<String, DataSource> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Start or stop sending read-only transactions to a replica.
+     *
+     * @param name the replica name
+     * @param usable whether the replica is close enough behind the primary database
+     */
+    public void setReplicaUsable(String name, boolean usable) {
+        boolean changed = usable ? usableReplicas.add(name) : usableReplicas.remove(name);
+        if (changed) {
+            log.info("Replica {} is {}", name, usable ? "read from" : "no longer read from");
+        }
+    }
+
+    public boolean isReplicaUsable(String name) {
+        return usableReplicas.contains(name);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            readWriteCounters.get(PRIMARY).increment();
+            return PRIMARY;
+        }
+        String route = nextUsableReplica();
+        readOnlyCounters.get(route).increment();
+        return route;
+    }
+
+    /**
+     * Close the replica pools. The primary database is closed by its own bean.
+     */
+    @Override
+    public void close() throws IOException {
+        for (DataSource replica : replicas.values()) {
+            if (replica instanceof Closeable) {
+                ((Closeable) replica).close();
+            }
+        }
+    }
+
+    private String nextUsableReplica() {
+        int size = replicaNames.size();
+        int start = nextReplica.getAndIncrement();
+        for (int i = 0; i < size; i++) {
+            String name = replicaNames.get(Math.floorMod(start + i, size));
+            if (usableReplicas.contains(name)) {
+                return name;
+            }
+        }
+        return PRIMARY;
+    }
+
+    private static Counter counter(String route, String transaction, MeterRegistry meterRegistry) {
+        return Counter.builder(ROUTE_COUNTER)
+                .tag("route", route)
+                .tag("transaction", transaction)
+                .description("Connections taken from the primary database or from a read replica")
+                .register(meterRegistry);
+    }
+}
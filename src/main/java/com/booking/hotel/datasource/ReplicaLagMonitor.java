@@ -0,0 +1,98 @@
+package com.booking.hotel.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how far every read replica is behind the primary database.
+ * <p>
+ * Every interval the current time is written to the replication_heartbeat row of the primary database and
+ * the row is read back from every replica: the lag of a replica is the age of the heartbeat it has.
+ * A replica that lags more than the configured maximum, or cannot be read, stops getting the read-only
+ * transactions until it has caught up. When the heartbeat cannot be written, the lag of every replica keeps
+ * growing, so the reads go back to the primary database after the maximum lag.
+ * <p>
+ * The lag of every replica is published as booking.datasource.replica.lag, in milliseconds.
+ */
+@Slf4j
+public class ReplicaLagMonitor implements MeterBinder {
+
+    static final String HEARTBEAT_UPDATE = "UPDATE replication_heartbeat SET beat_millis = ? WHERE id = 1";
+    static final String HEARTBEAT_QUERY = "SELECT beat_millis FROM replication_heartbeat WHERE id = 1";
+
+    private final ReadWriteRoutingDataSource routingDataSource;
+    private final JdbcTemplate primary;
+    private final Map<String, JdbcTemplate> replicas = new LinkedHashMap<>();
+    private final Map<String, AtomicLong> lagMillis = new LinkedHashMap<>();
+    private final long maxLagMs;
+
+    public ReplicaLagMonitor(ReadWriteRoutingDataSource routingDataSource, ReplicaProperties properties) {
+        this.routingDataSource = routingDataSource;
+        this.primary = new JdbcTemplate(routingDataSource.getPrimary());
+        routingDataSource.getReplicas().forEach((name, replica) -> {
+            replicas.put(name, new JdbcTemplate(replica));
+            lagMillis.put(name, new AtomicLong(-1));
+        });
+        this.maxLagMs = properties.getMaxLagMs();
+    }
+
+    @Scheduled(fixedDelayString = "${booking.replica.heartbeat-interval-ms:1000}")
+    public void check() {
+        try {
+            primary.update(HEARTBEAT_UPDATE, System.currentTimeMillis());
+        } catch (DataAccessException e) {
+            log.warn("Replication heartbeat could not be written: {}", e.getMessage());
+        }
+        replicas.forEach((name, replica) -> {
+            long lag = lagOf(name, replica);
+            lagMillis.get(name).set(lag);
+            routingDataSource.setReplicaUsable(name, lag >= 0 && lag <= maxLagMs);
+        });
+    }
+
+    /**
+     * Retrieve the last measured lag of a replica.
+     *
+     * @param name the replica name
+     * @return the lag in milliseconds, or -1 when the replica could not be read
+     */
+    public long getLagMillis(String name) {
+        return lagMillis.get(name).get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        lagMillis.forEach((name, lag) -> Gauge.builder("booking.datasource.replica.lag", lag,
+                ReplicaLagMonitor::lagValue)
+                .tag("replica", name)
+                .description("Milliseconds the replica is behind the primary database")
+                .register(registry));
+    }
+
+    private long lagOf(String name, JdbcTemplate replica) {
+        try {
+            Long beatMillis = replica.queryForObject(HEARTBEAT_QUERY, Long.class);
+            if (beatMillis == null) {
+                return -1;
+            }
+            return Math.max(0, System.currentTimeMillis() - beatMillis);
+        } catch (DataAccessException e) {
+            log.warn("Replica {} could not be checked: {}", name, e.getMessage());
+            return -1;
+        }
+    }
+
+    private static double lagValue(AtomicLong lag) {
+        long value = lag.get();
+        return value < 0 ? Double.NaN : value;
+    }
+}
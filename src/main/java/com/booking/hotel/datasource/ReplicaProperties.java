@@ -0,0 +1,50 @@
+package com.booking.hotel.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "booking.replica")
+public class ReplicaProperties {
+
+    /**
+     * Send the read-only transactions to the read replicas.
+     */
+    private boolean enabled = false;
+
+    /**
+     * JDBC urls of the read replicas.
+     */
+    private List<String> urls = new ArrayList<>();
+
+    /**
+     * Login user of the replicas, the primary database user when not set.
+     */
+    private String username;
+
+    /**
+     * Login password of the replicas, the primary database password when not set.
+     */
+    private String password;
+
+    /**
+     * Connection pool size of every replica.
+     */
+    private int maximumPoolSize = 10;
+
+    /**
+     * Replicas that are further behind the primary database than this are not read from.
+     */
+    private long maxLagMs = 5000;
+
+    /**
+     * Milliseconds between two heartbeats written to the primary database and looked up on the replicas.
+     */
+    private long heartbeatIntervalMs = 1000;
+
+}
@@ -0,0 +1,36 @@
+package com.booking.hotel.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingBatchResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Status {
+        CREATED,
+        REJECTED
+    }
+
+    private int index;
+
+    private Long id;
+
+    private Status status;
+
+    private String message;
+
+    public static BookingBatchResult created(int index, Long id) {
+        return new BookingBatchResult(index, id, Status.CREATED, null);
+    }
+
+    public static BookingBatchResult rejected(int index, String message) {
+        return new BookingBatchResult(index, null, Status.REJECTED, message);
+    }
+}
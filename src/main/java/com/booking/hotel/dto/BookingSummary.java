@@ -0,0 +1,41 @@
+package com.booking.hotel.dto;
+
+import com.booking.hotel.entity.Booking;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * The columns of a booking without its hotel, which is referenced by id only.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingSummary implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    private String customerName;
+
+    private String customerSurname;
+
+    private Integer pax;
+
+    private BigDecimal priceAmount;
+
+    private String currency;
+
+    private Long hotelId;
+
+    public static BookingSummary of(Booking booking) {
+        return new BookingSummary(booking.getId(), booking.getCustomerName(), booking.getCustomerSurname(),
+                booking.getPax(), booking.getPriceAmount(), booking.getCurrency(),
+                booking.getHotel() == null ? null : booking.getHotel().getId());
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.booking.hotel.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CurrencyAmount implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String currency;
+
+    private BigDecimal amount;
+
+}
@@ -0,0 +1,25 @@
+package com.booking.hotel.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HotelBookingStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long hotelId;
+
+    private long bookingCount;
+
+    private long totalPax;
+
+    private List<CurrencyAmount> amounts;
+
+}
@@ -0,0 +1,27 @@
+package com.booking.hotel.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HotelCurrencyTotals implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long hotelId;
+
+    private String currency;
+
+    private Long bookingCount;
+
+    private Long pax;
+
+    private BigDecimal amount;
+
+}
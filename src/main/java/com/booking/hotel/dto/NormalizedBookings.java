@@ -0,0 +1,25 @@
+package com.booking.hotel.dto;
+
+import com.booking.hotel.entity.Hotel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Bookings with every hotel sent once, the bookings referencing their hotel by id.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NormalizedBookings implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private List<Hotel> hotels;
+
+    private List<BookingSummary> bookings;
+
+}
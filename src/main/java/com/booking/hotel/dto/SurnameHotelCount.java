@@ -0,0 +1,22 @@
+package com.booking.hotel.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SurnameHotelCount implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String customerSurname;
+
+    private Long hotelId;
+
+    private Long bookingCount;
+
+}
@@ -1,16 +1,20 @@
 package com.booking.hotel.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import java.io.Serializable;
 
 @Data
@@ -18,13 +22,16 @@ import java.io.Serializable;
 @AllArgsConstructor
 @Builder
 @Entity
+@DynamicUpdate
 @Table(name = "hotel")
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Hotel implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "hotel_seq")
+    @SequenceGenerator(name = "hotel_seq", sequenceName = "hotel_seq", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -37,4 +44,8 @@ public class Hotel implements Serializable {
     @Column(name = "star_rating")
     private Integer starRating;
 
+    @Version
+    @Column(name = "version")
+    private Long version;
+
 }
@@ -0,0 +1,23 @@
+package com.booking.hotel.event;
+
+import lombok.Value;
+
+/**
+ * Published when a booking is created, updated or deleted.
+ * A created booking has no previous state and a deleted booking has no current state.
+ */
+@Value
+public class BookingChangedEvent {
+
+    private BookingSnapshot previous;
+
+    private BookingSnapshot current;
+
+    public static BookingChangedEvent created(BookingSnapshot current) {
+        return new BookingChangedEvent(null, current);
+    }
+
+    public static BookingChangedEvent deleted(BookingSnapshot previous) {
+        return new BookingChangedEvent(previous, null);
+    }
+}
@@ -0,0 +1,33 @@
+package com.booking.hotel.event;
+
+import com.booking.hotel.entity.Booking;
+import lombok.Value;
+
+import java.math.BigDecimal;
+
+/**
+ * The values of a booking at one point in time, which stay valid after the entity changes.
+ */
+@Value
+public class BookingSnapshot {
+
+    private Long id;
+
+    private Long hotelId;
+
+    private String customerName;
+
+    private String customerSurname;
+
+    private Integer pax;
+
+    private BigDecimal priceAmount;
+
+    private String currency;
+
+    public static BookingSnapshot of(Booking booking) {
+        Long hotelId = booking.getHotel() != null ? booking.getHotel().getId() : null;
+        return new BookingSnapshot(booking.getId(), hotelId, booking.getCustomerName(), booking.getCustomerSurname(),
+                booking.getPax(), booking.getPriceAmount(), booking.getCurrency());
+    }
+}
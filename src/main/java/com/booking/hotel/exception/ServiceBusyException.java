@@ -0,0 +1,14 @@
+package com.booking.hotel.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE)
+public class ServiceBusyException extends Exception{
+
+    private static final long serialVersionUID = 1L;
+
+    public ServiceBusyException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,47 @@
+package com.booking.hotel.execution;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "booking.pool.adaptive")
+public class AdaptivePoolProperties {
+
+    /**
+     * Resize the connection pool from the observed connection wait and use times.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Smallest pool size.
+     */
+    private int minSize = 5;
+
+    /**
+     * Largest pool size.
+     */
+    private int maxSize = 30;
+
+    /**
+     * Connections added or removed at once.
+     */
+    private int step = 2;
+
+    /**
+     * The pool grows when requests wait for a connection at least this share of the time they use it.
+     */
+    private double growWaitRatio = 0.5;
+
+    /**
+     * The pool shrinks when requests wait for a connection less than this share of the time they use it.
+     */
+    private double shrinkWaitRatio = 0.05;
+
+    /**
+     * Milliseconds between two resizing decisions.
+     */
+    private long intervalMs = 10_000;
+
+}
@@ -0,0 +1,123 @@
+package com.booking.hotel.execution;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resizes the connection pool between the configured bounds.
+ * <p>
+ * Every interval it compares the mean time requests waited for a connection (hikaricp.connections.acquire)
+ * with the mean time they held it (hikaricp.connections.usage), which is the database time of the request.
+ * Waiting a large share of the database time while requests queue for connections means the pool is the
+ * bottleneck, so it grows. Hardly waiting with idle connections means the pool is larger than needed,
+ * so it shrinks. A pool that grows without the wait going down points at the database itself, which is why
+ * the upper bound should stay well below what the database can serve.
+ * <p>
+ * The concurrent query limit of the {@link JdbcExecutor} follows the pool size.
+ */
+@Component
+@ConditionalOnProperty(name = "booking.pool.adaptive.enabled", havingValue = "true")
+@Slf4j
+public class AdaptivePoolSizer {
+
+    private static final String ACQUIRE_TIMER = "hikaricp.connections.acquire";
+    private static final String USAGE_TIMER = "hikaricp.connections.usage";
+
+    private final HikariConfigMXBean poolConfig;
+    private final HikariPoolMXBean pool;
+    private final String poolName;
+    private final MeterRegistry meterRegistry;
+    private final JdbcExecutor jdbcExecutor;
+    private final AdaptivePoolProperties properties;
+
+    private TimerSnapshot lastAcquire = TimerSnapshot.EMPTY;
+    private TimerSnapshot lastUsage = TimerSnapshot.EMPTY;
+
+    public AdaptivePoolSizer(DataSource dataSource, MeterRegistry meterRegistry, JdbcExecutor jdbcExecutor,
+                             AdaptivePoolProperties properties) throws SQLException {
+        HikariDataSource hikariDataSource = dataSource.unwrap(HikariDataSource.class);
+        this.poolConfig = hikariDataSource.getHikariConfigMXBean();
+        this.pool = hikariDataSource.getHikariPoolMXBean();
+        this.poolName = hikariDataSource.getPoolName();
+        this.meterRegistry = meterRegistry;
+        this.jdbcExecutor = jdbcExecutor;
+        this.properties = properties;
+        // Connections above the minimum idle count are closed when idle, so a shrunk pool gives them back.
+        poolConfig.setMinimumIdle(Math.min(poolConfig.getMinimumIdle(), properties.getMinSize()));
+        resizeTo(Math.max(properties.getMinSize(),
+                Math.min(properties.getMaxSize(), poolConfig.getMaximumPoolSize())));
+    }
+
+    @Scheduled(fixedDelayString = "${booking.pool.adaptive.interval-ms:10000}",
+            initialDelayString = "${booking.pool.adaptive.interval-ms:10000}")
+    public void resize() {
+        Timer acquireTimer = meterRegistry.find(ACQUIRE_TIMER).tag("pool", poolName).timer();
+        Timer usageTimer = meterRegistry.find(USAGE_TIMER).tag("pool", poolName).timer();
+        if (acquireTimer == null || usageTimer == null) {
+            return;
+        }
+        TimerSnapshot acquire = TimerSnapshot.of(acquireTimer);
+        TimerSnapshot usage = TimerSnapshot.of(usageTimer);
+        double meanWait = acquire.meanSince(lastAcquire);
+        double meanUse = usage.meanSince(lastUsage);
+        lastAcquire = acquire;
+        lastUsage = usage;
+        if (Double.isNaN(meanWait) || Double.isNaN(meanUse) || meanUse == 0) {
+            return;
+        }
+
+        double waitRatio = meanWait / meanUse;
+        int size = poolConfig.getMaximumPoolSize();
+        if (waitRatio >= properties.getGrowWaitRatio() && pool.getThreadsAwaitingConnection() > 0) {
+            resizeTo(Math.min(properties.getMaxSize(), size + properties.getStep()));
+        } else if (waitRatio < properties.getShrinkWaitRatio()
+                && pool.getIdleConnections() >= properties.getStep()) {
+            resizeTo(Math.max(properties.getMinSize(), size - properties.getStep()));
+        }
+    }
+
+    private void resizeTo(int size) {
+        int previous = poolConfig.getMaximumPoolSize();
+        if (size != previous) {
+            poolConfig.setMaximumPoolSize(size);
+            log.info("Connection pool {} resized from {} to {}", poolName, previous, size);
+        }
+        jdbcExecutor.setMaxConcurrentQueries(size);
+    }
+
+    /**
+     * The cumulative count and total time of a timer, in nanoseconds.
+     */
+    private static final class TimerSnapshot {
+
+        static final TimerSnapshot EMPTY = new TimerSnapshot(0, 0);
+
+        final long count;
+        final double totalNanos;
+
+        private TimerSnapshot(long count, double totalNanos) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+        }
+
+        static TimerSnapshot of(Timer timer) {
+            return new TimerSnapshot(timer.count(), timer.totalTime(TimeUnit.NANOSECONDS));
+        }
+
+        double meanSince(TimerSnapshot previous) {
+            long count = this.count - previous.count;
+            return count <= 0 ? Double.NaN : (totalNanos - previous.totalNanos) / count;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.booking.hotel.execution;
+
+/**
+ * Where the database work of a request runs.
+ */
+public enum ExecutionMode {
+
+    /**
+     * On the servlet container thread of the request.
+     */
+    BLOCKING,
+
+    /**
+     * On a bounded pool of JDBC threads, while the container thread is released.
+     */
+    ASYNC,
+
+    /**
+     * On a new virtual thread per request, while the container thread is released. Needs Java 21 or later.
+     */
+    VIRTUAL
+}
@@ -0,0 +1,55 @@
+package com.booking.hotel.execution;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "booking.execution")
+public class ExecutionProperties {
+
+    private ExecutionMode mode = ExecutionMode.BLOCKING;
+
+    /**
+     * Number of JDBC threads in {@link ExecutionMode#ASYNC} mode.
+     */
+    private int threads = 16;
+
+    /**
+     * Maximum number of requests waiting for a JDBC thread. Requests are rejected when the queue is full.
+     */
+    private int queueCapacity = 1000;
+
+    /**
+     * Maximum number of requests using the database at the same time, at most the connection pool size.
+     */
+    private int maxConcurrentQueries = 10;
+
+    /**
+     * Requests that wait this long for a database permit are rejected.
+     */
+    private long acquireTimeoutMs = 5000;
+
+    /**
+     * Threads that run the chunks of multi-hotel queries in parallel, each chunk on its own connection.
+     * With 0 the chunks run one after the other on the calling thread. Keep it below the connection pool size.
+     */
+    private int fanOutThreads = 4;
+
+    /**
+     * Hotel ids per chunk of a multi-hotel query. A power of two, so that the padded IN clauses are reused.
+     */
+    private int fanOutChunkSize = 64;
+
+    /**
+     * Maximum number of chunks waiting for a fan-out thread. Queries are rejected when the queue is full.
+     */
+    private int fanOutQueueCapacity = 1000;
+
+    /**
+     * Time a multi-hotel query may take when the caller sets no deadline.
+     */
+    private long fanOutTimeoutMs = 10_000;
+
+}
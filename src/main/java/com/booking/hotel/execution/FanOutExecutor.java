@@ -0,0 +1,238 @@
+package com.booking.hotel.execution;
+
+import com.booking.hotel.exception.ServiceBusyException;
+import com.booking.hotel.metrics.SqlStatementCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs a query over a long list of ids as chunks of fan-out-chunk-size ids at the same time, every chunk in
+ * its own read-only transaction, so on its own connection, on a pool of fan-out-threads threads.
+ * <p>
+ * The results are either collected in the order of the chunks, or passed to a consumer on the calling thread
+ * chunk by chunk as soon as every chunk completes, so the first results are available after the fastest chunk
+ * instead of after all of them. Either way the caller waits at most until its deadline and then gets a
+ * {@link ServiceBusyException}, and the chunks that have not started yet are cancelled.
+ * <p>
+ * All the chunks are queued before the first result is passed on, so a full queue or a deadline that expires
+ * before the fastest chunk fail before the consumer has seen anything, e.g. before a response is written.
+ * <p>
+ * The caller must not hold a connection while it waits, or concurrent callers could take all the connections
+ * that their chunks need, so the calling service methods run outside of any transaction.
+ */
+@Component
+public class FanOutExecutor implements MeterBinder {
+
+    private final ThreadPoolExecutor executor;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int chunkSize;
+    private final Duration defaultTimeout;
+
+    public FanOutExecutor(ExecutionProperties executionProperties, PlatformTransactionManager transactionManager) {
+        this.chunkSize = executionProperties.getFanOutChunkSize();
+        this.defaultTimeout = Duration.ofMillis(executionProperties.getFanOutTimeoutMs());
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        this.executor = executionProperties.getFanOutThreads() > 0 ? createExecutor(executionProperties) : null;
+    }
+
+    public Duration getDefaultTimeout() {
+        return defaultTimeout;
+    }
+
+    /**
+     * Run a query for every chunk of the ids and concatenate the results in the order of the chunks.
+     *
+     * @param ids the ids, duplicates are ignored
+     * @param query the query of one chunk of ids
+     * @param timeout the time the caller waits for all the chunks
+     * @param <T> the result type
+     * @return the results of all the chunks
+     */
+    public <T> List<T> queryAll(List<Long> ids, Function<List<Long>, List<T>> query, Duration timeout)
+            throws ServiceBusyException {
+        List<List<Long>> chunks = chunks(ids);
+        List<T> results = new ArrayList<>();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        if (executor == null) {
+            runSequentially(chunks, chunk -> results.addAll(query.apply(chunk)), deadline, timeout);
+            return results;
+        }
+        List<Future<List<T>>> futures = new ArrayList<>();
+        try {
+            for (List<Long> chunk : chunks) {
+                futures.add(executor.submit(task(chunk, query)));
+            }
+            for (Future<List<T>> future : futures) {
+                results.addAll(await(future, deadline, timeout));
+            }
+            return results;
+        } catch (RejectedExecutionException e) {
+            throw new ServiceBusyException("Too many chunks are waiting for a fan-out thread");
+        } finally {
+            futures.forEach(future -> future.cancel(false));
+        }
+    }
+
+    /**
+     * Run a query for every chunk of the ids and pass the results of every chunk to the consumer as soon as
+     * the chunk completes, on the calling thread.
+     *
+     * @param ids the ids, duplicates are ignored
+     * @param query the query of one chunk of ids
+     * @param timeout the time the caller waits for all the chunks
+     * @param consumer the result consumer
+     * @param <T> the result type
+     */
+    public <T> void queryEach(List<Long> ids, Function<List<Long>, List<T>> query, Duration timeout,
+                              Consumer<T> consumer) throws ServiceBusyException {
+        List<List<Long>> chunks = chunks(ids);
+        long deadline = System.nanoTime() + timeout.toNanos();
+        if (executor == null) {
+            runSequentially(chunks, chunk -> query.apply(chunk).forEach(consumer), deadline, timeout);
+            return;
+        }
+        CompletionService<List<T>> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<List<T>>> futures = new ArrayList<>();
+        try {
+            for (List<Long> chunk : chunks) {
+                futures.add(completionService.submit(task(chunk, query)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                Future<List<T>> completed = completionService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (completed == null) {
+                    throw deadlineExceeded(timeout);
+                }
+                await(completed, deadline, timeout).forEach(consumer);
+            }
+        } catch (RejectedExecutionException e) {
+            throw new ServiceBusyException("Too many chunks are waiting for a fan-out thread");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceBusyException("Interrupted while waiting for the chunks");
+        } finally {
+            futures.forEach(future -> future.cancel(false));
+        }
+    }
+
+    public int getQueueSize() {
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("booking.execution.fanout.queued", this, FanOutExecutor::getQueueSize)
+                .description("Query chunks waiting for a fan-out thread")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * The chunk runs in its own read-only transaction and counts its statements with the calling request.
+     */
+    private <T> Callable<List<T>> task(List<Long> chunk, Function<List<Long>, List<T>> query) {
+        SqlStatementCounter.Count count = SqlStatementCounter.current();
+        return () -> {
+            SqlStatementCounter.bind(count);
+            try {
+                return readOnlyTransaction.execute(status -> query.apply(chunk));
+            } finally {
+                SqlStatementCounter.bind(null);
+            }
+        };
+    }
+
+    /**
+     * Without a pool the chunks run one after the other in one transaction, and the deadline is checked before
+     * every chunk, so an expired deadline fails before the first result as with the pool.
+     */
+    private void runSequentially(List<List<Long>> chunks, Consumer<List<Long>> chunkQuery, long deadline,
+                                 Duration timeout) throws ServiceBusyException {
+        Boolean inTime = readOnlyTransaction.execute(status -> {
+            for (List<Long> chunk : chunks) {
+                if (deadline - System.nanoTime() <= 0) {
+                    return false;
+                }
+                chunkQuery.accept(chunk);
+            }
+            return true;
+        });
+        if (!Boolean.TRUE.equals(inTime)) {
+            throw deadlineExceeded(timeout);
+        }
+    }
+
+    private static <T> List<T> await(Future<List<T>> future, long deadline, Duration timeout)
+            throws ServiceBusyException {
+        try {
+            return future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw deadlineExceeded(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceBusyException("Interrupted while waiting for the chunks");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static ServiceBusyException deadlineExceeded(Duration timeout) {
+        return new ServiceBusyException("Query chunks did not complete within " + timeout.toMillis() + " ms");
+    }
+
+    private List<List<Long>> chunks(List<Long> ids) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinctIds.size(); from += chunkSize) {
+            chunks.add(distinctIds.subList(from, Math.min(from + chunkSize, distinctIds.size())));
+        }
+        return chunks;
+    }
+
+    private static ThreadPoolExecutor createExecutor(ExecutionProperties executionProperties) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(executionProperties.getFanOutThreads(), executionProperties.getFanOutThreads(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(executionProperties.getFanOutQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "fan-out-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+}
@@ -0,0 +1,189 @@
+package com.booking.hotel.execution;
+
+import com.booking.hotel.exception.ServiceBusyException;
+import com.booking.hotel.metrics.SqlStatementCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the database work of requests according to the {@link ExecutionMode}.
+ * In every mode at most max-concurrent-queries pieces of work use the database at the same time, so that
+ * requests wait for a permit instead of holding a thread while they wait for a pooled connection.
+ * Work that cannot be queued or does not get a permit in time fails with a {@link ServiceBusyException}.
+ */
+@Component
+@Slf4j
+public class JdbcExecutor implements MeterBinder {
+
+    private final ExecutionMode mode;
+    private final ExecutorService executor;
+    private final ResizableSemaphore permits;
+    private volatile int maxConcurrentQueries;
+    private final long acquireTimeoutMs;
+
+    public JdbcExecutor(ExecutionProperties executionProperties) {
+        this.mode = executionProperties.getMode();
+        this.maxConcurrentQueries = executionProperties.getMaxConcurrentQueries();
+        this.permits = new ResizableSemaphore(maxConcurrentQueries);
+        this.acquireTimeoutMs = executionProperties.getAcquireTimeoutMs();
+        this.executor = createExecutor(executionProperties);
+        log.info("Database work runs in {} mode with {} concurrent queries", mode, maxConcurrentQueries);
+    }
+
+    /**
+     * Run a piece of database work.
+     * In {@link ExecutionMode#BLOCKING} mode it runs on the calling thread and the returned future is complete.
+     *
+     * @param work the work
+     * @param <T> the result type
+     * @return the future result of the work
+     */
+    public <T> CompletableFuture<T> supply(Callable<T> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (executor == null) {
+            run(work, future);
+            return future;
+        }
+        SqlStatementCounter.Count count = SqlStatementCounter.current();
+        try {
+            executor.execute(() -> {
+                SqlStatementCounter.bind(count);
+                try {
+                    run(work, future);
+                } finally {
+                    SqlStatementCounter.bind(null);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new ServiceBusyException("Too many requests are waiting for the database"));
+        }
+        return future;
+    }
+
+    /**
+     * Change the number of requests that can use the database at the same time, e.g. to follow the size
+     * of the connection pool. Requests above a lowered limit complete normally.
+     *
+     * @param maxConcurrentQueries the new limit
+     */
+    public synchronized void setMaxConcurrentQueries(int maxConcurrentQueries) {
+        int difference = maxConcurrentQueries - this.maxConcurrentQueries;
+        if (difference > 0) {
+            permits.release(difference);
+        } else if (difference < 0) {
+            permits.reducePermits(-difference);
+        }
+        this.maxConcurrentQueries = maxConcurrentQueries;
+    }
+
+    public int getMaxConcurrentQueries() {
+        return maxConcurrentQueries;
+    }
+
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    public int getQueueSize() {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue().size() : 0;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("booking.execution.queries.active", this, e -> maxConcurrentQueries - e.getAvailablePermits())
+                .description("Requests using the database")
+                .register(registry);
+        Gauge.builder("booking.execution.queued", this, JdbcExecutor::getQueueSize)
+                .description("Requests waiting for a JDBC thread")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private <T> void run(Callable<T> work, CompletableFuture<T> future) {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                future.completeExceptionally(new ServiceBusyException("Timed out waiting for the database"));
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return;
+        }
+        try {
+            future.complete(work.call());
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static ExecutorService createExecutor(ExecutionProperties executionProperties) {
+        switch (executionProperties.getMode()) {
+            case ASYNC:
+                AtomicInteger threadNumber = new AtomicInteger();
+                return new ThreadPoolExecutor(executionProperties.getThreads(), executionProperties.getThreads(),
+                        0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(executionProperties.getQueueCapacity()),
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "jdbc-" + threadNumber.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+            case VIRTUAL:
+                return virtualThreadPerTaskExecutor();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Looked up by reflection, so that the build still targets Java 8.
+     */
+    private static ExecutorService virtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("The VIRTUAL execution mode needs Java 21 or later", e);
+        }
+    }
+
+    /**
+     * Exposes {@link Semaphore#reducePermits}, which lowers the limit without waiting for the permits in use.
+     */
+    private static final class ResizableSemaphore extends Semaphore {
+
+        private static final long serialVersionUID = 1L;
+
+        ResizableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
@@ -7,7 +7,6 @@ import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.http.server.ServletServerHttpRequest;
-import org.springframework.http.server.ServletServerHttpResponse;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
 
@@ -29,10 +28,9 @@ public class CustomResponseAdapter implements ResponseBodyAdvice<Object> {
     public Object beforeBodyWrite(Object object, MethodParameter methodParameter, MediaType mediaType,
                                   Class<? extends HttpMessageConverter<?>> aClass,
                                   ServerHttpRequest serverHttpRequest, ServerHttpResponse serverHttpResponse) {
-        if (serverHttpRequest instanceof ServletServerHttpRequest &&
-                serverHttpResponse instanceof ServletServerHttpResponse) {
-            loggingService.logResponse(((ServletServerHttpRequest) serverHttpRequest).getServletRequest(),
-                    ((ServletServerHttpResponse) serverHttpResponse).getServletResponse(), object);
+        if (serverHttpRequest instanceof ServletServerHttpRequest) {
+            loggingService.captureResponseBody(((ServletServerHttpRequest) serverHttpRequest).getServletRequest(),
+                    object);
         }
         return object;
     }
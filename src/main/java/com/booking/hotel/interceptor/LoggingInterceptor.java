@@ -9,12 +9,11 @@ import javax.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Component;
-import org.springframework.web.servlet.HandlerInterceptor;
-import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
 
 @Component
 @Slf4j
-public class LoggingInterceptor implements HandlerInterceptor {
+public class LoggingInterceptor implements AsyncHandlerInterceptor {
 
     private LoggingService loggingService;
 
@@ -24,12 +23,25 @@ public class LoggingInterceptor implements HandlerInterceptor {
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
-        if (DispatcherType.REQUEST.name().equals(request.getDispatcherType().name())
-                && request.getMethod().equals(HttpMethod.GET.name())) {
-            loggingService.logRequest(request, null);
+        if (DispatcherType.REQUEST.name().equals(request.getDispatcherType().name())) {
+            loggingService.startRequest(request);
+            if (request.getMethod().equals(HttpMethod.GET.name())) {
+                loggingService.logRequest(request, null);
+            }
         }
         return true;
     }
 
+    /**
+     * Called once per request: after the request dispatch, or after the last dispatch of an asynchronous request.
+     */
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (DispatcherType.REQUEST.name().equals(request.getDispatcherType().name())
+                || DispatcherType.ASYNC.name().equals(request.getDispatcherType().name())) {
+            loggingService.logResponse(request, response, ex);
+        }
+    }
 
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.booking.hotel.interceptor;
+
+import com.booking.hotel.metrics.SqlStatementCounter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Records the number of SQL statements of every request per endpoint, so that endpoints whose
+ * statement count grows with the size of the result (N+1 queries) stand out.
+ * The count of an asynchronous request is kept on the request between its dispatches.
+ */
+@Component
+@Slf4j
+public class SqlStatementInterceptor implements AsyncHandlerInterceptor {
+
+    public static final String SQL_STATEMENTS = "http.server.requests.sql";
+
+    private static final String COUNT_ATTRIBUTE = SqlStatementInterceptor.class.getName() + ".count";
+
+    private MeterRegistry meterRegistry;
+    private long warnThreshold;
+
+    public SqlStatementInterceptor(MeterRegistry meterRegistry,
+                                   @Value("${booking.metrics.sql-warn-threshold:20}") long warnThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.warnThreshold = warnThreshold;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (DispatcherType.REQUEST.name().equals(request.getDispatcherType().name())) {
+            SqlStatementCounter.start();
+        } else if (DispatcherType.ASYNC.name().equals(request.getDispatcherType().name())) {
+            SqlStatementCounter.bind((SqlStatementCounter.Count) request.getAttribute(COUNT_ATTRIBUTE));
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        request.setAttribute(COUNT_ATTRIBUTE, SqlStatementCounter.current());
+        SqlStatementCounter.bind(null);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (DispatcherType.REQUEST.name().equals(request.getDispatcherType().name())
+                || DispatcherType.ASYNC.name().equals(request.getDispatcherType().name())) {
+            long statements = SqlStatementCounter.stop();
+            Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = route instanceof String ? (String) route : "UNKNOWN";
+            DistributionSummary.builder(SQL_STATEMENTS)
+                    .baseUnit("statements")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(statements);
+            if (statements >= warnThreshold) {
+                log.warn("{} SQL statements for {} {}, possible N+1 queries", statements, request.getMethod(), uri);
+            }
+        }
+    }
+}
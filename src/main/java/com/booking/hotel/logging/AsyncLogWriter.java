@@ -0,0 +1,125 @@
+package com.booking.hotel.logging;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Formats and writes log events on a background thread, which waits on the queue while
+ * there are no events. Request threads only enqueue events on a bounded queue and never block:
+ * when the queue is full the event is dropped and counted.
+ */
+@Component
+@Slf4j
+public class AsyncLogWriter implements MeterBinder {
+
+    private final BlockingQueue<LogEvent> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean running;
+    private Thread thread;
+
+    public AsyncLogWriter(LoggingProperties loggingProperties) {
+        this.queue = new ArrayBlockingQueue<>(loggingProperties.getQueueCapacity());
+    }
+
+    /**
+     * Enqueue an event without blocking.
+     *
+     * @param event the log event
+     * @return false when the queue is full and the event was dropped
+     */
+    public boolean offer(LogEvent event) {
+        if (!queue.offer(event)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("logging.events.dropped", this, AsyncLogWriter::getDroppedCount)
+                .description("Log events dropped because the queue was full")
+                .register(registry);
+        Gauge.builder("logging.events.queued", this, AsyncLogWriter::getQueueSize)
+                .description("Log events waiting to be written")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "async-log-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        thread.interrupt();
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                write(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        // Stopped: write what is left without waiting.
+        Thread.interrupted();
+        LogEvent event;
+        while ((event = queue.poll()) != null) {
+            write(event);
+        }
+    }
+
+    private void write(LogEvent event) {
+        try {
+            log.info(format(event));
+        } catch (RuntimeException e) {
+            log.warn("Failed to write log event", e);
+        }
+    }
+
+    static String format(LogEvent event) {
+        StringBuilder builder = new StringBuilder(128);
+        builder.append(event.getType()).append(' ');
+        builder.append("method=[").append(event.getMethod()).append("] ");
+        builder.append("path=[").append(event.getPath()).append("] ");
+        if (event.getQuery() != null) {
+            builder.append("query=[").append(event.getQuery()).append("] ");
+        }
+        if (event.getType() == LogEvent.Type.RESPONSE) {
+            builder.append("status=[").append(event.getStatus()).append("] ");
+            builder.append("duration=[").append(event.getDurationMillis()).append("ms] ");
+        }
+        if (event.getHeaders() != null && !event.getHeaders().isEmpty()) {
+            builder.append("headers=[").append(event.getHeaders()).append("] ");
+        }
+        if (event.getBody() != null) {
+            builder.append("body=[").append(event.getBody()).append("]");
+        }
+        return builder.toString();
+    }
+}
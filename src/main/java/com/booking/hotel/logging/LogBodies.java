@@ -0,0 +1,44 @@
+package com.booking.hotel.logging;
+
+import java.util.Collection;
+
+/**
+ * Renders request and response bodies up to a maximum length, so that a large body
+ * is never turned into one large string.
+ */
+public final class LogBodies {
+
+    private static final String TRUNCATED = "...(truncated)";
+
+    private LogBodies() {
+    }
+
+    public static String render(Object body, int maxLength) {
+        if (body == null) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder(Math.min(maxLength, 256));
+        if (body instanceof Collection) {
+            Collection<?> elements = (Collection<?>) body;
+            builder.append('[');
+            for (Object element : elements) {
+                if (builder.length() > 1) {
+                    builder.append(", ");
+                }
+                builder.append(element);
+                if (builder.length() > maxLength) {
+                    return truncate(builder, maxLength) + " (" + elements.size() + " elements)";
+                }
+            }
+            builder.append(']');
+        } else {
+            builder.append(body);
+        }
+        return builder.length() > maxLength ? truncate(builder, maxLength) : builder.toString();
+    }
+
+    private static String truncate(StringBuilder builder, int maxLength) {
+        builder.setLength(maxLength);
+        return builder.append(TRUNCATED).toString();
+    }
+}
@@ -0,0 +1,38 @@
+package com.booking.hotel.logging;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * What is captured of a request or a response on the request thread.
+ * The body is already rendered and truncated, so a queued event never holds on to the objects of a request
+ * or a response. Only formatting and writing happen on the log writer thread.
+ */
+@Value
+@Builder
+public class LogEvent {
+
+    public enum Type {
+        REQUEST,
+        RESPONSE
+    }
+
+    private Type type;
+
+    private String method;
+
+    private String path;
+
+    private String query;
+
+    private int status;
+
+    private long durationMillis;
+
+    private Map<String, String> headers;
+
+    private String body;
+
+}
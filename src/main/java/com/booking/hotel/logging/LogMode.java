@@ -0,0 +1,27 @@
+package com.booking.hotel.logging;
+
+/**
+ * How much of the requests of an endpoint is logged.
+ */
+public enum LogMode {
+
+    /**
+     * Nothing, except errors and slow requests.
+     */
+    NONE,
+
+    /**
+     * Method, path, status and duration, without bodies.
+     */
+    METADATA,
+
+    /**
+     * One in every sample-rate requests in full, nothing for the others except errors and slow requests.
+     */
+    SAMPLED,
+
+    /**
+     * Everything, including the bodies.
+     */
+    FULL
+}
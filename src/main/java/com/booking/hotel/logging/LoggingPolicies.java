@@ -0,0 +1,97 @@
+package com.booking.hotel.logging;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Decides how much of a request is logged.
+ * The patterns are compiled once and the policy of every endpoint is resolved once by its
+ * route pattern, so a decision is a map lookup and, for sampled endpoints, a counter increment.
+ */
+@Component
+public class LoggingPolicies {
+
+    private final List<CompiledPolicy> policies;
+    private final CompiledPolicy defaultPolicy;
+    private final long slowThresholdNanos;
+    private final Map<String, CompiledPolicy> policiesByRoute = new ConcurrentHashMap<>();
+
+    public LoggingPolicies(LoggingProperties loggingProperties) {
+        PathPatternParser parser = new PathPatternParser();
+        this.policies = loggingProperties.getPolicies().stream()
+                .map(policy -> new CompiledPolicy(parser.parse(policy.getPattern()), policy.getMode(),
+                        policy.getSampleRate()))
+                .collect(Collectors.toList());
+        this.defaultPolicy = new CompiledPolicy(null, loggingProperties.getDefaultMode(), 1);
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(loggingProperties.getSlowThresholdMs());
+    }
+
+    /**
+     * Decide how much of a request is logged.
+     *
+     * @param request the http request, after its handler has been resolved
+     * @return {@link LogMode#NONE}, {@link LogMode#METADATA} or {@link LogMode#FULL}
+     */
+    public LogMode decide(HttpServletRequest request) {
+        Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (!(route instanceof String)) {
+            return defaultPolicy.decide();
+        }
+        CompiledPolicy policy = policiesByRoute.get(route);
+        if (policy == null) {
+            policy = policiesByRoute.computeIfAbsent((String) route, this::match);
+        }
+        return policy.decide();
+    }
+
+    /**
+     * Errors and slow requests are logged whatever the policy is.
+     *
+     * @param status the response status
+     * @param durationNanos the request duration
+     * @return true when the request must be logged
+     */
+    public boolean isAlwaysLogged(int status, long durationNanos) {
+        return status >= 400 || durationNanos >= slowThresholdNanos;
+    }
+
+    private CompiledPolicy match(String route) {
+        PathContainer path = PathContainer.parsePath(route);
+        return policies.stream()
+                .filter(policy -> policy.pattern.matches(path))
+                .findFirst()
+                .orElse(defaultPolicy);
+    }
+
+    private static class CompiledPolicy {
+
+        private final PathPattern pattern;
+        private final LogMode mode;
+        private final int sampleRate;
+        private final AtomicLong requests = new AtomicLong();
+
+        CompiledPolicy(PathPattern pattern, LogMode mode, int sampleRate) {
+            this.pattern = pattern;
+            this.mode = mode;
+            this.sampleRate = Math.max(1, sampleRate);
+        }
+
+        LogMode decide() {
+            if (mode != LogMode.SAMPLED) {
+                return mode;
+            }
+            return requests.getAndIncrement() % sampleRate == 0 ? LogMode.FULL : LogMode.NONE;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.booking.hotel.logging;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "booking.logging")
+public class LoggingProperties {
+
+    /**
+     * Maximum number of events waiting to be written. Events are dropped when the queue is full.
+     */
+    private int queueCapacity = 10_000;
+
+    /**
+     * Maximum number of characters of a request or response body that is logged.
+     */
+    private int maxBodyLength = 1024;
+
+    /**
+     * Names of the request and response headers that are logged.
+     */
+    private List<String> headers = new ArrayList<>();
+
+    /**
+     * Mode of the endpoints that match no policy.
+     */
+    private LogMode defaultMode = LogMode.METADATA;
+
+    /**
+     * Requests that take at least this long are always logged.
+     */
+    private long slowThresholdMs = 1000;
+
+    /**
+     * Policies per path pattern. The first policy whose pattern matches the endpoint is used.
+     */
+    private List<Policy> policies = new ArrayList<>();
+
+    @Data
+    public static class Policy {
+
+        /**
+         * Path pattern of the endpoints, for example /bookings/**.
+         */
+        private String pattern;
+
+        private LogMode mode = LogMode.METADATA;
+
+        /**
+         * One in every sample-rate requests is logged in {@link LogMode#SAMPLED} mode.
+         */
+        private int sampleRate = 100;
+
+    }
+}
@@ -0,0 +1,140 @@
+package com.booking.hotel.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.BaseStream;
+
+/**
+ * Times every call of the booking and hotel services and repositories, and records the number of rows
+ * returned by every repository query.
+ * The meters of a method are looked up once and kept, so a timed call costs two clock reads and two map lookups.
+ */
+@Aspect
+@Component
+public class LayerTimingAspect {
+
+    public static final String SERVICE_TIMER = "booking.service";
+    public static final String REPOSITORY_TIMER = "booking.repository";
+    public static final String REPOSITORY_ROWS = "booking.repository.rows";
+
+    private static final String APPLICATION_PACKAGE = "com.booking.hotel.";
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Method, MethodMeters>> meters = new ConcurrentHashMap<>();
+
+    public LayerTimingAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(* com.booking.hotel.service.BookingService+.*(..))" +
+            " || execution(* com.booking.hotel.service.HotelService+.*(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        MethodMeters methodMeters = meters(joinPoint, SERVICE_TIMER, false);
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            methodMeters.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Around("execution(* com.booking.hotel.repository.BookingRepository+.*(..))" +
+            " || execution(* com.booking.hotel.repository.HotelRepository+.*(..))")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        MethodMeters methodMeters = meters(joinPoint, REPOSITORY_TIMER, true);
+        long start = System.nanoTime();
+        Object result = null;
+        try {
+            result = joinPoint.proceed();
+            return result;
+        } finally {
+            methodMeters.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (methodMeters.rows != null) {
+                long rows = rows(result);
+                if (rows >= 0) {
+                    methodMeters.rows.record(rows);
+                }
+            }
+        }
+    }
+
+    private MethodMeters meters(ProceedingJoinPoint joinPoint, String timerName, boolean countRows) {
+        Class<?> proxyType = joinPoint.getThis().getClass();
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Map<Method, MethodMeters> methods = meters.computeIfAbsent(proxyType, type -> new ConcurrentHashMap<>());
+        MethodMeters methodMeters = methods.get(method);
+        if (methodMeters == null) {
+            methodMeters = methods.computeIfAbsent(method,
+                    m -> new MethodMeters(timerName, componentName(proxyType), m.getName(),
+                            countRows && m.getReturnType() != void.class));
+        }
+        return methodMeters;
+    }
+
+    /**
+     * The name of the application interface that the proxy implements, e.g. BookingRepository
+     * rather than the Spring Data implementation or a CGLIB subclass.
+     */
+    private static String componentName(Class<?> proxyType) {
+        for (Class<?> type : ClassUtils.getAllInterfacesForClassAsSet(proxyType)) {
+            if (type.getName().startsWith(APPLICATION_PACKAGE)) {
+                return type.getSimpleName();
+            }
+        }
+        return ClassUtils.getUserClass(proxyType).getSimpleName();
+    }
+
+    /**
+     * The number of rows of a query result, or -1 when it is not known up front, e.g. for a stream.
+     */
+    private static long rows(Object result) {
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        if (result instanceof Iterable || result instanceof BaseStream) {
+            return -1;
+        }
+        return 1;
+    }
+
+    private final class MethodMeters {
+
+        private final Timer timer;
+        private final DistributionSummary rows;
+
+        private MethodMeters(String timerName, String component, String method, boolean countRows) {
+            this.timer = Timer.builder(timerName)
+                    .tag("component", component)
+                    .tag("method", method)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.rows = !countRows ? null : DistributionSummary.builder(REPOSITORY_ROWS)
+                    .baseUnit("rows")
+                    .tag("component", component)
+                    .tag("method", method)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.booking.hotel.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the SQL statements that Hibernate prepares on the current thread while a count is started.
+ * Registered through the hibernate.session_factory.statement_inspector property, which instantiates it
+ * outside of Spring, hence the static state.
+ * <p>
+ * A count can be carried to other threads with {@link #current()} and {@link #bind(Count)}, so that
+ * statements of a request that runs on an executor are counted with the request.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<Count> COUNT = new ThreadLocal<>();
+
+    /**
+     * Start counting the statements of the current thread, discarding any previous count.
+     */
+    public static void start() {
+        COUNT.set(new Count());
+    }
+
+    /**
+     * Stop counting the statements of the current thread.
+     *
+     * @return the number of statements since the count was started, or 0 if it was not
+     */
+    public static long stop() {
+        Count count = COUNT.get();
+        COUNT.remove();
+        return count == null ? 0 : count.getStatements();
+    }
+
+    /**
+     * The count of the current thread.
+     *
+     * @return the count, or null when no count is started
+     */
+    public static Count current() {
+        return COUNT.get();
+    }
+
+    /**
+     * Count the statements of the current thread on the given count, or stop counting when it is null.
+     *
+     * @param count the count, usually started on another thread
+     */
+    public static void bind(Count count) {
+        if (count == null) {
+            COUNT.remove();
+        } else {
+            COUNT.set(count);
+        }
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Count count = COUNT.get();
+        if (count != null) {
+            count.statements.incrementAndGet();
+        }
+        return sql;
+    }
+
+    /**
+     * The statements of one request, which may run its queries on several threads at the same time.
+     */
+    public static final class Count {
+
+        private final AtomicLong statements = new AtomicLong();
+
+        public long getStatements() {
+            return statements.get();
+        }
+    }
+}
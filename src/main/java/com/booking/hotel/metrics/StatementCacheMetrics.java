@@ -0,0 +1,57 @@
+package com.booking.hotel.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Publishes how well the statements are reused: hits and misses of the Hibernate query plan cache, which
+ * saves parsing JPQL into SQL, and the statements prepared per pooled connection checkout, which the
+ * per-connection statement cache of H2 (QUERY_CACHE_SIZE) saves parsing on the database side.
+ * Needs hibernate.generate_statistics, and reports nothing without it.
+ */
+@Component
+public class StatementCacheMetrics implements MeterBinder {
+
+    private final Statistics statistics;
+
+    public StatementCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("booking.query.plan.cache", statistics, Statistics::getQueryPlanCacheHitCount)
+                .tag("result", "hit")
+                .description("Queries whose plan was found in the Hibernate query plan cache")
+                .register(registry);
+        FunctionCounter.builder("booking.query.plan.cache", statistics, Statistics::getQueryPlanCacheMissCount)
+                .tag("result", "miss")
+                .description("Queries whose plan was not found in the Hibernate query plan cache")
+                .register(registry);
+        Gauge.builder("booking.query.plan.cache.hit.ratio", statistics, StatementCacheMetrics::hitRatio)
+                .description("Share of the queries whose plan was cached, since startup")
+                .register(registry);
+        Gauge.builder("booking.jdbc.statements.per.connection", statistics,
+                StatementCacheMetrics::statementsPerConnection)
+                .description("Statements prepared per connection checkout, since startup")
+                .register(registry);
+    }
+
+    private static double hitRatio(Statistics statistics) {
+        long hits = statistics.getQueryPlanCacheHitCount();
+        long requests = hits + statistics.getQueryPlanCacheMissCount();
+        return requests == 0 ? Double.NaN : (double) hits / requests;
+    }
+
+    private static double statementsPerConnection(Statistics statistics) {
+        long connections = statistics.getConnectCount();
+        return connections == 0 ? Double.NaN : (double) statistics.getPrepareStatementCount() / connections;
+    }
+}
@@ -0,0 +1,18 @@
+package com.booking.hotel.repository;
+
+import com.booking.hotel.dto.HotelCurrencyTotals;
+import com.booking.hotel.dto.SurnameHotelCount;
+
+import java.util.List;
+
+/**
+ * The totals over all the bookings that the in-memory views of the bookings are built from.
+ * They are read from the main database, or from every shard when the bookings are sharded.
+ */
+public interface BookingAggregates {
+
+    List<SurnameHotelCount> countBookingsBySurnameAndHotel();
+
+    List<HotelCurrencyTotals> sumTotalsByHotelAndCurrency();
+
+}
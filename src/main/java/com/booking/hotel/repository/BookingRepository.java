@@ -1,17 +1,106 @@
 package com.booking.hotel.repository;
 
+import com.booking.hotel.dto.BookingSummary;
+import com.booking.hotel.dto.CurrencyAmount;
+import com.booking.hotel.dto.HotelCurrencyTotals;
+import com.booking.hotel.dto.SurnameHotelCount;
 import com.booking.hotel.entity.Booking;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
-public interface BookingRepository extends JpaRepository<Booking, Long> {
+public interface BookingRepository extends JpaRepository<Booking, Long>, BookingAggregates {
+
+    /**
+     * A power of two, so that padded IN clauses of full and partial chunks share few statements.
+     */
+    int IN_CLAUSE_CHUNK_SIZE = 512;
+
+    String SUMMARY = "select new com.booking.hotel.dto.BookingSummary(b.id, b.customerName, b.customerSurname, " +
+            "b.pax, b.priceAmount, b.currency, b.hotel.id) from Booking b ";
+
+    @Override
+    @EntityGraph(attributePaths = "hotel")
+    List<Booking> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = "hotel")
+    Optional<Booking> findById(Long id);
 
     List<Booking> findBookingsByCustomerSurname(String customerSurname);
 
-    @Query("select b from Booking b where b.hotel.id in :idsHotel")
+    @Query("select new com.booking.hotel.dto.SurnameHotelCount(b.customerSurname, b.hotel.id, count(b)) " +
+            "from Booking b group by b.customerSurname, b.hotel.id")
+    @Override
+    List<SurnameHotelCount> countBookingsBySurnameAndHotel();
+
+    @Query("select b from Booking b join fetch b.hotel where b.hotel.id in :idsHotel")
     List<Booking> findBookingsByHotelIds(List<Long> idsHotel);
+
+    @Query(SUMMARY + "where b.hotel.id in :idsHotel")
+    List<BookingSummary> findBookingSummariesByHotelIds(@Param("idsHotel") List<Long> idsHotel);
+
+    default List<Booking> findBookingsByHotelIdsInChunks(List<Long> idsHotel) {
+        return InClauses.inChunks(idsHotel, IN_CLAUSE_CHUNK_SIZE, this::findBookingsByHotelIds);
+    }
+
+    default List<BookingSummary> findBookingSummariesByHotelIdsInChunks(List<Long> idsHotel) {
+        return InClauses.inChunks(idsHotel, IN_CLAUSE_CHUNK_SIZE, this::findBookingSummariesByHotelIds);
+    }
+
+    @Query("select b from Booking b join fetch b.hotel h where h.name = :name")
+    List<Booking> findBookingsByHotelName(@Param("name") String name);
+
+    @Query("select b from Booking b join fetch b.hotel h where h.name = :name and b.id > :afterId order by b.id")
+    List<Booking> findBookingsByHotelNameAfter(@Param("name") String name, @Param("afterId") long afterId,
+                                               Pageable pageable);
+
+    @Query(SUMMARY + "where b.hotel.name = :name")
+    List<BookingSummary> findBookingSummariesByHotelName(@Param("name") String name);
+
+    @Query("select new com.booking.hotel.dto.CurrencyAmount(b.currency, sum(b.priceAmount)) " +
+            "from Booking b where b.hotel.name = :name group by b.currency")
+    List<CurrencyAmount> sumPriceAmountsByHotelName(@Param("name") String name);
+
+    @Query("select new com.booking.hotel.dto.HotelCurrencyTotals(b.hotel.id, b.currency, count(b), sum(b.pax), " +
+            "sum(b.priceAmount)) from Booking b group by b.hotel.id, b.currency")
+    @Override
+    List<HotelCurrencyTotals> sumTotalsByHotelAndCurrency();
+
+    @Query("select b from Booking b join fetch b.hotel where b.id > :afterId order by b.id")
+    List<Booking> findBookingsAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    @Query(SUMMARY + "where b.id > :afterId order by b.id")
+    List<BookingSummary> findBookingSummariesAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select b from Booking b join fetch b.hotel order by b.id")
+    Stream<Booking> streamAllBookings();
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select b from Booking b join fetch b.hotel where b.id >= :fromId and b.id < :toId order by b.id")
+    Stream<Booking> streamBookings(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select b from Booking b join fetch b.hotel where b.hotel.id = :hotelId " +
+            "and b.id >= :fromId and b.id < :toId order by b.id")
+    Stream<Booking> streamBookingsByHotelId(@Param("hotelId") long hotelId, @Param("fromId") long fromId,
+                                            @Param("toId") long toId);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select b from Booking b join fetch b.hotel h where h.name = :name order by b.id")
+    Stream<Booking> streamBookingsByHotelName(@Param("name") String name);
 }
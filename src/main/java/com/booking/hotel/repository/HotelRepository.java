@@ -1,15 +1,32 @@
 package com.booking.hotel.repository;
 
 import com.booking.hotel.entity.Hotel;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface HotelRepository extends JpaRepository<Hotel, Long> {
 
     Hotel findHotelByName(String name);
     List<Hotel> findBookingsByName(String name);
+    List<Hotel> findHotelsByNameIn(Collection<String> names);
+
+    @Query("select h from Hotel h where h.id > :afterId order by h.id")
+    List<Hotel> findHotelsAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select h from Hotel h order by h.id")
+    Stream<Hotel> streamAllHotels();
 
 }
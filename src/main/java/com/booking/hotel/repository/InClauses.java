@@ -0,0 +1,39 @@
+package com.booking.hotel.repository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Runs queries with an IN clause over a bounded number of parameters at a time.
+ * Together with hibernate.query.in_clause_parameter_padding, every full chunk uses the same
+ * statement, so its plan is reused, and no query comes close to the parameter limits of the database.
+ */
+public final class InClauses {
+
+    private InClauses() {
+    }
+
+    /**
+     * Run a query once per chunk of distinct ids and concatenate the results.
+     *
+     * @param ids the ids, duplicates are ignored
+     * @param chunkSize the maximum number of ids of one query
+     * @param query the query of one chunk of ids
+     * @param <T> the result type
+     * @return the results of all the chunks
+     */
+    public static <T> List<T> inChunks(List<Long> ids, int chunkSize, Function<List<Long>, List<T>> query) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        if (distinctIds.size() <= chunkSize) {
+            return distinctIds.isEmpty() ? new ArrayList<>() : query.apply(distinctIds);
+        }
+        List<T> results = new ArrayList<>();
+        for (int from = 0; from < distinctIds.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, distinctIds.size());
+            results.addAll(query.apply(distinctIds.subList(from, to)));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,53 @@
+package com.booking.hotel.service;
+
+import com.booking.hotel.entity.Booking;
+import com.booking.hotel.entity.Hotel;
+import com.booking.hotel.repository.HotelRepository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves the hotels named by a batch of bookings, for the booking services.
+ */
+final class BatchHotels {
+
+    private BatchHotels() {
+    }
+
+    /**
+     * Retrieve the hotels named by the bookings with one query, and create the missing ones one at a time
+     * through {@link HotelService#getOrCreateHotel(Hotel)}, so concurrent batches that name the same new hotel
+     * share it instead of failing on its unique name.
+     *
+     * @param bookings the bookings
+     * @param hotelRepository the hotel repository
+     * @param hotelService the hotel service
+     * @return the hotels by name
+     */
+    static Map<String, Hotel> resolve(List<Booking> bookings, HotelRepository hotelRepository,
+                                      HotelService hotelService) {
+        Map<String, Hotel> requestedHotels = new HashMap<>();
+        for (Booking booking : bookings) {
+            if (hasHotelName(booking)) {
+                requestedHotels.putIfAbsent(booking.getHotel().getName(), booking.getHotel());
+            }
+        }
+        if (requestedHotels.isEmpty()) {
+            return requestedHotels;
+        }
+        Map<String, Hotel> hotels = hotelRepository.findHotelsByNameIn(requestedHotels.keySet()).stream()
+                .collect(Collectors.toMap(Hotel::getName, Function.identity()));
+        requestedHotels.values().stream()
+                .filter(hotel -> !hotels.containsKey(hotel.getName()))
+                .forEach(hotel -> hotels.put(hotel.getName(), hotelService.getOrCreateHotel(hotel)));
+        return hotels;
+    }
+
+    static boolean hasHotelName(Booking booking) {
+        return booking.getHotel() != null && booking.getHotel().getName() != null;
+    }
+}
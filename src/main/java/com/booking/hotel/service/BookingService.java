@@ -1,16 +1,44 @@
 package com.booking.hotel.service;
 
+import com.booking.hotel.dto.BookingBatchResult;
+import com.booking.hotel.dto.BookingSummary;
+import com.booking.hotel.dto.CurrencyAmount;
+import com.booking.hotel.dto.NormalizedBookings;
 import com.booking.hotel.entity.Booking;
 import com.booking.hotel.entity.Hotel;
+import com.booking.hotel.exception.PreconditionFailedException;
 import com.booking.hotel.exception.ResourceNotFoundException;
+import com.booking.hotel.exception.ServiceBusyException;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface BookingService {
     List<Booking> getAllBookings();
+    List<Booking> getBookingsAfter(long afterId, int size);
+    List<BookingSummary> getBookingSummariesAfter(long afterId, int size);
+    NormalizedBookings getNormalizedBookingsAfter(long afterId, int size);
+    void streamAllBookings(Consumer<Booking> consumer);
+    void exportBookings(Long hotelId, long fromId, long toId, Consumer<Booking> consumer);
     Booking getBookingById(long bookingId) throws ResourceNotFoundException;
-    void createOrUpdateBooking(Booking booking);
+    Booking createOrUpdateBooking(Booking booking) throws PreconditionFailedException;
+    Booking updateBooking(long bookingId, Booking booking, Long expectedVersion)
+            throws ResourceNotFoundException, PreconditionFailedException;
+    Booking patchBooking(long bookingId, Booking changes, Long expectedVersion)
+            throws ResourceNotFoundException, PreconditionFailedException;
+    List<BookingBatchResult> createBookings(List<Booking> bookings);
     void deleteBooking(long bookingId) throws ResourceNotFoundException;
     List<Hotel> getHotelsByBookingSurname(String surname);
+    List<Hotel> getHotelsByBookingSurnamePrefix(String prefix);
     List<Booking> getBookingsByHotels(List<Long> ids);
+    List<Booking> getBookingsByHotels(List<Long> ids, Duration timeout) throws ServiceBusyException;
+    void streamBookingsByHotels(List<Long> ids, Duration timeout, Consumer<Booking> consumer)
+            throws ServiceBusyException;
+    List<BookingSummary> getBookingSummariesByHotels(List<Long> ids);
+    List<Booking> getBookingsByHotelName(String name);
+    List<Booking> getBookingsByHotelNameAfter(String name, long afterId, int size);
+    void streamBookingsByHotelName(String name, Consumer<Booking> consumer);
+    List<BookingSummary> getBookingSummariesByHotelName(String name);
+    List<CurrencyAmount> getTotalAmountsByHotelName(String name);
 }
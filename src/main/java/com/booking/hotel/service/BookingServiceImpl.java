@@ -1,23 +1,79 @@
 package com.booking.hotel.service;
 
+import com.booking.hotel.dto.BookingBatchResult;
+import com.booking.hotel.dto.BookingSummary;
+import com.booking.hotel.dto.CurrencyAmount;
+import com.booking.hotel.dto.NormalizedBookings;
 import com.booking.hotel.entity.Booking;
 import com.booking.hotel.entity.Hotel;
+import com.booking.hotel.event.BookingChangedEvent;
+import com.booking.hotel.event.BookingSnapshot;
+import com.booking.hotel.exception.PreconditionFailedException;
 import com.booking.hotel.exception.ResourceNotFoundException;
+import com.booking.hotel.exception.ServiceBusyException;
+import com.booking.hotel.execution.FanOutExecutor;
 import com.booking.hotel.repository.BookingRepository;
+import com.booking.hotel.repository.HotelRepository;
+import com.booking.hotel.repository.InClauses;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import javax.transaction.Transactional;
+import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
+@ConditionalOnProperty(name = "booking.sharding.enabled", havingValue = "false", matchIfMissing = true)
 public class BookingServiceImpl implements BookingService {
 
+    /**
+     * Matches hibernate.jdbc.batch_size, so every flush sends full JDBC batches.
+     */
+    private static final int BATCH_SIZE = 50;
+
     private BookingRepository bookingRepository;
+    private HotelRepository hotelRepository;
+    private HotelService hotelService;
+    private EntityManager entityManager;
+    private ApplicationEventPublisher eventPublisher;
+    private SurnameIndexService surnameIndexService;
+    private TableVersionService tableVersionService;
+    private FanOutExecutor fanOutExecutor;
+    private TransactionTemplate transactionTemplate;
 
-    public BookingServiceImpl(BookingRepository bookingRepository) {
+    /**
+     * The hotel service is resolved lazily, because it reads the bookings of its hotels through this service.
+     */
+    public BookingServiceImpl(BookingRepository bookingRepository, HotelRepository hotelRepository,
+                              @Lazy HotelService hotelService, EntityManager entityManager,
+                              ApplicationEventPublisher eventPublisher, SurnameIndexService surnameIndexService,
+                              TableVersionService tableVersionService, FanOutExecutor fanOutExecutor,
+                              PlatformTransactionManager transactionManager) {
         this.bookingRepository = bookingRepository;
+        this.hotelRepository = hotelRepository;
+        this.hotelService = hotelService;
+        this.entityManager = entityManager;
+        this.eventPublisher = eventPublisher;
+        this.surnameIndexService = surnameIndexService;
+        this.tableVersionService = tableVersionService;
+        this.fanOutExecutor = fanOutExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
@@ -27,29 +83,205 @@ public class BookingServiceImpl implements BookingService {
      * @return booking
      */
     @Override
+    @Transactional(readOnly = true)
     public Booking getBookingById(long bookingId) throws ResourceNotFoundException  {
         return bookingRepository.findById(bookingId)
                 .orElseThrow(() -> new ResourceNotFoundException("Booking with ID=" + bookingId +" not found"));
     }
 
     /**
-     * Retrieve all the bookings.
+     * Retrieve all the bookings, together with their hotels.
      *
      * @return a list with all the bookings
      */
     @Override
+    @Transactional(readOnly = true)
     public List<Booking> getAllBookings() {
         return bookingRepository.findAll();
     }
 
     /**
-     * Create/Update a booking.
+     * Retrieve a page of bookings ordered by id, starting after the provided booking id.
+     *
+     * @param afterId the id of the last booking of the previous page
+     * @param size the maximum number of bookings
+     * @return a list with the bookings of the page
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Booking> getBookingsAfter(long afterId, int size) {
+        return bookingRepository.findBookingsAfter(afterId, PageRequest.of(0, size));
+    }
+
+    /**
+     * Retrieve a page of booking summaries ordered by id, starting after the provided booking id.
+     * Only the booking columns are read, the hotel is referenced by id.
+     *
+     * @param afterId the id of the last booking of the previous page
+     * @param size the maximum number of bookings
+     * @return a list with the booking summaries of the page
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookingSummary> getBookingSummariesAfter(long afterId, int size) {
+        return bookingRepository.findBookingSummariesAfter(afterId, PageRequest.of(0, size));
+    }
+
+    /**
+     * Retrieve a page of booking summaries ordered by id, starting after the provided booking id,
+     * together with their distinct hotels.
+     *
+     * @param afterId the id of the last booking of the previous page
+     * @param size the maximum number of bookings
+     * @return the booking summaries of the page and their hotels ordered by id
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public NormalizedBookings getNormalizedBookingsAfter(long afterId, int size) {
+        List<BookingSummary> bookings = getBookingSummariesAfter(afterId, size);
+        List<Long> hotelIds = bookings.stream()
+                .map(BookingSummary::getHotelId)
+                .collect(Collectors.toList());
+        return new NormalizedBookings(getHotels(hotelIds), bookings);
+    }
+
+    /**
+     * Pass all the bookings, ordered by id, to the consumer one at a time.
+     * Every booking is detached after it has been consumed, so the persistence context does not grow.
+     *
+     * @param consumer the booking consumer
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllBookings(Consumer<Booking> consumer) {
+        try (Stream<Booking> bookings = bookingRepository.streamAllBookings()) {
+            consumeAndDetach(bookings, consumer);
+        }
+    }
+
+    /**
+     * Pass the bookings with an id in the range [fromId, toId), ordered by id, to the consumer one at a time.
+     * The bookings are read through a forward-only cursor and detached after they have been consumed.
+     * The bookings of one hotel are read by their own query, which can range over the (hotel_id, id) index.
+     *
+     * @param hotelId the hotel id, or null for the bookings of all the hotels
+     * @param fromId the lowest booking id, inclusive
+     * @param toId the highest booking id, exclusive
+     * @param consumer the booking consumer
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void exportBookings(Long hotelId, long fromId, long toId, Consumer<Booking> consumer) {
+        try (Stream<Booking> bookings = hotelId == null
+                ? bookingRepository.streamBookings(fromId, toId)
+                : bookingRepository.streamBookingsByHotelId(hotelId, fromId, toId)) {
+            consumeAndDetach(bookings, consumer);
+        }
+    }
+
+    /**
+     * Create a booking, or replace the details of the booking with its id when there is one.
+     * A replacement fails when the booking has been changed since the version of the request was read,
+     * and a booking with an unknown id is created with a new id, like a booking without one.
      *
      * @param booking the booking
+     * @return the created or updated booking
      */
     @Override
-    public void createOrUpdateBooking(Booking booking) {
+    @Transactional(rollbackFor = PreconditionFailedException.class)
+    public Booking createOrUpdateBooking(Booking booking) throws PreconditionFailedException {
+        Optional<Booking> existing = booking.getId() == null ? Optional.empty()
+                : bookingRepository.findById(booking.getId());
+        if (existing.isPresent()) {
+            return update(existing.get(), booking, booking.getVersion(), false);
+        }
+        // A new booking has no version either, or Spring Data would merge it as an existing one.
+        booking.setId(null);
+        booking.setVersion(null);
+        tableVersionService.bookingsChanged();
         bookingRepository.save(booking);
+        eventPublisher.publishEvent(BookingChangedEvent.created(BookingSnapshot.of(booking)));
+        return booking;
+    }
+
+    /**
+     * Replace the details of a booking.
+     * Only the columns that change are written, and the update fails when the booking has been
+     * changed since the expected version was read.
+     *
+     * @param bookingId the booking id
+     * @param booking the booking details
+     * @param expectedVersion the version the client has read, or null to update any version
+     * @return the updated booking
+     */
+    @Override
+    @Transactional(rollbackFor = PreconditionFailedException.class)
+    public Booking updateBooking(long bookingId, Booking booking, Long expectedVersion)
+            throws ResourceNotFoundException, PreconditionFailedException {
+        return update(getBookingById(bookingId), booking, expectedVersion, false);
+    }
+
+    /**
+     * Change some details of a booking. Only the non null details are applied.
+     *
+     * @param bookingId the booking id
+     * @param changes the changed booking details
+     * @param expectedVersion the version the client has read, or null to update any version
+     * @return the updated booking
+     */
+    @Override
+    @Transactional(rollbackFor = PreconditionFailedException.class)
+    public Booking patchBooking(long bookingId, Booking changes, Long expectedVersion)
+            throws ResourceNotFoundException, PreconditionFailedException {
+        return update(getBookingById(bookingId), changes, expectedVersion, true);
+    }
+
+    /**
+     * Create a batch of bookings.
+     * All the hotel names are resolved with one query and the bookings are inserted with JDBC batching,
+     * in one transaction. Bookings without a hotel name are rejected.
+     *
+     * <p>
+     * The missing hotels are created by {@link BatchHotels#resolve}, before the transaction of the bookings
+     * starts.
+     *
+     * @param bookings the bookings
+     * @return the result of every booking, in the order of the bookings
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<BookingBatchResult> createBookings(List<Booking> bookings) {
+        Map<String, Hotel> hotels = BatchHotels.resolve(bookings, hotelRepository, hotelService);
+        return transactionTemplate.execute(status -> insertBookings(bookings, hotels));
+    }
+
+    private List<BookingBatchResult> insertBookings(List<Booking> bookings, Map<String, Hotel> hotels) {
+        List<BookingBatchResult> results = new ArrayList<>(bookings.size());
+        int created = 0;
+        int pending = 0;
+        for (int index = 0; index < bookings.size(); index++) {
+            Booking booking = bookings.get(index);
+            if (!BatchHotels.hasHotelName(booking)) {
+                results.add(BookingBatchResult.rejected(index, "Hotel name is missing"));
+                continue;
+            }
+            booking.setId(null);
+            booking.setHotel(hotels.get(booking.getHotel().getName()));
+            entityManager.persist(booking);
+            results.add(BookingBatchResult.created(index, booking.getId()));
+            created++;
+            eventPublisher.publishEvent(BookingChangedEvent.created(BookingSnapshot.of(booking)));
+            if (++pending == BATCH_SIZE) {
+                entityManager.flush();
+                entityManager.clear();
+                pending = 0;
+            }
+        }
+        if (created > 0) {
+            tableVersionService.bookingsChanged();
+        }
+        entityManager.flush();
+        return results;
     }
 
     /**
@@ -59,31 +291,207 @@ public class BookingServiceImpl implements BookingService {
      */
     @Override
     public void deleteBooking(long bookingId) throws ResourceNotFoundException {
-        bookingRepository.delete(getBookingById(bookingId));
+        Booking booking = getBookingById(bookingId);
+        tableVersionService.bookingsChanged();
+        bookingRepository.delete(booking);
+        eventPublisher.publishEvent(BookingChangedEvent.deleted(BookingSnapshot.of(booking)));
     }
 
     /**
-     * Retrieve all the hotels that are associated to the specified booking surname.
+     * Retrieve the distinct hotels that are associated to the specified booking surname.
+     * The hotels are looked up in the surname index, so only the hotels themselves are read.
      *
      * @param surname the booking customer surname
-     * @return the list of hotels
+     * @return the list of hotels ordered by id
      */
     @Override
+    @Transactional(readOnly = true)
     public List<Hotel> getHotelsByBookingSurname(String surname) {
-        List<Booking> bookings = bookingRepository.findBookingsByCustomerSurname(surname);
-        return bookings.stream()
-                .map(Booking::getHotel)
-                .collect(Collectors.toList());
+        return getHotels(surnameIndexService.findHotelIds(surname));
+    }
+
+    /**
+     * Retrieve the distinct hotels that are associated to any booking surname starting with the specified prefix.
+     *
+     * @param prefix the beginning of the booking customer surname
+     * @return the list of hotels ordered by id
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Hotel> getHotelsByBookingSurnamePrefix(String prefix) {
+        return getHotels(surnameIndexService.findHotelIdsByPrefix(prefix));
     }
 
     /**
      * Retrieve all the bookings that are associated to the specified list of hotel ids.
+     * Long lists are queried in chunks of a fixed number of ids.
      *
      * @param ids the list of hotel ids
      * @return a list of bookings
      */
     @Override
+    @Transactional(readOnly = true)
     public List<Booking> getBookingsByHotels(List<Long> ids) {
-        return bookingRepository.findBookingsByHotelIds(ids);
+        return bookingRepository.findBookingsByHotelIdsInChunks(ids);
+    }
+
+    /**
+     * Retrieve all the bookings that are associated to the specified list of hotel ids.
+     * The ids are queried in chunks at the same time, each chunk on its own connection, and the bookings
+     * are returned in the order of the chunks.
+     *
+     * @param ids the list of hotel ids
+     * @param timeout the time to wait for all the chunks
+     * @return a list of bookings
+     * @throws ServiceBusyException if the chunks do not complete in time or cannot be queued
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<Booking> getBookingsByHotels(List<Long> ids, Duration timeout) throws ServiceBusyException {
+        return fanOutExecutor.queryAll(ids, bookingRepository::findBookingsByHotelIds, timeout);
+    }
+
+    /**
+     * Pass the bookings of the specified list of hotel ids to the consumer, the bookings of every chunk of ids
+     * as soon as the chunk is read. The chunks are queried at the same time, so their order is not defined.
+     *
+     * @param ids the list of hotel ids
+     * @param timeout the time to wait for all the chunks
+     * @param consumer the booking consumer
+     * @throws ServiceBusyException if the chunks do not complete in time or cannot be queued
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void streamBookingsByHotels(List<Long> ids, Duration timeout, Consumer<Booking> consumer)
+            throws ServiceBusyException {
+        fanOutExecutor.queryEach(ids, bookingRepository::findBookingsByHotelIds, timeout, consumer);
+    }
+
+    /**
+     * Retrieve the summaries of all the bookings that are associated to the specified list of hotel ids.
+     * Long lists are queried in chunks of a fixed number of ids.
+     *
+     * @param ids the list of hotel ids
+     * @return a list of booking summaries
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookingSummary> getBookingSummariesByHotels(List<Long> ids) {
+        return bookingRepository.findBookingSummariesByHotelIdsInChunks(ids);
+    }
+
+    /**
+     * Retrieve all the bookings of the specified hotel name, together with the hotel, in one query.
+     *
+     * @param name the hotel name
+     * @return a list of bookings
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Booking> getBookingsByHotelName(String name) {
+        return bookingRepository.findBookingsByHotelName(name);
+    }
+
+    /**
+     * Retrieve a page of the bookings of the specified hotel name ordered by id, starting after the provided booking id.
+     *
+     * @param name the hotel name
+     * @param afterId the id of the last booking of the previous page
+     * @param size the maximum number of bookings
+     * @return a list with the bookings of the page
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Booking> getBookingsByHotelNameAfter(String name, long afterId, int size) {
+        return bookingRepository.findBookingsByHotelNameAfter(name, afterId, PageRequest.of(0, size));
+    }
+
+    /**
+     * Pass the bookings of the specified hotel name, ordered by id, to the consumer one at a time.
+     *
+     * @param name the hotel name
+     * @param consumer the booking consumer
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamBookingsByHotelName(String name, Consumer<Booking> consumer) {
+        try (Stream<Booking> bookings = bookingRepository.streamBookingsByHotelName(name)) {
+            consumeAndDetach(bookings, consumer);
+        }
+    }
+
+    /**
+     * Retrieve the summaries of all the bookings of the specified hotel name in one query.
+     *
+     * @param name the hotel name
+     * @return a list of booking summaries
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookingSummary> getBookingSummariesByHotelName(String name) {
+        return bookingRepository.findBookingSummariesByHotelName(name);
+    }
+
+    /**
+     * Retrieve the sum of all booking amounts per currency for the specified hotel name.
+     *
+     * @param name the hotel name
+     * @return a list with the total amount of each currency
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<CurrencyAmount> getTotalAmountsByHotelName(String name) {
+        return bookingRepository.sumPriceAmountsByHotelName(name);
+    }
+
+    private List<Hotel> getHotels(List<Long> hotelIds) {
+        List<Hotel> hotels = new ArrayList<>(InClauses.inChunks(hotelIds, BookingRepository.IN_CLAUSE_CHUNK_SIZE,
+                hotelRepository::findAllById));
+        hotels.sort(Comparator.comparing(Hotel::getId));
+        return hotels;
+    }
+
+    private void consumeAndDetach(Stream<Booking> bookings, Consumer<Booking> consumer) {
+        bookings.forEach(booking -> {
+            consumer.accept(booking);
+            entityManager.detach(booking);
+        });
+    }
+
+    private Booking update(Booking booking, Booking changes, Long expectedVersion, boolean partial)
+            throws PreconditionFailedException {
+        if (expectedVersion != null && !expectedVersion.equals(booking.getVersion())) {
+            throw new PreconditionFailedException("Booking with ID=" + booking.getId() + " has version "
+                    + booking.getVersion() + ", not " + expectedVersion);
+        }
+        BookingSnapshot previous = BookingSnapshot.of(booking);
+        tableVersionService.bookingsChanged();
+        if (!partial || changes.getCustomerName() != null) {
+            booking.setCustomerName(changes.getCustomerName());
+        }
+        if (!partial || changes.getCustomerSurname() != null) {
+            booking.setCustomerSurname(changes.getCustomerSurname());
+        }
+        if (!partial || changes.getPax() != null) {
+            booking.setPax(changes.getPax());
+        }
+        if (!partial || changes.getPriceAmount() != null) {
+            booking.setPriceAmount(changes.getPriceAmount());
+        }
+        if (!partial || changes.getCurrency() != null) {
+            booking.setCurrency(changes.getCurrency());
+        }
+        if (changes.getHotel() != null) {
+            booking.setHotel(changes.getHotel());
+        }
+        try {
+            // Flush now, so that a concurrent update is reported and the returned version is the new one.
+            entityManager.flush();
+        } catch (OptimisticLockException e) {
+            throw new PreconditionFailedException("Booking with ID=" + booking.getId()
+                    + " was changed concurrently");
+        }
+        eventPublisher.publishEvent(new BookingChangedEvent(previous, BookingSnapshot.of(booking)));
+        return booking;
     }
 }
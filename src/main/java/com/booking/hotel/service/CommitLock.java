@@ -0,0 +1,97 @@
+package com.booking.hotel.service;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Orders the changes that an in-memory view applies after their commit against the reads of the view from the
+ * database.
+ * <p>
+ * A transaction that changes the data holds the lock shared from just before it commits until its change has
+ * been applied after the commit, and the view reads the database and replaces its state holding the lock
+ * exclusively. So a change has either committed before the read and is part of it, or commits after the new
+ * state is in place and is applied to it, and no change is lost or applied twice. Commits only wait while the
+ * view reads the database.
+ */
+final class CommitLock {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Hold the lock shared from the commit of the current transaction until it completes.
+     * Without a transaction the change is applied right away and only holds the lock while it is applied.
+     */
+    void joinCurrentTransaction() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        CommittingTransaction transaction = new CommittingTransaction();
+        TransactionSynchronizationManager.bindResource(this, transaction);
+        TransactionSynchronizationManager.registerSynchronization(transaction);
+    }
+
+    /**
+     * Apply a committed change to the view.
+     *
+     * @param change the change
+     */
+    void applying(Runnable change) {
+        lock.readLock().lock();
+        try {
+            change.run();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Read the view from the database and replace its state, while no change commits.
+     *
+     * @param read the read and replacement
+     * @param <T> the result type
+     * @return the result of the read
+     */
+    <T> T reading(Supplier<T> read) {
+        lock.writeLock().lock();
+        try {
+            return read.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private final class CommittingTransaction extends TransactionSynchronizationAdapter {
+
+        private boolean locked;
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(CommitLock.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(CommitLock.this, this);
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            lock.readLock().lock();
+            locked = true;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(CommitLock.this);
+            if (locked) {
+                locked = false;
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.booking.hotel.service;
+
+import com.booking.hotel.dto.HotelBookingStats;
+
+public interface HotelBookingStatsService {
+    HotelBookingStats getStats(long hotelId);
+    void rebuild();
+    boolean verify();
+}
@@ -0,0 +1,210 @@
+package com.booking.hotel.service;
+
+import com.booking.hotel.dto.CurrencyAmount;
+import com.booking.hotel.dto.HotelBookingStats;
+import com.booking.hotel.dto.HotelCurrencyTotals;
+import com.booking.hotel.event.BookingChangedEvent;
+import com.booking.hotel.event.BookingSnapshot;
+import com.booking.hotel.repository.BookingAggregates;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the booking count, pax and amount per currency of every hotel in memory.
+ * The totals are rebuilt from the database at startup, updated by every committed booking
+ * change and periodically compared with the database, which repairs any drift.
+ * Booking changes wait to commit while the totals are read from the database, so a change is either
+ * part of the totals read or applied to them afterwards.
+ */
+@Service
+@Slf4j
+public class HotelBookingStatsServiceImpl implements HotelBookingStatsService {
+
+    private BookingAggregates bookingAggregates;
+    private volatile Map<Long, HotelTotals> totalsByHotel = new ConcurrentHashMap<>();
+    private final CommitLock commitLock = new CommitLock();
+
+    public HotelBookingStatsServiceImpl(BookingAggregates bookingAggregates) {
+        this.bookingAggregates = bookingAggregates;
+    }
+
+    /**
+     * Retrieve the booking statistics of a hotel.
+     *
+     * @param hotelId the hotel id
+     * @return the booking statistics, empty when the hotel has no bookings
+     */
+    @Override
+    public HotelBookingStats getStats(long hotelId) {
+        HotelTotals totals = totalsByHotel.get(hotelId);
+        if (totals == null) {
+            return new HotelBookingStats(hotelId, 0, 0, Collections.emptyList());
+        }
+        return totals.toStats(hotelId);
+    }
+
+    /**
+     * Replace the statistics of all the hotels with the totals calculated by the database.
+     * The totals are read in a read-write transaction, so from the primary database and not from a replica.
+     */
+    @Override
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        int hotels = commitLock.reading(() -> {
+            totalsByHotel = loadTotals();
+            return totalsByHotel.size();
+        });
+        log.info("Booking statistics rebuilt for {} hotels", hotels);
+    }
+
+    /**
+     * Compare the statistics with the totals calculated by the database and replace them when they differ.
+     *
+     * @return true when the statistics were consistent
+     */
+    @Override
+    @Transactional
+    @Scheduled(fixedDelayString = "${booking.stats.check-interval-ms:600000}",
+            initialDelayString = "${booking.stats.check-interval-ms:600000}")
+    public boolean verify() {
+        return commitLock.reading(this::verifyTotals);
+    }
+
+    private boolean verifyTotals() {
+        Map<Long, HotelTotals> expected = loadTotals();
+        Map<Long, HotelTotals> actual = totalsByHotel;
+        List<Long> driftedHotels = new ArrayList<>();
+        Set<Long> hotelIds = new HashSet<>(expected.keySet());
+        hotelIds.addAll(actual.keySet());
+        for (Long hotelId : hotelIds) {
+            HotelTotals expectedTotals = expected.getOrDefault(hotelId, new HotelTotals());
+            HotelTotals actualTotals = actual.getOrDefault(hotelId, new HotelTotals());
+            if (!expectedTotals.sameAs(actualTotals)) {
+                driftedHotels.add(hotelId);
+            }
+        }
+        if (driftedHotels.isEmpty()) {
+            return true;
+        }
+        log.warn("Booking statistics of hotels {} drifted from the database and are rebuilt", driftedHotels);
+        totalsByHotel = expected;
+        return false;
+    }
+
+    /**
+     * Make the transaction of a booking change hold its commit until the change has been applied.
+     *
+     * @param event the booking change
+     */
+    @EventListener
+    public void onBookingChanging(BookingChangedEvent event) {
+        commitLock.joinCurrentTransaction();
+    }
+
+    /**
+     * Apply a committed booking change: the previous state is subtracted and the current state is added,
+     * which also moves a booking between hotels.
+     *
+     * @param event the booking change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookingChanged(BookingChangedEvent event) {
+        commitLock.applying(() -> {
+            apply(event.getPrevious(), -1);
+            apply(event.getCurrent(), 1);
+        });
+    }
+
+    private void apply(BookingSnapshot booking, int sign) {
+        if (booking == null || booking.getHotelId() == null) {
+            return;
+        }
+        totalsByHotel.computeIfAbsent(booking.getHotelId(), id -> new HotelTotals())
+                .add(booking.getCurrency(), sign, sign * value(booking.getPax()),
+                        signed(booking.getPriceAmount(), sign));
+    }
+
+    private Map<Long, HotelTotals> loadTotals() {
+        Map<Long, HotelTotals> totals = new ConcurrentHashMap<>();
+        for (HotelCurrencyTotals row : bookingAggregates.sumTotalsByHotelAndCurrency()) {
+            totals.computeIfAbsent(row.getHotelId(), id -> new HotelTotals())
+                    .add(row.getCurrency(), row.getBookingCount(), value(row.getPax()), row.getAmount());
+        }
+        return totals;
+    }
+
+    private static long value(Number number) {
+        return number == null ? 0 : number.longValue();
+    }
+
+    private static BigDecimal signed(BigDecimal amount, int sign) {
+        if (amount == null) {
+            return BigDecimal.ZERO;
+        }
+        return sign < 0 ? amount.negate() : amount;
+    }
+
+    /**
+     * The totals of one hotel. Currencies without bookings are removed, so a hotel
+     * compares equal to the database after its last booking of a currency is gone.
+     */
+    private static class HotelTotals {
+
+        private long bookingCount;
+        private long pax;
+        private final Map<String, CurrencyTotals> currencies = new HashMap<>();
+
+        synchronized void add(String currency, long count, long pax, BigDecimal amount) {
+            this.bookingCount += count;
+            this.pax += pax;
+            CurrencyTotals totals = currencies.computeIfAbsent(currency, c -> new CurrencyTotals());
+            totals.count += count;
+            totals.amount = totals.amount.add(amount == null ? BigDecimal.ZERO : amount);
+            if (totals.count == 0) {
+                currencies.remove(currency);
+            }
+        }
+
+        synchronized HotelBookingStats toStats(long hotelId) {
+            List<CurrencyAmount> amounts = new ArrayList<>(currencies.size());
+            currencies.forEach((currency, totals) -> amounts.add(new CurrencyAmount(currency, totals.amount)));
+            return new HotelBookingStats(hotelId, bookingCount, pax, amounts);
+        }
+
+        synchronized boolean sameAs(HotelTotals other) {
+            synchronized (other) {
+                if (bookingCount != other.bookingCount || pax != other.pax
+                        || !currencies.keySet().equals(other.currencies.keySet())) {
+                    return false;
+                }
+                return currencies.entrySet().stream().allMatch(entry -> {
+                    CurrencyTotals otherTotals = other.currencies.get(entry.getKey());
+                    return entry.getValue().count == otherTotals.count
+                            && entry.getValue().amount.compareTo(otherTotals.amount) == 0;
+                });
+            }
+        }
+    }
+
+    private static class CurrencyTotals {
+
+        private long count;
+        private BigDecimal amount = BigDecimal.ZERO;
+    }
+}
@@ -1,18 +1,33 @@
 package com.booking.hotel.service;
 
+import com.booking.hotel.dto.BookingSummary;
+import com.booking.hotel.dto.CurrencyAmount;
 import com.booking.hotel.entity.Booking;
 import com.booking.hotel.entity.Hotel;
+import com.booking.hotel.exception.PreconditionFailedException;
 import com.booking.hotel.exception.ResourceNotFoundException;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface HotelService {
     List<Hotel> getAllHotels();
+    List<Hotel> getHotelsAfter(long afterId, int size);
+    void streamAllHotels(Consumer<Hotel> consumer);
     Hotel getHotelById(Long hotelId) throws ResourceNotFoundException;
     Hotel getHotelByName(String name);
-    void createOrUpdateHotel(Hotel hotel);
+    Hotel createOrUpdateHotel(Hotel hotel) throws PreconditionFailedException;
+    Hotel getOrCreateHotel(Hotel hotel);
+    Hotel updateHotel(long hotelId, Hotel hotel, Long expectedVersion)
+            throws ResourceNotFoundException, PreconditionFailedException;
+    Hotel patchHotel(long hotelId, Hotel changes, Long expectedVersion)
+            throws ResourceNotFoundException, PreconditionFailedException;
     void deleteHotel(Long hotelId) throws ResourceNotFoundException;
     List<Booking> getBookingsByHotel(String name);
+    List<Booking> getBookingsByHotelAfter(String name, long afterId, int size);
+    void streamBookingsByHotel(String name, Consumer<Booking> consumer);
+    List<BookingSummary> getBookingSummariesByHotel(String name);
     BigDecimal getTotalBookingAmountByHotel(String name);
+    List<CurrencyAmount> getTotalBookingAmountsByHotel(String name);
 }
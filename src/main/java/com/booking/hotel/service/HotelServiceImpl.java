@@ -1,26 +1,69 @@
 package com.booking.hotel.service;
 
+import com.booking.hotel.config.CacheConfig;
+import com.booking.hotel.dto.BookingSummary;
+import com.booking.hotel.dto.CurrencyAmount;
 import com.booking.hotel.entity.Booking;
 import com.booking.hotel.entity.Hotel;
+import com.booking.hotel.exception.PreconditionFailedException;
 import com.booking.hotel.exception.ResourceNotFoundException;
 import com.booking.hotel.repository.HotelRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import javax.transaction.Transactional;
+import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
 import java.math.BigDecimal;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
+@Slf4j
 public class HotelServiceImpl implements HotelService {
 
+    private static final int NAME_LOCK_STRIPES = 64;
+
+    private final Lock[] nameLocks = new Lock[NAME_LOCK_STRIPES];
+
     private HotelRepository hotelRepository;
     private BookingService bookingService;
+    private HotelBookingStatsService hotelBookingStatsService;
+    private EntityManager entityManager;
+    private TableVersionService tableVersionService;
+    private TransactionTemplate transactionTemplate;
+    private CacheManager cacheManager;
 
-    public HotelServiceImpl(HotelRepository hotelRepository, BookingService bookingService) {
+    public HotelServiceImpl(HotelRepository hotelRepository, BookingService bookingService,
+                            HotelBookingStatsService hotelBookingStatsService, EntityManager entityManager,
+                            TableVersionService tableVersionService, PlatformTransactionManager transactionManager,
+                            CacheManager cacheManager) {
         this.hotelRepository = hotelRepository;
         this.bookingService = bookingService;
+        this.hotelBookingStatsService = hotelBookingStatsService;
+        this.entityManager = entityManager;
+        this.tableVersionService = tableVersionService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cacheManager = cacheManager;
+        for (int i = 0; i < NAME_LOCK_STRIPES; i++) {
+            nameLocks[i] = new ReentrantLock();
+        }
     }
 
     /**
@@ -30,6 +73,8 @@ public class HotelServiceImpl implements HotelService {
      * @return hotel
      */
     @Override
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.HOTELS_BY_ID)
     public Hotel getHotelById(Long hotelId) throws ResourceNotFoundException {
         return hotelRepository.findById(hotelId)
                 .orElseThrow(() -> new ResourceNotFoundException("Hotel with ID=" + hotelId +" not found"));
@@ -42,28 +87,160 @@ public class HotelServiceImpl implements HotelService {
      * @return hotel
      */
     @Override
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.HOTELS_BY_NAME, unless = "#result == null")
     public Hotel getHotelByName(String name) {
         return hotelRepository.findHotelByName(name);
     }
 
     /**
      * Retrieve all the hotels.
+     * Runs in a read-write transaction, so from the primary database and not from a replica: the response is
+     * tagged with the table versions of the primary database, and a replica behind them would serve old rows
+     * under the new ETag.
      *
      * @return a list with all the hotels
      */
     @Override
+    @Transactional
     public List<Hotel> getAllHotels(){
         return hotelRepository.findAll();
     }
 
     /**
-     * Create/Update a hotel.
+     * Retrieve a page of hotels ordered by id, starting after the provided hotel id.
+     * Read from the primary database like {@link #getAllHotels()}.
+     *
+     * @param afterId the id of the last hotel of the previous page
+     * @param size the maximum number of hotels
+     * @return a list with the hotels of the page
+     */
+    @Override
+    @Transactional
+    public List<Hotel> getHotelsAfter(long afterId, int size) {
+        return hotelRepository.findHotelsAfter(afterId, PageRequest.of(0, size));
+    }
+
+    /**
+     * Pass all the hotels, ordered by id, to the consumer one at a time.
+     * Every hotel is detached after it has been consumed, so the persistence context does not grow.
+     *
+     * @param consumer the hotel consumer
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllHotels(Consumer<Hotel> consumer) {
+        try (Stream<Hotel> hotels = hotelRepository.streamAllHotels()) {
+            hotels.forEach(hotel -> {
+                consumer.accept(hotel);
+                entityManager.detach(hotel);
+            });
+        }
+    }
+
+    /**
+     * Create a hotel, or replace the details of the hotel with its id when there is one.
+     * A replacement fails when the hotel has been changed since the version of the request was read,
+     * and a hotel with an unknown id is created with a new id, like a hotel without one.
      *
      * @param hotel the hotel
+     * @return the created or updated hotel
+     */
+    @Override
+    @Transactional(rollbackFor = PreconditionFailedException.class)
+    @CacheEvict(cacheNames = {CacheConfig.HOTELS_BY_ID, CacheConfig.HOTELS_BY_NAME}, allEntries = true)
+    public Hotel createOrUpdateHotel(Hotel hotel) throws PreconditionFailedException {
+        Optional<Hotel> existing = hotel.getId() == null ? Optional.empty() : hotelRepository.findById(hotel.getId());
+        if (existing.isPresent()) {
+            return update(existing.get(), hotel, hotel.getVersion(), false);
+        }
+        // A new hotel has no version either, or Spring Data would merge it as an existing one.
+        hotel.setId(null);
+        hotel.setVersion(null);
+        tableVersionService.hotelsChanged();
+        return hotelRepository.save(hotel);
+    }
+
+    /**
+     * Replace the details of a hotel.
+     * Only the columns that change are written, and the update fails when the hotel has been
+     * changed since the expected version was read.
+     *
+     * @param hotelId the hotel id
+     * @param hotel the hotel details
+     * @param expectedVersion the version the client has read, or null to update any version
+     * @return the updated hotel
+     */
+    @Override
+    @Transactional(rollbackFor = PreconditionFailedException.class)
+    @CacheEvict(cacheNames = {CacheConfig.HOTELS_BY_ID, CacheConfig.HOTELS_BY_NAME}, allEntries = true)
+    public Hotel updateHotel(long hotelId, Hotel hotel, Long expectedVersion)
+            throws ResourceNotFoundException, PreconditionFailedException {
+        return update(findHotel(hotelId), hotel, expectedVersion, false);
+    }
+
+    /**
+     * Change some details of a hotel. Only the non null details are applied.
+     *
+     * @param hotelId the hotel id
+     * @param changes the changed hotel details
+     * @param expectedVersion the version the client has read, or null to update any version
+     * @return the updated hotel
      */
     @Override
-    public void createOrUpdateHotel(Hotel hotel){
-        hotelRepository.save(hotel);
+    @Transactional(rollbackFor = PreconditionFailedException.class)
+    @CacheEvict(cacheNames = {CacheConfig.HOTELS_BY_ID, CacheConfig.HOTELS_BY_NAME}, allEntries = true)
+    public Hotel patchHotel(long hotelId, Hotel changes, Long expectedVersion)
+            throws ResourceNotFoundException, PreconditionFailedException {
+        return update(findHotel(hotelId), changes, expectedVersion, true);
+    }
+
+    /**
+     * Retrieve the hotel with the name of the provided hotel, creating it from the provided hotel when missing.
+     * <p>
+     * Requests for the same name on this node wait for each other on a striped lock, so only the first one
+     * inserts and the others find its hotel. The insert is committed before the lock is released, which is why
+     * this method runs outside of any transaction and only the locked part runs in its own read-write
+     * transaction, which also reads from the primary database rather than from a replica that may not have
+     * the hotel yet. An insert that still collides on the unique name, with another node, is answered by
+     * reading the hotel that won.
+     *
+     * @param hotel the hotel to create when missing
+     * @return the existing or the created hotel
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @CachePut(cacheNames = CacheConfig.HOTELS_BY_NAME, key = "#hotel.name")
+    public Hotel getOrCreateHotel(Hotel hotel) {
+        Hotel existing = hotelRepository.findHotelByName(hotel.getName());
+        if (existing != null) {
+            return existing;
+        }
+        Lock lock = nameLocks[Math.floorMod(hotel.getName().hashCode(), NAME_LOCK_STRIPES)];
+        lock.lock();
+        try {
+            return transactionTemplate.execute(status -> {
+                Hotel found = hotelRepository.findHotelByName(hotel.getName());
+                if (found != null) {
+                    return found;
+                }
+                tableVersionService.hotelsChanged();
+                return hotelRepository.saveAndFlush(Hotel.builder()
+                        .name(hotel.getName())
+                        .address(hotel.getAddress())
+                        .starRating(hotel.getStarRating())
+                        .build());
+            });
+        } catch (DataIntegrityViolationException e) {
+            existing = transactionTemplate.execute(status -> hotelRepository.findHotelByName(hotel.getName()));
+            if (existing == null) {
+                throw e;
+            }
+            log.debug("Hotel {} was created concurrently", hotel.getName());
+            return existing;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -72,7 +249,9 @@ public class HotelServiceImpl implements HotelService {
      * @param hotelId the hotel id
      */
     @Override
+    @CacheEvict(cacheNames = {CacheConfig.HOTELS_BY_ID, CacheConfig.HOTELS_BY_NAME}, allEntries = true)
     public void deleteHotel(Long hotelId) throws ResourceNotFoundException {
+        tableVersionService.hotelsChanged();
         hotelRepository.delete(getHotelById(hotelId));
     }
 
@@ -83,26 +262,125 @@ public class HotelServiceImpl implements HotelService {
      * @return the list of bookings
      */
     @Override
+    @Transactional(readOnly = true)
     public List<Booking> getBookingsByHotel(String name) {
-        List<Hotel> hotels = hotelRepository.findBookingsByName(name);
-        List<Long> hotelIdList = hotels.stream()
-                .map(Hotel::getId)
-                .collect(Collectors.toList());
-        return bookingService.getBookingsByHotels(hotelIdList);
+        return bookingService.getBookingsByHotelName(name);
+    }
+
+    /**
+     * Retrieve a page of the bookings that are associated to the specified hotel name, ordered by id.
+     *
+     * @param name the hotel name
+     * @param afterId the id of the last booking of the previous page
+     * @param size the maximum number of bookings
+     * @return the list of bookings of the page
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Booking> getBookingsByHotelAfter(String name, long afterId, int size) {
+        return bookingService.getBookingsByHotelNameAfter(name, afterId, size);
+    }
+
+    /**
+     * Pass the bookings that are associated to the specified hotel name to the consumer one at a time.
+     *
+     * @param name the hotel name
+     * @param consumer the booking consumer
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamBookingsByHotel(String name, Consumer<Booking> consumer) {
+        bookingService.streamBookingsByHotelName(name, consumer);
+    }
+
+    /**
+     * Retrieve the summaries of all the bookings that are associated to the specified hotel name.
+     *
+     * @param name the hotel name
+     * @return the list of booking summaries
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookingSummary> getBookingSummariesByHotel(String name) {
+        return bookingService.getBookingSummariesByHotelName(name);
     }
 
     /**
      * Retrieve the sum of all booking amounts that are associated to the specified hotel name.
      *
+     * Read from the primary database like {@link #getAllHotels()}.
+     *
      * @param name the hotel name
      * @return the sum of all booking amounts
      */
     @Override
+    @Transactional
     public BigDecimal getTotalBookingAmountByHotel(String name) {
-        List<Booking> bookings = this.getBookingsByHotel(name);
-        return bookings.stream()
-                .map(Booking::getPriceAmount)
+        return this.getTotalBookingAmountsByHotel(name).stream()
+                .map(CurrencyAmount::getAmount)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
 
+    /**
+     * Retrieve the sum of all booking amounts per currency that are associated to the specified hotel name.
+     * The sums are read from the booking statistics, so no booking is loaded, and the hotel from the cache of
+     * {@link #getHotelByName(String)}, or else from the primary database like {@link #getAllHotels()}.
+     *
+     * @param name the hotel name
+     * @return a list with the total amount of each currency
+     */
+    @Override
+    @Transactional
+    public List<CurrencyAmount> getTotalBookingAmountsByHotel(String name) {
+        Hotel hotel = findCachedHotelByName(name);
+        if (hotel == null) {
+            return Collections.emptyList();
+        }
+        return hotelBookingStatsService.getStats(hotel.getId()).getAmounts();
+    }
+
+    /**
+     * The lookup of the cached {@link #getHotelByName(String)}, which a call from this class would bypass.
+     */
+    private Hotel findCachedHotelByName(String name) {
+        Cache hotelsByName = cacheManager.getCache(CacheConfig.HOTELS_BY_NAME);
+        Hotel hotel = hotelsByName.get(name, Hotel.class);
+        if (hotel == null) {
+            hotel = hotelRepository.findHotelByName(name);
+            if (hotel != null) {
+                hotelsByName.put(name, hotel);
+            }
+        }
+        return hotel;
+    }
+
+    private Hotel findHotel(long hotelId) throws ResourceNotFoundException {
+        return hotelRepository.findById(hotelId)
+                .orElseThrow(() -> new ResourceNotFoundException("Hotel with ID=" + hotelId +" not found"));
+    }
+
+    private Hotel update(Hotel hotel, Hotel changes, Long expectedVersion, boolean partial)
+            throws PreconditionFailedException {
+        if (expectedVersion != null && !expectedVersion.equals(hotel.getVersion())) {
+            throw new PreconditionFailedException("Hotel with ID=" + hotel.getId() + " has version "
+                    + hotel.getVersion() + ", not " + expectedVersion);
+        }
+        tableVersionService.hotelsChanged();
+        if (!partial || changes.getName() != null) {
+            hotel.setName(changes.getName());
+        }
+        if (!partial || changes.getAddress() != null) {
+            hotel.setAddress(changes.getAddress());
+        }
+        if (!partial || changes.getStarRating() != null) {
+            hotel.setStarRating(changes.getStarRating());
+        }
+        try {
+            // Flush now, so that a concurrent update is reported and the returned version is the new one.
+            entityManager.flush();
+        } catch (OptimisticLockException e) {
+            throw new PreconditionFailedException("Hotel with ID=" + hotel.getId() + " was changed concurrently");
+        }
+        return hotel;
+    }
 }
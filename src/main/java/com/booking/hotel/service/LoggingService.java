@@ -5,7 +5,11 @@ import javax.servlet.http.HttpServletResponse;
 
 public interface LoggingService {
 
+    void startRequest(HttpServletRequest httpServletRequest);
+
     void logRequest(HttpServletRequest httpServletRequest, Object body);
 
-    void logResponse(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, Object body);
+    void captureResponseBody(HttpServletRequest httpServletRequest, Object body);
+
+    void logResponse(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, Exception ex);
 }
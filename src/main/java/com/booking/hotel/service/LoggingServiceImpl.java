@@ -1,86 +1,113 @@
 package com.booking.hotel.service;
 
-import java.util.Collection;
-import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.Map;
+import com.booking.hotel.logging.AsyncLogWriter;
+import com.booking.hotel.logging.LogBodies;
+import com.booking.hotel.logging.LogEvent;
+import com.booking.hotel.logging.LogMode;
+import com.booking.hotel.logging.LoggingPolicies;
+import com.booking.hotel.logging.LoggingProperties;
+import org.springframework.stereotype.Component;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.stereotype.Component;
-
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * Captures requests and responses as log events, which are formatted and written by the {@link AsyncLogWriter}.
+ * How much of a request is captured is decided once per request by the {@link LoggingPolicies}.
+ * Only the configured headers are captured, and the bodies are rendered and truncated to the configured length
+ * right away, so the queued events do not keep the bodies alive.
+ */
 @Component
-@Slf4j
 public class LoggingServiceImpl implements LoggingService {
 
-    @Override
-    public void logRequest(HttpServletRequest httpServletRequest, Object body) {
-        StringBuilder stringBuilder = new StringBuilder();
-        Map<String, String> parameters = buildParametersMap(httpServletRequest);
-
-        stringBuilder.append("REQUEST ");
-        stringBuilder.append("method=[").append(httpServletRequest.getMethod()).append("] ");
-        stringBuilder.append("path=[").append(httpServletRequest.getRequestURI()).append("] ");
-        stringBuilder.append("headers=[").append(buildHeadersMap(httpServletRequest)).append("] ");
-
-        if (!parameters.isEmpty()) {
-            stringBuilder.append("parameters=[").append(parameters).append("] ");
-        }
-
-        if (body != null) {
-            stringBuilder.append("body=[").append(body).append("]");
-        }
-
-        log.info(stringBuilder.toString());
+    private static final String MODE_ATTRIBUTE = LoggingServiceImpl.class.getName() + ".mode";
+    private static final String START_ATTRIBUTE = LoggingServiceImpl.class.getName() + ".start";
+    private static final String BODY_ATTRIBUTE = LoggingServiceImpl.class.getName() + ".body";
+
+    private AsyncLogWriter asyncLogWriter;
+    private LoggingPolicies loggingPolicies;
+    private List<String> headerNames;
+    private int maxBodyLength;
+
+    public LoggingServiceImpl(AsyncLogWriter asyncLogWriter, LoggingPolicies loggingPolicies,
+                              LoggingProperties loggingProperties) {
+        this.asyncLogWriter = asyncLogWriter;
+        this.loggingPolicies = loggingPolicies;
+        this.headerNames = loggingProperties.getHeaders();
+        this.maxBodyLength = loggingProperties.getMaxBodyLength();
     }
 
     @Override
-    public void logResponse(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, Object body) {
-
-        String stringBuilder = "RESPONSE " +
-                "method=[" + httpServletRequest.getMethod() + "] " +
-                "path=[" + httpServletRequest.getRequestURI() + "] " +
-                "responseHeaders=[" + buildHeadersMap(httpServletResponse) + "] " +
-                "responseBody=[" + body + "] ";
-        log.info(stringBuilder);
+    public void startRequest(HttpServletRequest httpServletRequest) {
+        httpServletRequest.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        httpServletRequest.setAttribute(MODE_ATTRIBUTE, loggingPolicies.decide(httpServletRequest));
     }
 
-    private Map<String, String> buildParametersMap(HttpServletRequest httpServletRequest) {
-        Map<String, String> resultMap = new HashMap<>();
-        Enumeration<String> parameterNames = httpServletRequest.getParameterNames();
-
-        while (parameterNames.hasMoreElements()) {
-            String key = parameterNames.nextElement();
-            String value = httpServletRequest.getParameter(key);
-            resultMap.put(key, value);
+    @Override
+    public void logRequest(HttpServletRequest httpServletRequest, Object body) {
+        LogMode mode = (LogMode) httpServletRequest.getAttribute(MODE_ATTRIBUTE);
+        if (mode == null || mode == LogMode.NONE) {
+            return;
         }
-
-        return resultMap;
+        asyncLogWriter.offer(LogEvent.builder()
+                .type(LogEvent.Type.REQUEST)
+                .method(httpServletRequest.getMethod())
+                .path(httpServletRequest.getRequestURI())
+                .query(httpServletRequest.getQueryString())
+                .headers(captureHeaders(httpServletRequest::getHeader))
+                .body(mode == LogMode.FULL ? LogBodies.render(body, maxBodyLength) : null)
+                .build());
     }
 
-    private Map<String, String> buildHeadersMap(HttpServletRequest request) {
-        Map<String, String> map = new HashMap<>();
-
-        Enumeration<String> headerNames = request.getHeaderNames();
-        while (headerNames.hasMoreElements()) {
-            String key = headerNames.nextElement();
-            String value = request.getHeader(key);
-            map.put(key, value);
+    @Override
+    public void captureResponseBody(HttpServletRequest httpServletRequest, Object body) {
+        if (httpServletRequest.getAttribute(MODE_ATTRIBUTE) == LogMode.FULL) {
+            httpServletRequest.setAttribute(BODY_ATTRIBUTE, LogBodies.render(body, maxBodyLength));
         }
-
-        return map;
     }
 
-    private Map<String, String> buildHeadersMap(HttpServletResponse response) {
-        Map<String, String> map = new HashMap<>();
-
-        Collection<String> headerNames = response.getHeaderNames();
-        for (String header : headerNames) {
-            map.put(header, response.getHeader(header));
+    @Override
+    public void logResponse(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+                            Exception ex) {
+        LogMode mode = (LogMode) httpServletRequest.getAttribute(MODE_ATTRIBUTE);
+        Long start = (Long) httpServletRequest.getAttribute(START_ATTRIBUTE);
+        if (mode == null || start == null) {
+            return;
+        }
+        long durationNanos = System.nanoTime() - start;
+        int status = ex != null && httpServletResponse.getStatus() < 400 ? 500 : httpServletResponse.getStatus();
+        if (mode == LogMode.NONE && !loggingPolicies.isAlwaysLogged(status, durationNanos)) {
+            return;
         }
+        asyncLogWriter.offer(LogEvent.builder()
+                .type(LogEvent.Type.RESPONSE)
+                .method(httpServletRequest.getMethod())
+                .path(httpServletRequest.getRequestURI())
+                .query(httpServletRequest.getQueryString())
+                .status(status)
+                .durationMillis(TimeUnit.NANOSECONDS.toMillis(durationNanos))
+                .headers(captureHeaders(httpServletResponse::getHeader))
+                .body((String) httpServletRequest.getAttribute(BODY_ATTRIBUTE))
+                .build());
+    }
 
-        return map;
+    private Map<String, String> captureHeaders(UnaryOperator<String> headers) {
+        if (headerNames.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> capturedHeaders = new HashMap<>();
+        for (String headerName : headerNames) {
+            String value = headers.apply(headerName);
+            if (value != null) {
+                capturedHeaders.put(headerName, value);
+            }
+        }
+        return capturedHeaders;
     }
 }
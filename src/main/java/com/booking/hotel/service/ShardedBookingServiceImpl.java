@@ -0,0 +1,531 @@
+package com.booking.hotel.service;
+
+import com.booking.hotel.dto.BookingBatchResult;
+import com.booking.hotel.dto.BookingSummary;
+import com.booking.hotel.dto.CurrencyAmount;
+import com.booking.hotel.dto.NormalizedBookings;
+import com.booking.hotel.entity.Booking;
+import com.booking.hotel.entity.Hotel;
+import com.booking.hotel.event.BookingChangedEvent;
+import com.booking.hotel.event.BookingSnapshot;
+import com.booking.hotel.exception.PreconditionFailedException;
+import com.booking.hotel.exception.ResourceNotFoundException;
+import com.booking.hotel.exception.ServiceBusyException;
+import com.booking.hotel.execution.FanOutExecutor;
+import com.booking.hotel.repository.BookingRepository;
+import com.booking.hotel.repository.HotelRepository;
+import com.booking.hotel.repository.InClauses;
+import com.booking.hotel.sharding.BookingSequence;
+import com.booking.hotel.sharding.ShardedBookingRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Stores the bookings on the shards of their hotels, when booking.sharding.enabled is set. The hotels stay in
+ * the main database and are attached to the bookings after they have been read.
+ * <p>
+ * A write runs in a transaction synchronization without a transaction of the main database. It publishes its
+ * booking event before it writes and records the change of the booking table after, so the shards commit once
+ * the views of the bookings hold their commit lock and before the version of the bookings is increased, and a
+ * failed write is rolled back without its event being applied.
+ */
+@Service
+@ConditionalOnProperty(name = "booking.sharding.enabled", havingValue = "true")
+public class ShardedBookingServiceImpl implements BookingService {
+
+    /**
+     * The bookings read at a time by the streams and the full list.
+     */
+    private static final int PAGE_SIZE = 1000;
+
+    private ShardedBookingRepository shardedBookingRepository;
+    private BookingSequence bookingSequence;
+    private HotelRepository hotelRepository;
+    private HotelService hotelService;
+    private ApplicationEventPublisher eventPublisher;
+    private SurnameIndexService surnameIndexService;
+    private TableVersionService tableVersionService;
+    private FanOutExecutor fanOutExecutor;
+
+    /**
+     * The hotel service is resolved lazily, because it reads the bookings of its hotels through this service.
+     */
+    public ShardedBookingServiceImpl(ShardedBookingRepository shardedBookingRepository,
+                                     BookingSequence bookingSequence, HotelRepository hotelRepository,
+                                     @Lazy HotelService hotelService, ApplicationEventPublisher eventPublisher,
+                                     SurnameIndexService surnameIndexService,
+                                     TableVersionService tableVersionService, FanOutExecutor fanOutExecutor) {
+        this.shardedBookingRepository = shardedBookingRepository;
+        this.bookingSequence = bookingSequence;
+        this.hotelRepository = hotelRepository;
+        this.hotelService = hotelService;
+        this.eventPublisher = eventPublisher;
+        this.surnameIndexService = surnameIndexService;
+        this.tableVersionService = tableVersionService;
+        this.fanOutExecutor = fanOutExecutor;
+    }
+
+    /**
+     * Retrieve a booking by the provided id.
+     *
+     * @param bookingId the booking id
+     * @return booking
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Booking getBookingById(long bookingId) throws ResourceNotFoundException {
+        return shardedBookingRepository.findById(bookingId)
+                .map(booking -> withHotels(Collections.singletonList(booking)).get(0))
+                .orElseThrow(() -> new ResourceNotFoundException("Booking with ID=" + bookingId + " not found"));
+    }
+
+    /**
+     * Retrieve all the bookings, together with their hotels, a page at a time.
+     *
+     * @return a list with all the bookings
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Booking> getAllBookings() {
+        List<Booking> bookings = new ArrayList<>();
+        forEachBooking(null, 0L, Long.MAX_VALUE, bookings::add);
+        return bookings;
+    }
+
+    /**
+     * Retrieve a page of bookings ordered by id, starting after the provided booking id.
+     *
+     * @param afterId the id of the last booking of the previous page
+     * @param size the maximum number of bookings
+     * @return a list with the bookings of the page
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Booking> getBookingsAfter(long afterId, int size) {
+        return withHotels(shardedBookingRepository.findBookingsAfter(null, afterId, Long.MAX_VALUE, size));
+    }
+
+    /**
+     * Retrieve a page of booking summaries ordered by id, starting after the provided booking id.
+     *
+     * @param afterId the id of the last booking of the previous page
+     * @param size the maximum number of bookings
+     * @return a list with the booking summaries of the page
+     */
+    @Override
+    public List<BookingSummary> getBookingSummariesAfter(long afterId, int size) {
+        return summaries(shardedBookingRepository.findBookingsAfter(null, afterId, Long.MAX_VALUE, size));
+    }
+
+    /**
+     * Retrieve a page of booking summaries ordered by id, starting after the provided booking id,
+     * together with their distinct hotels.
+     *
+     * @param afterId the id of the last booking of the previous page
+     * @param size the maximum number of bookings
+     * @return the booking summaries of the page and their hotels ordered by id
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public NormalizedBookings getNormalizedBookingsAfter(long afterId, int size) {
+        List<BookingSummary> bookings = getBookingSummariesAfter(afterId, size);
+        List<Long> hotelIds = bookings.stream()
+                .map(BookingSummary::getHotelId)
+                .collect(Collectors.toList());
+        return new NormalizedBookings(getHotels(hotelIds), bookings);
+    }
+
+    /**
+     * Pass all the bookings, ordered by id, to the consumer one at a time, reading them a page at a time.
+     *
+     * @param consumer the booking consumer
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllBookings(Consumer<Booking> consumer) {
+        forEachBooking(null, 0L, Long.MAX_VALUE, consumer);
+    }
+
+    /**
+     * Pass the bookings with an id in the range [fromId, toId), ordered by id, to the consumer one at a time,
+     * reading them a page at a time. The bookings of one hotel are only read from its shard.
+     *
+     * @param hotelId the hotel id, or null for the bookings of all the hotels
+     * @param fromId the lowest booking id, inclusive
+     * @param toId the highest booking id, exclusive
+     * @param consumer the booking consumer
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void exportBookings(Long hotelId, long fromId, long toId, Consumer<Booking> consumer) {
+        forEachBooking(hotelId, fromId - 1, toId, consumer);
+    }
+
+    /**
+     * Create a booking, or replace the details of the booking with its id when there is one.
+     * A replacement fails when the booking has been changed since the version of the request was read,
+     * and a booking with an unknown id is created with a new id, like a booking without one.
+     *
+     * @param booking the booking
+     * @return the created or updated booking
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED, rollbackFor = PreconditionFailedException.class)
+    public Booking createOrUpdateBooking(Booking booking) throws PreconditionFailedException {
+        Optional<Booking> existing = booking.getId() == null ? Optional.empty()
+                : shardedBookingRepository.findById(booking.getId());
+        if (existing.isPresent()) {
+            return update(existing.get(), booking, booking.getVersion(), false);
+        }
+        checkHotel(booking);
+        booking.setId(bookingSequence.nextId());
+        booking.setVersion(0L);
+        eventPublisher.publishEvent(BookingChangedEvent.created(BookingSnapshot.of(booking)));
+        shardedBookingRepository.insert(Collections.singletonList(booking));
+        tableVersionService.bookingsChanged();
+        return booking;
+    }
+
+    /**
+     * Replace the details of a booking.
+     * The update fails when the booking has been changed since the expected version was read.
+     *
+     * @param bookingId the booking id
+     * @param booking the booking details
+     * @param expectedVersion the version the client has read, or null to update any version
+     * @return the updated booking
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED, rollbackFor = PreconditionFailedException.class)
+    public Booking updateBooking(long bookingId, Booking booking, Long expectedVersion)
+            throws ResourceNotFoundException, PreconditionFailedException {
+        return update(getBookingById(bookingId), booking, expectedVersion, false);
+    }
+
+    /**
+     * Change some details of a booking. Only the non null details are applied.
+     *
+     * @param bookingId the booking id
+     * @param changes the changed booking details
+     * @param expectedVersion the version the client has read, or null to update any version
+     * @return the updated booking
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED, rollbackFor = PreconditionFailedException.class)
+    public Booking patchBooking(long bookingId, Booking changes, Long expectedVersion)
+            throws ResourceNotFoundException, PreconditionFailedException {
+        return update(getBookingById(bookingId), changes, expectedVersion, true);
+    }
+
+    /**
+     * Create a batch of bookings.
+     * All the hotel names are resolved with one query, and the bookings are inserted with JDBC batching,
+     * one batch per shard. Bookings without a hotel name are rejected.
+     *
+     * @param bookings the bookings
+     * @return the result of every booking, in the order of the bookings
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<BookingBatchResult> createBookings(List<Booking> bookings) {
+        Map<String, Hotel> hotels = BatchHotels.resolve(bookings, hotelRepository, hotelService);
+        List<BookingBatchResult> results = new ArrayList<>(bookings.size());
+        List<Booking> created = new ArrayList<>();
+        for (int index = 0; index < bookings.size(); index++) {
+            Booking booking = bookings.get(index);
+            if (!BatchHotels.hasHotelName(booking)) {
+                results.add(BookingBatchResult.rejected(index, "Hotel name is missing"));
+                continue;
+            }
+            booking.setId(bookingSequence.nextId());
+            booking.setVersion(0L);
+            booking.setHotel(hotels.get(booking.getHotel().getName()));
+            results.add(BookingBatchResult.created(index, booking.getId()));
+            created.add(booking);
+        }
+        if (!created.isEmpty()) {
+            created.forEach(booking ->
+                    eventPublisher.publishEvent(BookingChangedEvent.created(BookingSnapshot.of(booking))));
+            shardedBookingRepository.insert(created);
+            tableVersionService.bookingsChanged();
+        }
+        return results;
+    }
+
+    /**
+     * Delete a booking. The delete fails when the booking is changed while it is deleted.
+     *
+     * @param bookingId the booking id
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void deleteBooking(long bookingId) throws ResourceNotFoundException {
+        Booking booking = getBookingById(bookingId);
+        eventPublisher.publishEvent(BookingChangedEvent.deleted(BookingSnapshot.of(booking)));
+        if (!shardedBookingRepository.delete(bookingId, booking.getHotel().getId(), booking.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(Booking.class, bookingId);
+        }
+        tableVersionService.bookingsChanged();
+    }
+
+    /**
+     * Retrieve the distinct hotels that are associated to the specified booking surname.
+     * The hotels are looked up in the surname index, so only the hotels themselves are read.
+     *
+     * @param surname the booking customer surname
+     * @return the list of hotels ordered by id
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Hotel> getHotelsByBookingSurname(String surname) {
+        return getHotels(surnameIndexService.findHotelIds(surname));
+    }
+
+    /**
+     * Retrieve the distinct hotels that are associated to any booking surname starting with the specified prefix.
+     *
+     * @param prefix the beginning of the booking customer surname
+     * @return the list of hotels ordered by id
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Hotel> getHotelsByBookingSurnamePrefix(String prefix) {
+        return getHotels(surnameIndexService.findHotelIdsByPrefix(prefix));
+    }
+
+    /**
+     * Retrieve all the bookings that are associated to the specified list of hotel ids, from the shards of
+     * the hotels.
+     *
+     * @param ids the list of hotel ids
+     * @return a list of bookings
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Booking> getBookingsByHotels(List<Long> ids) {
+        return withHotels(shardedBookingRepository.findBookingsByHotelIds(ids));
+    }
+
+    /**
+     * Retrieve all the bookings that are associated to the specified list of hotel ids.
+     * The ids are queried in chunks at the same time, and the bookings are returned in the order of the chunks.
+     *
+     * @param ids the list of hotel ids
+     * @param timeout the time to wait for all the chunks
+     * @return a list of bookings
+     * @throws ServiceBusyException if the chunks do not complete in time or cannot be queued
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<Booking> getBookingsByHotels(List<Long> ids, Duration timeout) throws ServiceBusyException {
+        return fanOutExecutor.queryAll(ids, this::getBookingsByHotels, timeout);
+    }
+
+    /**
+     * Pass the bookings of the specified list of hotel ids to the consumer, the bookings of every chunk of ids
+     * as soon as the chunk is read. The chunks are queried at the same time, so their order is not defined.
+     *
+     * @param ids the list of hotel ids
+     * @param timeout the time to wait for all the chunks
+     * @param consumer the booking consumer
+     * @throws ServiceBusyException if the chunks do not complete in time or cannot be queued
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void streamBookingsByHotels(List<Long> ids, Duration timeout, Consumer<Booking> consumer)
+            throws ServiceBusyException {
+        fanOutExecutor.queryEach(ids, this::getBookingsByHotels, timeout, consumer);
+    }
+
+    /**
+     * Retrieve the summaries of all the bookings that are associated to the specified list of hotel ids.
+     *
+     * @param ids the list of hotel ids
+     * @return a list of booking summaries
+     */
+    @Override
+    public List<BookingSummary> getBookingSummariesByHotels(List<Long> ids) {
+        return summaries(shardedBookingRepository.findBookingsByHotelIds(ids));
+    }
+
+    /**
+     * Retrieve all the bookings of the specified hotel name from the shard of the hotel.
+     *
+     * @param name the hotel name
+     * @return a list of bookings
+     */
+    @Override
+    public List<Booking> getBookingsByHotelName(String name) {
+        return withHotel(hotelService.getHotelByName(name),
+                hotel -> shardedBookingRepository.findBookingsByHotelIds(Collections.singletonList(hotel.getId())));
+    }
+
+    /**
+     * Retrieve a page of the bookings of the specified hotel name ordered by id, starting after the provided booking id.
+     *
+     * @param name the hotel name
+     * @param afterId the id of the last booking of the previous page
+     * @param size the maximum number of bookings
+     * @return a list with the bookings of the page
+     */
+    @Override
+    public List<Booking> getBookingsByHotelNameAfter(String name, long afterId, int size) {
+        return withHotel(hotelService.getHotelByName(name), hotel ->
+                shardedBookingRepository.findBookingsAfter(hotel.getId(), afterId, Long.MAX_VALUE, size));
+    }
+
+    /**
+     * Pass the bookings of the specified hotel name, ordered by id, to the consumer one at a time.
+     *
+     * @param name the hotel name
+     * @param consumer the booking consumer
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamBookingsByHotelName(String name, Consumer<Booking> consumer) {
+        Hotel hotel = hotelService.getHotelByName(name);
+        if (hotel != null) {
+            forEachBooking(hotel.getId(), 0L, Long.MAX_VALUE, consumer);
+        }
+    }
+
+    /**
+     * Retrieve the summaries of all the bookings of the specified hotel name.
+     *
+     * @param name the hotel name
+     * @return a list of booking summaries
+     */
+    @Override
+    public List<BookingSummary> getBookingSummariesByHotelName(String name) {
+        return summaries(getBookingsByHotelName(name));
+    }
+
+    /**
+     * Retrieve the sum of all booking amounts per currency for the specified hotel name, from the shard of
+     * the hotel.
+     *
+     * @param name the hotel name
+     * @return a list with the total amount of each currency
+     */
+    @Override
+    public List<CurrencyAmount> getTotalAmountsByHotelName(String name) {
+        Hotel hotel = hotelService.getHotelByName(name);
+        if (hotel == null) {
+            return Collections.emptyList();
+        }
+        return shardedBookingRepository.sumPriceAmountsByHotelId(hotel.getId());
+    }
+
+    private Booking update(Booking booking, Booking changes, Long expectedVersion, boolean partial)
+            throws PreconditionFailedException {
+        if (expectedVersion != null && !expectedVersion.equals(booking.getVersion())) {
+            throw new PreconditionFailedException("Booking with ID=" + booking.getId() + " has version "
+                    + booking.getVersion() + ", not " + expectedVersion);
+        }
+        BookingSnapshot previous = BookingSnapshot.of(booking);
+        long previousHotelId = booking.getHotel().getId();
+        long version = booking.getVersion();
+        if (!partial || changes.getCustomerName() != null) {
+            booking.setCustomerName(changes.getCustomerName());
+        }
+        if (!partial || changes.getCustomerSurname() != null) {
+            booking.setCustomerSurname(changes.getCustomerSurname());
+        }
+        if (!partial || changes.getPax() != null) {
+            booking.setPax(changes.getPax());
+        }
+        if (!partial || changes.getPriceAmount() != null) {
+            booking.setPriceAmount(changes.getPriceAmount());
+        }
+        if (!partial || changes.getCurrency() != null) {
+            booking.setCurrency(changes.getCurrency());
+        }
+        if (changes.getHotel() != null) {
+            booking.setHotel(changes.getHotel());
+        }
+        checkHotel(booking);
+        booking.setVersion(version + 1);
+        eventPublisher.publishEvent(new BookingChangedEvent(previous, BookingSnapshot.of(booking)));
+        if (!shardedBookingRepository.update(booking, previousHotelId, version)) {
+            throw new PreconditionFailedException("Booking with ID=" + booking.getId()
+                    + " was changed concurrently");
+        }
+        tableVersionService.bookingsChanged();
+        return booking;
+    }
+
+    /**
+     * Read the bookings of a hotel, or of all the hotels, a page at a time and pass them to the consumer.
+     */
+    private void forEachBooking(Long hotelId, long afterId, long beforeId, Consumer<Booking> consumer) {
+        long cursor = afterId;
+        List<Booking> page;
+        do {
+            page = withHotels(shardedBookingRepository.findBookingsAfter(hotelId, cursor, beforeId, PAGE_SIZE));
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                cursor = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == PAGE_SIZE);
+    }
+
+    /**
+     * Replace the hotels of the bookings, which only have their ids, with the hotels of the main database.
+     */
+    private List<Booking> withHotels(List<Booking> bookings) {
+        List<Long> hotelIds = bookings.stream()
+                .map(booking -> booking.getHotel().getId())
+                .collect(Collectors.toList());
+        Map<Long, Hotel> hotels = getHotels(hotelIds).stream()
+                .collect(Collectors.toMap(Hotel::getId, Function.identity()));
+        bookings.forEach(booking -> booking.setHotel(hotels.getOrDefault(booking.getHotel().getId(),
+                booking.getHotel())));
+        return bookings;
+    }
+
+    private static List<Booking> withHotel(Hotel hotel, Function<Hotel, List<Booking>> query) {
+        if (hotel == null) {
+            return Collections.emptyList();
+        }
+        List<Booking> bookings = query.apply(hotel);
+        bookings.forEach(booking -> booking.setHotel(hotel));
+        return bookings;
+    }
+
+    private List<Hotel> getHotels(List<Long> hotelIds) {
+        List<Hotel> hotels = new ArrayList<>(InClauses.inChunks(hotelIds, BookingRepository.IN_CLAUSE_CHUNK_SIZE,
+                hotelRepository::findAllById));
+        hotels.sort(Comparator.comparing(Hotel::getId));
+        return hotels;
+    }
+
+    private static List<BookingSummary> summaries(List<Booking> bookings) {
+        return bookings.stream().map(BookingSummary::of).collect(Collectors.toList());
+    }
+
+    /**
+     * The shards have no foreign key to the hotels, so a booking without a hotel id is rejected here.
+     */
+    private static void checkHotel(Booking booking) {
+        if (booking.getHotel() == null || booking.getHotel().getId() == null) {
+            throw new DataIntegrityViolationException("Booking with ID=" + booking.getId() + " has no hotel id");
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.booking.hotel.service;
+
+import java.util.List;
+
+public interface SurnameIndexService {
+    List<Long> findHotelIds(String surname);
+    List<Long> findHotelIdsByPrefix(String prefix);
+    void rebuild();
+}
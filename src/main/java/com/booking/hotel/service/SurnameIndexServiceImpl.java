@@ -0,0 +1,216 @@
+package com.booking.hotel.service;
+
+import com.booking.hotel.dto.SurnameHotelCount;
+import com.booking.hotel.event.BookingChangedEvent;
+import com.booking.hotel.event.BookingSnapshot;
+import com.booking.hotel.repository.BookingAggregates;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Keeps the hotels of every customer surname in memory, for exact and prefix (type-ahead) lookups
+ * without a query. Exact lookups match the surname as stored, like the query they replace, and prefix
+ * lookups ignore case.
+ * <p>
+ * Every surname is keyed by its lower case followed by the surname itself, so the keys of a prefix in any
+ * case are one range, and every surname holds its hotel ids and booking counts in two sorted arrays.
+ * The index is built from the database at startup and updated by every committed booking change; a hotel is
+ * dropped from a surname with its last booking. Booking changes wait to commit while the index is read
+ * from the database, so a change is either part of the rebuilt index or applied to it afterwards.
+ */
+@Service
+@Slf4j
+public class SurnameIndexServiceImpl implements SurnameIndexService {
+
+    private static final char CASE_SEPARATOR = '\0';
+
+    private BookingAggregates bookingAggregates;
+    private volatile ConcurrentNavigableMap<String, Postings> hotelsBySurname = new ConcurrentSkipListMap<>();
+    private final CommitLock commitLock = new CommitLock();
+
+    public SurnameIndexServiceImpl(BookingAggregates bookingAggregates) {
+        this.bookingAggregates = bookingAggregates;
+    }
+
+    /**
+     * Retrieve the ids of the hotels with bookings of the specified surname.
+     *
+     * @param surname the booking customer surname
+     * @return the distinct hotel ids, in ascending order
+     */
+    @Override
+    public List<Long> findHotelIds(String surname) {
+        Postings postings = hotelsBySurname.get(key(surname));
+        return postings == null ? new ArrayList<>() : hotelIds(Collections.singletonList(postings));
+    }
+
+    /**
+     * Retrieve the ids of the hotels with bookings of any surname starting with the specified prefix.
+     *
+     * @param prefix the beginning of the booking customer surname
+     * @return the distinct hotel ids, in ascending order
+     */
+    @Override
+    public List<Long> findHotelIdsByPrefix(String prefix) {
+        String from = prefix.toLowerCase(Locale.ROOT);
+        return hotelIds(hotelsBySurname.subMap(from, true, from + Character.MAX_VALUE, false).values());
+    }
+
+    /**
+     * Replace the index with the surnames and hotels of the database.
+     * Runs in a read-write transaction, so the index starts from the primary database and not from a replica
+     * that may miss the latest bookings.
+     */
+    @Override
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        int surnames = commitLock.reading(() -> {
+            ConcurrentNavigableMap<String, Postings> index = new ConcurrentSkipListMap<>();
+            for (SurnameHotelCount row : bookingAggregates.countBookingsBySurnameAndHotel()) {
+                if (row.getCustomerSurname() != null) {
+                    index.computeIfAbsent(key(row.getCustomerSurname()), surname -> new Postings())
+                            .add(row.getHotelId(), row.getBookingCount().intValue());
+                }
+            }
+            hotelsBySurname = index;
+            return index.size();
+        });
+        log.info("Surname index rebuilt with {} surnames", surnames);
+    }
+
+    /**
+     * Make the transaction of a booking change hold its commit until the change has been applied.
+     *
+     * @param event the booking change
+     */
+    @EventListener
+    public void onBookingChanging(BookingChangedEvent event) {
+        commitLock.joinCurrentTransaction();
+    }
+
+    /**
+     * Apply a committed booking change: the previous surname and hotel lose a booking
+     * and the current ones gain one.
+     *
+     * @param event the booking change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookingChanged(BookingChangedEvent event) {
+        commitLock.applying(() -> {
+            apply(event.getPrevious(), -1);
+            apply(event.getCurrent(), 1);
+        });
+    }
+
+    private void apply(BookingSnapshot booking, int delta) {
+        if (booking == null || booking.getHotelId() == null || booking.getCustomerSurname() == null) {
+            return;
+        }
+        String surname = key(booking.getCustomerSurname());
+        while (true) {
+            Postings postings = delta > 0
+                    ? hotelsBySurname.computeIfAbsent(surname, key -> new Postings())
+                    : hotelsBySurname.get(surname);
+            if (postings == null) {
+                return;
+            }
+            synchronized (postings) {
+                // A surname that lost its last hotel meanwhile is out of the index, retry with a new one.
+                if (postings.removed) {
+                    continue;
+                }
+                postings.add(booking.getHotelId(), delta);
+                if (postings.isEmpty()) {
+                    postings.removed = true;
+                    hotelsBySurname.remove(surname, postings);
+                }
+                return;
+            }
+        }
+    }
+
+    private static List<Long> hotelIds(Collection<Postings> postings) {
+        TreeSet<Long> hotelIds = new TreeSet<>();
+        for (Postings posting : postings) {
+            for (long hotelId : posting.hotelIds) {
+                hotelIds.add(hotelId);
+            }
+        }
+        return new ArrayList<>(hotelIds);
+    }
+
+    private static String key(String surname) {
+        return surname.toLowerCase(Locale.ROOT) + CASE_SEPARATOR + surname;
+    }
+
+    /**
+     * The hotels of one surname and the number of bookings of the surname in each of them,
+     * as two arrays sorted by hotel id. Changes are made while holding the lock of the postings and
+     * replace the arrays instead of changing them, so readers can iterate them without locking.
+     */
+    private static class Postings {
+
+        private volatile long[] hotelIds = new long[0];
+        private int[] counts = new int[0];
+        private boolean removed;
+
+        void add(long hotelId, int delta) {
+            int index = Arrays.binarySearch(hotelIds, hotelId);
+            if (index >= 0) {
+                int count = counts[index] + delta;
+                if (count > 0) {
+                    int[] updatedCounts = counts.clone();
+                    updatedCounts[index] = count;
+                    counts = updatedCounts;
+                } else {
+                    remove(index);
+                }
+            } else if (delta > 0) {
+                insert(-index - 1, hotelId, delta);
+            }
+        }
+
+        boolean isEmpty() {
+            return hotelIds.length == 0;
+        }
+
+        private void insert(int index, long hotelId, int count) {
+            long[] updatedIds = new long[hotelIds.length + 1];
+            int[] updatedCounts = new int[counts.length + 1];
+            System.arraycopy(hotelIds, 0, updatedIds, 0, index);
+            System.arraycopy(counts, 0, updatedCounts, 0, index);
+            updatedIds[index] = hotelId;
+            updatedCounts[index] = count;
+            System.arraycopy(hotelIds, index, updatedIds, index + 1, hotelIds.length - index);
+            System.arraycopy(counts, index, updatedCounts, index + 1, counts.length - index);
+            counts = updatedCounts;
+            hotelIds = updatedIds;
+        }
+
+        private void remove(int index) {
+            long[] updatedIds = new long[hotelIds.length - 1];
+            int[] updatedCounts = new int[counts.length - 1];
+            System.arraycopy(hotelIds, 0, updatedIds, 0, index);
+            System.arraycopy(counts, 0, updatedCounts, 0, index);
+            System.arraycopy(hotelIds, index + 1, updatedIds, index, hotelIds.length - index - 1);
+            System.arraycopy(counts, index + 1, updatedCounts, index, counts.length - index - 1);
+            counts = updatedCounts;
+            hotelIds = updatedIds;
+        }
+    }
+}
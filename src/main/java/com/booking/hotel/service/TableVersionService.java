@@ -0,0 +1,8 @@
+package com.booking.hotel.service;
+
+public interface TableVersionService {
+    long getHotelsVersion();
+    long getBookingsVersion();
+    void hotelsChanged();
+    void bookingsChanged();
+}
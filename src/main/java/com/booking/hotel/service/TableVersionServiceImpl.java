@@ -0,0 +1,181 @@
+package com.booking.hotel.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one version per table in the table_version table, which the read endpoints use as a cheap ETag.
+ * <p>
+ * A write increases the versions of the tables it changed just before its transaction commits, in the same
+ * transaction, so a version is never visible without its data. All the nodes of a shared database hand out
+ * the same versions, and a write on one node changes the ETags of all of them.
+ * <p>
+ * The versions are read from the primary database, all at once, and kept for table-version-cache-ms.
+ * A node forgets them when one of its own writes commits, so it sees its own writes right away and the writes
+ * of the other nodes within that time, which should stay below cache-max-age-seconds.
+ */
+@Service
+public class TableVersionServiceImpl implements TableVersionService {
+
+    static final String HOTEL = "hotel";
+    static final String BOOKING = "booking";
+
+    private static final String SELECT_VERSIONS = "SELECT table_name, version FROM table_version";
+    private static final String INCREMENT_VERSION =
+            "UPDATE table_version SET version = version + 1 WHERE table_name = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long cacheNanos;
+    private final AtomicLong invalidations = new AtomicLong();
+    private volatile Versions versions;
+
+    public TableVersionServiceImpl(JdbcTemplate jdbcTemplate,
+                                   @Value("${booking.http.table-version-cache-ms:1000}") long cacheMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cacheNanos = TimeUnit.MILLISECONDS.toNanos(cacheMillis);
+    }
+
+    /**
+     * Retrieve the version of the hotel table.
+     * Runs outside of any transaction, so it is read from the primary database.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long getHotelsVersion() {
+        return versions().get(HOTEL);
+    }
+
+    /**
+     * Retrieve the version of the booking table.
+     * Runs outside of any transaction, so it is read from the primary database.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long getBookingsVersion() {
+        return versions().get(BOOKING);
+    }
+
+    /**
+     * Record a change of the hotel table in the current transaction.
+     */
+    @Override
+    public void hotelsChanged() {
+        changed(HOTEL);
+    }
+
+    /**
+     * Record a change of the booking table in the current transaction.
+     */
+    @Override
+    public void bookingsChanged() {
+        changed(BOOKING);
+    }
+
+    /**
+     * Versions read while a write of this node commits are used once but not kept, because they may be
+     * older than the write.
+     */
+    private Versions versions() {
+        Versions current = versions;
+        if (current == null || System.nanoTime() - current.readAt > cacheNanos) {
+            long invalidation = invalidations.get();
+            Map<String, Long> byTable = new HashMap<>();
+            jdbcTemplate.query(SELECT_VERSIONS, row -> {
+                byTable.put(row.getString("table_name"), row.getLong("version"));
+            });
+            current = new Versions(byTable, System.nanoTime());
+            if (invalidations.get() == invalidation) {
+                versions = current;
+            }
+        }
+        return current;
+    }
+
+    private void invalidate() {
+        invalidations.incrementAndGet();
+        versions = null;
+    }
+
+    /**
+     * The versions are increased once per transaction, whatever the number of changed rows.
+     */
+    private void changed(String table) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            increment(Collections.singleton(table));
+            invalidate();
+            return;
+        }
+        ChangedTables changedTables = (ChangedTables) TransactionSynchronizationManager.getResource(this);
+        if (changedTables == null) {
+            changedTables = new ChangedTables();
+            TransactionSynchronizationManager.bindResource(this, changedTables);
+            TransactionSynchronizationManager.registerSynchronization(changedTables);
+        }
+        changedTables.tables.add(table);
+    }
+
+    private void increment(Set<String> tables) {
+        tables.forEach(table -> jdbcTemplate.update(INCREMENT_VERSION, table));
+    }
+
+    /**
+     * The tables changed by one transaction. The row locks of the versions are only taken just before the
+     * commit, so concurrent writers of a table only wait for each other's commits, and always in the order
+     * of the table names, so two transactions that change both tables cannot deadlock.
+     */
+    private final class ChangedTables extends TransactionSynchronizationAdapter {
+
+        private final Set<String> tables = new TreeSet<>();
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(TableVersionServiceImpl.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(TableVersionServiceImpl.this, this);
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            increment(tables);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(TableVersionServiceImpl.this);
+            if (status == STATUS_COMMITTED) {
+                invalidate();
+            }
+        }
+    }
+
+    private static final class Versions {
+
+        private final Map<String, Long> byTable;
+        private final long readAt;
+
+        private Versions(Map<String, Long> byTable, long readAt) {
+            this.byTable = byTable;
+            this.readAt = readAt;
+        }
+
+        private long get(String table) {
+            return byTable.get(table);
+        }
+    }
+}
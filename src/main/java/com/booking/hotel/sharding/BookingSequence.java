@@ -0,0 +1,37 @@
+package com.booking.hotel.sharding;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Hands out the ids of the sharded bookings from booking_seq of the main database, so that they stay unique
+ * across the shards and follow the ids of the bookings created before the sharding.
+ * <p>
+ * Like the pooled generator of the booking entity, every value of the sequence is the last id of a block of
+ * allocation-size ids, so the sequence is read once per block.
+ */
+public class BookingSequence {
+
+    private static final String NEXT_VALUE = "SELECT NEXT VALUE FOR booking_seq";
+    private static final int ALLOCATION_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private long nextId = 1;
+    private long lastId;
+
+    public BookingSequence(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Retrieve a new booking id.
+     *
+     * @return the booking id
+     */
+    public synchronized long nextId() {
+        if (nextId > lastId) {
+            lastId = jdbcTemplate.queryForObject(NEXT_VALUE, Long.class);
+            nextId = Math.max(1, lastId - ALLOCATION_SIZE + 1);
+        }
+        return nextId++;
+    }
+}
@@ -0,0 +1,108 @@
+package com.booking.hotel.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Assigns every hotel to a shard on a consistent hash ring.
+ * <p>
+ * Every shard is placed on the ring at a number of virtual nodes, and a hotel belongs to the first shard
+ * at or after the hash of its id. Adding a shard therefore only moves the hotels that fall right before its
+ * virtual nodes, about 1/N of them, and the hotels of the other shards stay where they are.
+ * The map is immutable: adding a shard returns a new map.
+ */
+public final class ShardMap {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final List<String> shards;
+    private final int virtualNodes;
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    public ShardMap(Collection<String> shards, int virtualNodes) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("A shard map needs at least one shard");
+        }
+        this.shards = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(shards)));
+        this.virtualNodes = virtualNodes;
+        for (String shard : this.shards) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(shard + "#" + i), shard);
+            }
+        }
+    }
+
+    public List<String> getShards() {
+        return shards;
+    }
+
+    /**
+     * Retrieve the shard of a hotel.
+     *
+     * @param hotelId the hotel id
+     * @return the shard name
+     */
+    public String shardOf(long hotelId) {
+        Map.Entry<Long, String> node = ring.ceilingEntry(mix(hotelId));
+        return (node != null ? node : ring.firstEntry()).getValue();
+    }
+
+    /**
+     * Group hotel ids by shard, keeping their order within every shard.
+     *
+     * @param hotelIds the hotel ids, duplicates are ignored
+     * @return the hotel ids of every shard that has any
+     */
+    public Map<String, List<Long>> groupByShard(Collection<Long> hotelIds) {
+        Map<String, List<Long>> hotelIdsByShard = new LinkedHashMap<>();
+        for (Long hotelId : new LinkedHashSet<>(hotelIds)) {
+            hotelIdsByShard.computeIfAbsent(shardOf(hotelId), shard -> new ArrayList<>()).add(hotelId);
+        }
+        return hotelIdsByShard;
+    }
+
+    /**
+     * Retrieve a map with one more shard and the same number of virtual nodes per shard.
+     *
+     * @param shard the added shard name
+     * @return the new map
+     */
+    public ShardMap withShard(String shard) {
+        List<String> extended = new ArrayList<>(shards);
+        extended.add(shard);
+        return new ShardMap(extended, virtualNodes);
+    }
+
+    private static long hash(String key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * The finalizer of SplitMix64, which spreads consecutive ids over the whole ring.
+     */
+    private static long mix(long value) {
+        long z = value + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public String toString() {
+        return "ShardMap" + shards;
+    }
+}
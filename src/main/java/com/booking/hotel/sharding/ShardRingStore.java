@@ -0,0 +1,57 @@
+package com.booking.hotel.sharding;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the shards of the hash ring in the shard_ring table of the main database, so that the ring of the last
+ * rebalance is used again after a restart. The active shards of booking.sharding.shards are only the ring of
+ * an empty table.
+ */
+public class ShardRingStore {
+
+    private static final String SELECT_SHARDS = "SELECT shard_name FROM shard_ring ORDER BY position";
+    private static final String INSERT_SHARD = "INSERT INTO shard_ring (shard_name, position) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ShardRingStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Retrieve the shards of the stored ring, or store the initial shards when there is none yet.
+     *
+     * @param initialShards the shards of a new ring
+     * @return the shard names in the order they joined the ring
+     */
+    public List<String> load(List<String> initialShards) {
+        List<String> shards = jdbcTemplate.queryForList(SELECT_SHARDS, String.class);
+        if (!shards.isEmpty()) {
+            return shards;
+        }
+        insertMissing(initialShards);
+        return initialShards;
+    }
+
+    /**
+     * Add the shards of a map that are not stored yet.
+     *
+     * @param shardMap the shard map
+     */
+    public void save(ShardMap shardMap) {
+        insertMissing(shardMap.getShards());
+    }
+
+    private void insertMissing(List<String> shards) {
+        Set<String> stored = new HashSet<>(jdbcTemplate.queryForList(SELECT_SHARDS, String.class));
+        for (int position = 0; position < shards.size(); position++) {
+            if (!stored.contains(shards.get(position))) {
+                jdbcTemplate.update(INSERT_SHARD, shards.get(position), position);
+            }
+        }
+    }
+}
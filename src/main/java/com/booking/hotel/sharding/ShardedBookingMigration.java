@@ -0,0 +1,57 @@
+package com.booking.hotel.sharding;
+
+import com.booking.hotel.entity.Booking;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Moves the bookings of the main database to the shards of their hotels at startup, so that the bookings
+ * created before the sharding, like the seed data, are stored with the new ones and the main database only
+ * keeps the hotels.
+ * <p>
+ * Runs when the context is refreshed, before the web server starts and before the views of the bookings are
+ * built from the shards. A page is deleted from the main database once it has been saved on the shards, so a
+ * migration that stops halfway goes on from there at the next startup.
+ */
+@Slf4j
+public class ShardedBookingMigration {
+
+    private static final String SELECT_PAGE = "SELECT id, customer_name, customer_surname, pax, price_amount, " +
+            "currency, hotel_id, version FROM booking ORDER BY id LIMIT ?";
+    private static final String DELETE_PAGE = "DELETE FROM booking WHERE id <= ?";
+    private static final int PAGE_SIZE = 1000;
+
+    private final ShardedBookingRepository shardedBookingRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    public ShardedBookingMigration(ShardedBookingRepository shardedBookingRepository, JdbcTemplate jdbcTemplate) {
+        this.shardedBookingRepository = shardedBookingRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Move all the bookings of the main database to the shards, a page at a time.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void migrate() {
+        long migrated = 0;
+        List<Booking> page;
+        do {
+            page = jdbcTemplate.query(SELECT_PAGE, ShardedBookingRepository.BOOKING, PAGE_SIZE);
+            if (page.isEmpty()) {
+                break;
+            }
+            page.forEach(shardedBookingRepository::save);
+            jdbcTemplate.update(DELETE_PAGE, page.get(page.size() - 1).getId());
+            migrated += page.size();
+        } while (page.size() == PAGE_SIZE);
+        if (migrated > 0) {
+            log.info("Moved {} bookings of the main database to the shards {}", migrated,
+                    shardedBookingRepository.countByShard());
+        }
+    }
+}
@@ -0,0 +1,699 @@
+package com.booking.hotel.sharding;
+
+import com.booking.hotel.dto.CurrencyAmount;
+import com.booking.hotel.dto.HotelCurrencyTotals;
+import com.booking.hotel.dto.SurnameHotelCount;
+import com.booking.hotel.entity.Booking;
+import com.booking.hotel.entity.Hotel;
+import com.booking.hotel.repository.BookingAggregates;
+import com.booking.hotel.repository.BookingRepository;
+import com.booking.hotel.repository.InClauses;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Stores the bookings in several databases, every hotel with all its bookings in one of them. The main database
+ * only holds the hotels, so a booking references its hotel by id, without a foreign key.
+ * <p>
+ * The shard of a hotel is given by the {@link ShardMap}. Queries by hotel only go to the shards of their
+ * hotels, and the other queries go to every shard in parallel, each shard returning its first page, and the
+ * pages are merged by id. Since every shard returns at least the bookings of the merged page that it holds,
+ * the merged page is the same as on a single database, and the id of its last booking is the cursor of the
+ * next page.
+ * <p>
+ * A write locks the hotels it changes, and an update or delete only applies to the version of the booking it
+ * expects. Within a transaction synchronization, such as a service method, every shard written gets a local
+ * transaction, which commits just before the synchronization commits, after the synchronizations registered
+ * before the write, and the hotels stay locked until the synchronization has completed. So the views of the
+ * bookings, which hold their commit lock from the commit of a change until it is applied, see the commits of
+ * the shards like the commits of the main database. Without a synchronization, every statement commits right
+ * away. The shards of one write commit one after the other, so a booking moved to a hotel of another shard is
+ * not moved atomically.
+ * <p>
+ * A rebalance copies the hotels that belong to another shard on the new map, stores the new ring, switches to
+ * it and then deletes from every shard the hotels that it no longer holds. Meanwhile, the changes of a moving
+ * hotel are also written to its new shard, a hotel is never changed and copied at the same time, and the
+ * switches wait for the writes in progress, so no change is lost. Reads do not wait for a rebalance: they only
+ * keep the bookings that a shard holds on the map they started with.
+ */
+@Slf4j
+public class ShardedBookingRepository implements BookingAggregates, Closeable {
+
+    private static final String COLUMNS =
+            "id, customer_name, customer_surname, pax, price_amount, currency, hotel_id, version";
+    private static final String SELECT = "SELECT " + COLUMNS + " FROM booking ";
+    private static final String INSERT = "INSERT INTO booking (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE = "UPDATE booking SET customer_name = ?, customer_surname = ?, pax = ?, " +
+            "price_amount = ?, currency = ?, hotel_id = ?, version = ? WHERE id = ?";
+    private static final String DELETE = "DELETE FROM booking WHERE id = ?";
+    private static final String VERSION_MATCHES = " AND version = ?";
+    private static final int HOTEL_LOCK_STRIPES = 64;
+
+    /**
+     * Maps a booking row with a hotel that only has its id.
+     */
+    static final RowMapper<Booking> BOOKING = (resultSet, row) -> Booking.builder()
+            .id(resultSet.getLong("id"))
+            .customerName(resultSet.getString("customer_name"))
+            .customerSurname(resultSet.getString("customer_surname"))
+            .pax(resultSet.getObject("pax", Integer.class))
+            .priceAmount(resultSet.getBigDecimal("price_amount"))
+            .currency(resultSet.getString("currency"))
+            .hotel(Hotel.builder().id(resultSet.getLong("hotel_id")).build())
+            .version(resultSet.getLong("version"))
+            .build();
+
+    private static final RowMapper<HotelCurrencyTotals> HOTEL_CURRENCY_TOTALS = (resultSet, row) ->
+            new HotelCurrencyTotals(
+                    resultSet.getLong("hotel_id"),
+                    resultSet.getString("currency"),
+                    resultSet.getLong("booking_count"),
+                    resultSet.getObject("pax", Long.class),
+                    resultSet.getBigDecimal("amount"));
+
+    private static final RowMapper<SurnameHotelCount> SURNAME_HOTEL_COUNT = (resultSet, row) ->
+            new SurnameHotelCount(
+                    resultSet.getString("customer_surname"),
+                    resultSet.getLong("hotel_id"),
+                    resultSet.getLong("booking_count"));
+
+    private final Map<String, DataSource> dataSources;
+    private final Map<String, NamedParameterJdbcTemplate> shards = new LinkedHashMap<>();
+    private final ShardRingStore ringStore;
+    private final ExecutorService executor;
+    private final Lock[] hotelLocks = new Lock[HOTEL_LOCK_STRIPES];
+    private final ReadWriteLock switchLock = new ReentrantReadWriteLock();
+    private final Object rebalanceLock = new Object();
+    private volatile Routing routing;
+
+    public ShardedBookingRepository(Map<String, DataSource> dataSources, ShardMap shardMap,
+                                    ShardRingStore ringStore, ExecutorService executor) {
+        this.dataSources = dataSources;
+        dataSources.forEach((name, dataSource) -> shards.put(name, new NamedParameterJdbcTemplate(dataSource)));
+        checkConfigured(shardMap);
+        this.routing = new Routing(shardMap, null);
+        this.ringStore = ringStore;
+        this.executor = executor;
+        for (int i = 0; i < HOTEL_LOCK_STRIPES; i++) {
+            hotelLocks[i] = new ReentrantLock();
+        }
+    }
+
+    public ShardMap getShardMap() {
+        return routing.current;
+    }
+
+    public Set<String> getConfiguredShards() {
+        return shards.keySet();
+    }
+
+    /**
+     * Retrieve a booking by id from the shard that holds it.
+     *
+     * @param bookingId the booking id
+     * @return the booking
+     */
+    public Optional<Booking> findById(long bookingId) {
+        ShardMap shardMap = routing.current;
+        MapSqlParameterSource parameters = new MapSqlParameterSource("id", bookingId);
+        return scatter(shardMap.getShards(), (shard, jdbc) -> owned(shardMap, shard,
+                jdbc.query(SELECT + "WHERE id = :id", parameters, BOOKING))).stream()
+                .flatMap(List::stream)
+                .findFirst();
+    }
+
+    /**
+     * Retrieve the bookings of the specified hotels from their shards.
+     *
+     * @param hotelIds the hotel ids
+     * @return the bookings ordered by id
+     */
+    public List<Booking> findBookingsByHotelIds(List<Long> hotelIds) {
+        Map<String, List<Long>> hotelIdsByShard = routing.current.groupByShard(hotelIds);
+        return merge(scatter(hotelIdsByShard.keySet(), (shard, jdbc) -> InClauses.inChunks(
+                hotelIdsByShard.get(shard), BookingRepository.IN_CLAUSE_CHUNK_SIZE,
+                ids -> jdbc.query(SELECT + "WHERE hotel_id IN (:hotelIds)",
+                        new MapSqlParameterSource("hotelIds", ids), BOOKING))), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Retrieve a page of the bookings with an id below the specified one, from the shard of the hotel or from
+     * all the shards.
+     *
+     * @param hotelId the hotel id, or null for the bookings of all the hotels
+     * @param afterId the id of the last booking of the previous page
+     * @param beforeId the highest booking id, exclusive
+     * @param size the maximum number of bookings
+     * @return the bookings of the page ordered by id
+     */
+    public List<Booking> findBookingsAfter(Long hotelId, long afterId, long beforeId, int size) {
+        ShardMap shardMap = routing.current;
+        MapSqlParameterSource parameters = new MapSqlParameterSource("beforeId", beforeId);
+        if (hotelId == null) {
+            return merge(scatter(shardMap.getShards(), (shard, jdbc) -> ownedPage(shardMap, shard, jdbc,
+                    "id < :beforeId", parameters, afterId, size)), size);
+        }
+        parameters.addValue("hotelId", hotelId);
+        return merge(scatter(Collections.singleton(shardMap.shardOf(hotelId)), (shard, jdbc) -> ownedPage(
+                shardMap, shard, jdbc, "hotel_id = :hotelId AND id < :beforeId", parameters, afterId, size)), size);
+    }
+
+    /**
+     * Retrieve a page of the bookings of a customer surname from all the shards.
+     *
+     * @param surname the booking customer surname
+     * @param afterId the id of the last booking of the previous page
+     * @param size the maximum number of bookings
+     * @return the bookings of the page ordered by id
+     */
+    public List<Booking> findBookingsByCustomerSurname(String surname, long afterId, int size) {
+        ShardMap shardMap = routing.current;
+        MapSqlParameterSource parameters = new MapSqlParameterSource("surname", surname);
+        return merge(scatter(shardMap.getShards(), (shard, jdbc) -> ownedPage(shardMap, shard, jdbc,
+                "customer_surname = :surname", parameters, afterId, size)), size);
+    }
+
+    /**
+     * Retrieve the sum of the booking amounts per currency of a hotel from its shard.
+     *
+     * @param hotelId the hotel id
+     * @return the total amount of each currency
+     */
+    public List<CurrencyAmount> sumPriceAmountsByHotelId(long hotelId) {
+        return shards.get(routing.current.shardOf(hotelId)).query(
+                "SELECT currency, SUM(price_amount) AS amount FROM booking WHERE hotel_id = :hotelId " +
+                        "GROUP BY currency",
+                new MapSqlParameterSource("hotelId", hotelId),
+                (resultSet, row) -> new CurrencyAmount(resultSet.getString("currency"),
+                        resultSet.getBigDecimal("amount")));
+    }
+
+    /**
+     * Retrieve the booking count, pax and amount of every hotel and currency from all the shards.
+     *
+     * @return the totals of every hotel and currency
+     */
+    @Override
+    public List<HotelCurrencyTotals> sumTotalsByHotelAndCurrency() {
+        ShardMap shardMap = routing.current;
+        return concat(scatter(shardMap.getShards(), (shard, jdbc) -> jdbc.query(
+                "SELECT hotel_id, currency, COUNT(*) AS booking_count, SUM(pax) AS pax, " +
+                        "SUM(price_amount) AS amount FROM booking GROUP BY hotel_id, currency",
+                HOTEL_CURRENCY_TOTALS).stream()
+                .filter(totals -> shard.equals(shardMap.shardOf(totals.getHotelId())))
+                .collect(Collectors.toList())));
+    }
+
+    /**
+     * Retrieve the booking count of every customer surname and hotel from all the shards.
+     *
+     * @return the count of every surname and hotel
+     */
+    @Override
+    public List<SurnameHotelCount> countBookingsBySurnameAndHotel() {
+        ShardMap shardMap = routing.current;
+        return concat(scatter(shardMap.getShards(), (shard, jdbc) -> jdbc.query(
+                "SELECT customer_surname, hotel_id, COUNT(*) AS booking_count FROM booking " +
+                        "GROUP BY customer_surname, hotel_id",
+                SURNAME_HOTEL_COUNT).stream()
+                .filter(count -> shard.equals(shardMap.shardOf(count.getHotelId())))
+                .collect(Collectors.toList())));
+    }
+
+    /**
+     * Retrieve the number of bookings of every configured shard.
+     *
+     * @return the booking count by shard name
+     */
+    public Map<String, Long> countByShard() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        shards.forEach((name, jdbc) -> counts.put(name,
+                jdbc.getJdbcTemplate().queryForObject("SELECT COUNT(*) FROM booking", Long.class)));
+        return counts;
+    }
+
+    /**
+     * Insert new bookings on the shards of their hotels, with the ids and versions they have.
+     *
+     * @param bookings the bookings
+     */
+    public void insert(List<Booking> bookings) {
+        writing(bookings.stream().map(ShardedBookingRepository::hotelId).collect(Collectors.toList()),
+                (routing, write) -> {
+                    Map<String, List<Object[]>> rowsByShard = new LinkedHashMap<>();
+                    for (Booking booking : bookings) {
+                        for (String shard : routing.shardsOf(hotelId(booking))) {
+                            rowsByShard.computeIfAbsent(shard, name -> new ArrayList<>()).add(values(booking));
+                        }
+                    }
+                    rowsByShard.forEach((shard, rows) -> write.jdbc(shard).batchUpdate(INSERT, rows));
+                    return null;
+                });
+    }
+
+    /**
+     * Insert or replace a booking on the shards of its hotel, whatever its version there.
+     *
+     * @param booking the booking
+     */
+    public void save(Booking booking) {
+        writing(Collections.singleton(hotelId(booking)), (routing, write) -> {
+            for (String shard : routing.shardsOf(hotelId(booking))) {
+                upsert(write.jdbc(shard), booking);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Replace the details of a booking if it still has the expected version. A booking moved to a hotel of
+     * another shard is deleted from the shard of its previous hotel and inserted on the new one.
+     *
+     * @param booking the booking details, with its new version
+     * @param previousHotelId the hotel id of the booking before the update
+     * @param expectedVersion the version of the booking before the update
+     * @return false when the booking has another version or has been deleted
+     */
+    public boolean update(Booking booking, long previousHotelId, long expectedVersion) {
+        long hotelId = hotelId(booking);
+        return writing(Arrays.asList(previousHotelId, hotelId), (routing, write) -> {
+            String source = routing.current.shardOf(previousHotelId);
+            String target = routing.current.shardOf(hotelId);
+            if (source.equals(target)) {
+                if (write.jdbc(source).update(UPDATE + VERSION_MATCHES,
+                        updateValues(booking, expectedVersion)) == 0) {
+                    return false;
+                }
+            } else {
+                if (write.jdbc(source).update(DELETE + VERSION_MATCHES, booking.getId(), expectedVersion) == 0) {
+                    return false;
+                }
+                write.jdbc(target).update(INSERT, values(booking));
+            }
+            if (routing.next != null) {
+                String nextSource = routing.next.shardOf(previousHotelId);
+                String nextTarget = routing.next.shardOf(hotelId);
+                if (!nextSource.equals(nextTarget) && !nextSource.equals(target)) {
+                    write.jdbc(nextSource).update(DELETE, booking.getId());
+                }
+                upsert(write.jdbc(nextTarget), booking);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Delete a booking from the shards of its hotel if it still has the expected version.
+     *
+     * @param bookingId the booking id
+     * @param hotelId the hotel id of the booking
+     * @param expectedVersion the version of the booking
+     * @return false when the booking has another version or has been deleted
+     */
+    public boolean delete(long bookingId, long hotelId, long expectedVersion) {
+        return writing(Collections.singleton(hotelId), (routing, write) -> {
+            String shard = routing.current.shardOf(hotelId);
+            if (write.jdbc(shard).update(DELETE + VERSION_MATCHES, bookingId, expectedVersion) == 0) {
+                return false;
+            }
+            if (routing.next != null && !routing.next.shardOf(hotelId).equals(shard)) {
+                write.jdbc(routing.next.shardOf(hotelId)).update(DELETE, bookingId);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Move every hotel whose shard is different on the target map to its new shard, and switch to the map.
+     * The map is stored before the switch, so a restart after the rebalance keeps it.
+     *
+     * @param target the new shard map
+     * @return the number of bookings moved
+     */
+    public long rebalance(ShardMap target) {
+        checkConfigured(target);
+        synchronized (rebalanceLock) {
+            ShardMap current = routing.current;
+            switchTo(new Routing(current, target));
+            long movedBookings = 0;
+            try {
+                for (String shard : current.getShards()) {
+                    for (Long hotelId : hotelIdsOf(shard)) {
+                        String targetShard = target.shardOf(hotelId);
+                        if (shard.equals(current.shardOf(hotelId)) && !targetShard.equals(shard)) {
+                            movedBookings += copy(hotelId, shard, targetShard);
+                        }
+                    }
+                }
+                ringStore.save(target);
+            } catch (RuntimeException e) {
+                switchTo(new Routing(current, null));
+                throw e;
+            }
+            switchTo(new Routing(target, null));
+            for (String shard : current.getShards()) {
+                for (Long hotelId : hotelIdsOf(shard)) {
+                    if (!shard.equals(target.shardOf(hotelId))) {
+                        shards.get(shard).getJdbcTemplate()
+                                .update("DELETE FROM booking WHERE hotel_id = ?", hotelId);
+                    }
+                }
+            }
+            log.info("Moved {} bookings from {} to {}", movedBookings, current, target);
+            return movedBookings;
+        }
+    }
+
+    /**
+     * Stop the query threads and close the shard pools.
+     */
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        for (DataSource dataSource : dataSources.values()) {
+            if (dataSource instanceof Closeable) {
+                ((Closeable) dataSource).close();
+            }
+        }
+    }
+
+    /**
+     * Run a write on the routing in use, holding the locks of its hotels. The routing cannot switch until the
+     * write has committed.
+     */
+    private <T> T writing(Collection<Long> hotelIds, Write<T> write) {
+        switchLock.readLock().lock();
+        ShardWrite shardWrite = new ShardWrite(lockHotels(hotelIds));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(shardWrite);
+            return write.apply(routing, shardWrite);
+        }
+        try {
+            T result = write.apply(routing, shardWrite);
+            shardWrite.commit();
+            return result;
+        } finally {
+            shardWrite.complete();
+        }
+    }
+
+    private void switchTo(Routing next) {
+        switchLock.writeLock().lock();
+        try {
+            routing = next;
+        } finally {
+            switchLock.writeLock().unlock();
+        }
+    }
+
+    private List<Long> hotelIdsOf(String shard) {
+        return shards.get(shard).getJdbcTemplate().queryForList("SELECT DISTINCT hotel_id FROM booking", Long.class);
+    }
+
+    /**
+     * Replace the bookings of a hotel on the target shard with its bookings on the source shard.
+     */
+    private int copy(long hotelId, String source, String target) {
+        List<Lock> locks = lockHotels(Collections.singleton(hotelId));
+        try {
+            List<Booking> bookings = shards.get(source).getJdbcTemplate()
+                    .query(SELECT + "WHERE hotel_id = ?", BOOKING, hotelId);
+            JdbcTemplate targetJdbc = shards.get(target).getJdbcTemplate();
+            targetJdbc.update("DELETE FROM booking WHERE hotel_id = ?", hotelId);
+            targetJdbc.batchUpdate(INSERT, bookings.stream()
+                    .map(ShardedBookingRepository::values)
+                    .collect(Collectors.toList()));
+            return bookings.size();
+        } finally {
+            locks.forEach(Lock::unlock);
+        }
+    }
+
+    /**
+     * Lock the stripes of the hotels in the order of their index, so that two writes cannot deadlock.
+     */
+    private List<Lock> lockHotels(Collection<Long> hotelIds) {
+        List<Lock> locks = hotelIds.stream()
+                .map(hotelId -> Math.floorMod(Long.hashCode(hotelId), HOTEL_LOCK_STRIPES))
+                .distinct()
+                .sorted()
+                .map(stripe -> hotelLocks[stripe])
+                .collect(Collectors.toList());
+        locks.forEach(Lock::lock);
+        return locks;
+    }
+
+    /**
+     * Run a query on every shard in parallel, or on the calling thread when there is only one.
+     */
+    private <T> List<List<T>> scatter(Collection<String> shardNames, ShardQuery<T> query) {
+        if (shardNames.size() == 1) {
+            String shard = shardNames.iterator().next();
+            List<List<T>> results = new ArrayList<>();
+            results.add(query.apply(shard, shards.get(shard)));
+            return results;
+        }
+        List<CompletableFuture<List<T>>> futures = shardNames.stream()
+                .map(shard -> CompletableFuture.supplyAsync(() -> query.apply(shard, shards.get(shard)), executor))
+                .collect(Collectors.toList());
+        List<List<T>> results = new ArrayList<>();
+        for (CompletableFuture<List<T>> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Read a page of the bookings that a shard holds on the map. Until the end of a rebalance, a shard may
+     * also keep the bookings of the hotels that moved away from it, so the page is read on past them.
+     */
+    private static List<Booking> ownedPage(ShardMap shardMap, String shard, NamedParameterJdbcTemplate jdbc,
+                                           String condition, MapSqlParameterSource parameters,
+                                           long afterId, int size) {
+        String sql = SELECT + "WHERE " + condition + " AND id > :afterId ORDER BY id LIMIT :size";
+        List<Booking> owned = new ArrayList<>();
+        long cursor = afterId;
+        List<Booking> page;
+        do {
+            page = jdbc.query(sql, new MapSqlParameterSource(parameters.getValues())
+                    .addValue("afterId", cursor)
+                    .addValue("size", size), BOOKING);
+            owned.addAll(owned(shardMap, shard, page));
+            if (!page.isEmpty()) {
+                cursor = page.get(page.size() - 1).getId();
+            }
+        } while (owned.size() < size && page.size() == size);
+        return owned;
+    }
+
+    private static List<Booking> owned(ShardMap shardMap, String shard, List<Booking> bookings) {
+        return bookings.stream()
+                .filter(booking -> shard.equals(shardMap.shardOf(hotelId(booking))))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Merge the results of the shards by id.
+     */
+    private static List<Booking> merge(List<List<Booking>> results, int size) {
+        TreeMap<Long, Booking> bookingsById = new TreeMap<>();
+        for (List<Booking> result : results) {
+            for (Booking booking : result) {
+                bookingsById.putIfAbsent(booking.getId(), booking);
+            }
+        }
+        return bookingsById.values().stream().limit(size).collect(Collectors.toList());
+    }
+
+    private static <T> List<T> concat(List<List<T>> results) {
+        return results.stream().flatMap(List::stream).collect(Collectors.toList());
+    }
+
+    private static void upsert(JdbcTemplate jdbc, Booking booking) {
+        if (jdbc.update(UPDATE, updateValues(booking)) == 0) {
+            jdbc.update(INSERT, values(booking));
+        }
+    }
+
+    private static Object[] values(Booking booking) {
+        return new Object[]{booking.getId(), booking.getCustomerName(), booking.getCustomerSurname(),
+                booking.getPax(), booking.getPriceAmount(), booking.getCurrency(), hotelId(booking),
+                booking.getVersion()};
+    }
+
+    private static Object[] updateValues(Booking booking, Object... conditions) {
+        List<Object> values = new ArrayList<>(Arrays.asList(booking.getCustomerName(),
+                booking.getCustomerSurname(), booking.getPax(), booking.getPriceAmount(), booking.getCurrency(),
+                hotelId(booking), booking.getVersion(), booking.getId()));
+        values.addAll(Arrays.asList(conditions));
+        return values.toArray();
+    }
+
+    private static long hotelId(Booking booking) {
+        return booking.getHotel().getId();
+    }
+
+    private void checkConfigured(ShardMap shardMap) {
+        for (String shard : shardMap.getShards()) {
+            if (!shards.containsKey(shard)) {
+                throw new IllegalArgumentException("Shard " + shard + " is not configured");
+            }
+        }
+    }
+
+    private interface ShardQuery<T> {
+
+        List<T> apply(String shard, NamedParameterJdbcTemplate jdbc);
+
+    }
+
+    private interface Write<T> {
+
+        T apply(Routing routing, ShardWrite write);
+
+    }
+
+    /**
+     * The shard map in use, and during a rebalance the map it moves to.
+     */
+    private static final class Routing {
+
+        final ShardMap current;
+        final ShardMap next;
+
+        Routing(ShardMap current, ShardMap next) {
+            this.current = current;
+            this.next = next;
+        }
+
+        Set<String> shardsOf(long hotelId) {
+            Set<String> shards = new LinkedHashSet<>();
+            shards.add(current.shardOf(hotelId));
+            if (next != null) {
+                shards.add(next.shardOf(hotelId));
+            }
+            return shards;
+        }
+    }
+
+    /**
+     * The local transactions of the shards written by one write, and the locks it holds until they end.
+     */
+    private final class ShardWrite extends TransactionSynchronizationAdapter {
+
+        private final List<Lock> locks;
+        private final Map<String, Connection> connections = new LinkedHashMap<>();
+        private final Map<String, JdbcTemplate> templates = new LinkedHashMap<>();
+
+        ShardWrite(List<Lock> locks) {
+            this.locks = locks;
+        }
+
+        JdbcTemplate jdbc(String shard) {
+            JdbcTemplate template = templates.get(shard);
+            if (template == null) {
+                try {
+                    Connection connection = dataSources.get(shard).getConnection();
+                    connections.put(shard, connection);
+                    connection.setAutoCommit(false);
+                    template = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+                } catch (SQLException e) {
+                    throw new CannotGetJdbcConnectionException("Failed to begin a transaction on shard " + shard, e);
+                }
+                template.setExceptionTranslator(shards.get(shard).getJdbcTemplate().getExceptionTranslator());
+                templates.put(shard, template);
+            }
+            return template;
+        }
+
+        void commit() {
+            for (Map.Entry<String, Connection> shard : connections.entrySet()) {
+                try {
+                    shard.getValue().commit();
+                } catch (SQLException e) {
+                    throw new TransactionSystemException("Could not commit on shard " + shard.getKey(), e);
+                }
+            }
+        }
+
+        /**
+         * Roll back whatever has not committed, and release the connections and the locks.
+         */
+        void complete() {
+            try {
+                for (Map.Entry<String, Connection> shard : connections.entrySet()) {
+                    try {
+                        shard.getValue().rollback();
+                    } catch (SQLException e) {
+                        log.warn("Could not roll back on shard {}", shard.getKey(), e);
+                    } finally {
+                        close(shard.getKey(), shard.getValue());
+                    }
+                }
+            } finally {
+                for (int i = locks.size() - 1; i >= 0; i--) {
+                    locks.get(i).unlock();
+                }
+                switchLock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            commit();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            complete();
+        }
+
+        private void close(String shard, Connection connection) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.warn("Could not close the connection of shard {}", shard, e);
+            }
+        }
+    }
+}
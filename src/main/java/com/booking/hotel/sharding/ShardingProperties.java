@@ -0,0 +1,59 @@
+package com.booking.hotel.sharding;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "booking.sharding")
+public class ShardingProperties {
+
+    /**
+     * Store the bookings on the shard databases, partitioned by hotel. The main database only keeps the hotels,
+     * and its bookings are moved to the shards at startup.
+     */
+    private boolean enabled = false;
+
+    /**
+     * The shard databases.
+     */
+    private List<Shard> shards = new ArrayList<>();
+
+    /**
+     * Points of every shard on the hash ring. More points spread the hotels more evenly.
+     */
+    private int virtualNodes = 128;
+
+    /**
+     * Threads that query the shards in parallel.
+     */
+    private int threads = 8;
+
+    /**
+     * Connection pool size of every shard.
+     */
+    private int maximumPoolSize = 5;
+
+    @Data
+    public static class Shard {
+
+        private String name;
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        /**
+         * Whether the shard is on the hash ring when no ring is stored yet. A new shard starts inactive and
+         * joins the ring by a rebalance, which moves its hotels to it and stores the ring.
+         */
+        private boolean active = true;
+
+    }
+}
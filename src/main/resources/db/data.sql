@@ -1,12 +1,18 @@
-INSERT INTO hotel (name, address, star_rating) VALUES
-  ('Hra', 'Panepistimiou 5', 2),
-  ('Ermhs', 'Ermou 10', 3),
-  ('Afrodith', 'Stadiou 20', 4),
-  ('Dias', 'Leoforos Kifisias 50', 5);
+-- One transaction, so that a database with hotels has been seeded completely, see WarmStartEnvironmentPostProcessor.
+SET AUTOCOMMIT FALSE;
 
-INSERT INTO booking (customer_name, customer_surname, pax, price_amount, currency, hotel_id) VALUES
-  ('Girgos', 'Papadopoulos', 2, 220.11, 'EUR', 1),
-  ('Giannis', 'Petridis', 4, 330.22, 'EUR', 2),
-  ('Kostas', 'Papazoglou', 8, 888.77, 'EUR', 3),
-  ('Pavlos', 'Papadakis', 10, 1234.00, 'EUR', 4),
-  ('Dimitris', 'Georgiou', 5, 555.44, 'EUR', 4);
\ No newline at end of file
+INSERT INTO hotel (id, name, address, star_rating) VALUES
+  (NEXT VALUE FOR hotel_seq, 'Hra', 'Panepistimiou 5', 2),
+  (NEXT VALUE FOR hotel_seq, 'Ermhs', 'Ermou 10', 3),
+  (NEXT VALUE FOR hotel_seq, 'Afrodith', 'Stadiou 20', 4),
+  (NEXT VALUE FOR hotel_seq, 'Dias', 'Leoforos Kifisias 50', 5);
+
+INSERT INTO booking (id, customer_name, customer_surname, pax, price_amount, currency, hotel_id) VALUES
+  (NEXT VALUE FOR booking_seq, 'Girgos', 'Papadopoulos', 2, 220.11, 'EUR', (SELECT id FROM hotel WHERE name = 'Hra')),
+  (NEXT VALUE FOR booking_seq, 'Giannis', 'Petridis', 4, 330.22, 'EUR', (SELECT id FROM hotel WHERE name = 'Ermhs')),
+  (NEXT VALUE FOR booking_seq, 'Kostas', 'Papazoglou', 8, 888.77, 'EUR', (SELECT id FROM hotel WHERE name = 'Afrodith')),
+  (NEXT VALUE FOR booking_seq, 'Pavlos', 'Papadakis', 10, 1234.00, 'EUR', (SELECT id FROM hotel WHERE name = 'Dias')),
+  (NEXT VALUE FOR booking_seq, 'Dimitris', 'Georgiou', 5, 555.44, 'EUR', (SELECT id FROM hotel WHERE name = 'Dias'));
+
+COMMIT;
+SET AUTOCOMMIT TRUE;
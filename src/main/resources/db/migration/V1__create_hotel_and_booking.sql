@@ -0,0 +1,23 @@
+CREATE SEQUENCE hotel_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE booking_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE hotel (
+  id BIGINT NOT NULL,
+  name VARCHAR(255),
+  address VARCHAR(255),
+  star_rating INTEGER,
+  CONSTRAINT pk_hotel PRIMARY KEY (id),
+  CONSTRAINT uk_hotel_name UNIQUE (name)
+);
+
+CREATE TABLE booking (
+  id BIGINT NOT NULL,
+  customer_name VARCHAR(255),
+  customer_surname VARCHAR(255),
+  pax INTEGER,
+  price_amount DECIMAL(19, 2),
+  currency VARCHAR(255),
+  hotel_id BIGINT NOT NULL,
+  CONSTRAINT pk_booking PRIMARY KEY (id),
+  CONSTRAINT fk_booking_hotel FOREIGN KEY (hotel_id) REFERENCES hotel (id)
+);
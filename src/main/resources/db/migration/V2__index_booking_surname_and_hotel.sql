@@ -0,0 +1,5 @@
+-- Bookings and hotels by customer surname.
+CREATE INDEX idx_booking_customer_surname ON booking (customer_surname);
+
+-- Bookings of a hotel, and keyset pages of them ordered by id.
+CREATE INDEX idx_booking_hotel_id_id ON booking (hotel_id, id);
@@ -0,0 +1,2 @@
+ALTER TABLE hotel ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE booking ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
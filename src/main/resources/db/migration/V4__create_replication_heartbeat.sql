@@ -0,0 +1,7 @@
+CREATE TABLE replication_heartbeat (
+  id INTEGER NOT NULL,
+  beat_millis BIGINT NOT NULL,
+  CONSTRAINT pk_replication_heartbeat PRIMARY KEY (id)
+);
+
+INSERT INTO replication_heartbeat (id, beat_millis) VALUES (1, 0);
@@ -0,0 +1,10 @@
+CREATE TABLE table_version (
+  table_name VARCHAR(30) NOT NULL,
+  version BIGINT NOT NULL,
+  CONSTRAINT pk_table_version PRIMARY KEY (table_name)
+);
+
+-- Start from the creation time, so a recreated database does not repeat the versions of the previous one.
+INSERT INTO table_version (table_name, version)
+SELECT table_name, DATEDIFF('MILLISECOND', TIMESTAMP '1970-01-01 00:00:00', CURRENT_TIMESTAMP)
+FROM (VALUES ('hotel'), ('booking')) AS tables (table_name);
@@ -0,0 +1,6 @@
+-- The shards on the hash ring, so that a shard added by a rebalance is still on it after a restart.
+CREATE TABLE shard_ring (
+  shard_name VARCHAR(100) NOT NULL,
+  position INTEGER NOT NULL,
+  CONSTRAINT pk_shard_ring PRIMARY KEY (shard_name)
+);
@@ -0,0 +1,14 @@
+-- The bookings of the hotels of one shard. The hotels stay in the main database, so there is no foreign key.
+CREATE TABLE booking (
+  id BIGINT NOT NULL,
+  customer_name VARCHAR(255),
+  customer_surname VARCHAR(255),
+  pax INTEGER,
+  price_amount DECIMAL(19, 2),
+  currency VARCHAR(255),
+  hotel_id BIGINT NOT NULL,
+  CONSTRAINT pk_booking PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_booking_hotel_id_id ON booking (hotel_id, id);
+CREATE INDEX idx_booking_customer_surname_id ON booking (customer_surname, id);
@@ -0,0 +1,55 @@
+package com.booking.hotel.benchmark;
+
+import com.booking.hotel.HotelApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.UUID;
+
+/**
+ * Starts the application on a private in-memory H2 database, so that every benchmark
+ * trial works on its own data set.
+ */
+public final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * Start the application without the web layer.
+     *
+     * @param properties extra properties as key=value
+     * @return the application context
+     */
+    public static ConfigurableApplicationContext start(String... properties) {
+        return builder(WebApplicationType.NONE)
+                .properties(properties)
+                .run();
+    }
+
+    /**
+     * Start the application with the embedded web server listening on a random port,
+     * available as the local.server.port property.
+     *
+     * @param properties extra properties as key=value
+     * @return the application context
+     */
+    public static ConfigurableApplicationContext startServer(String... properties) {
+        return builder(WebApplicationType.SERVLET)
+                .properties("server.port=0")
+                .properties(properties)
+                .run();
+    }
+
+    private static SpringApplicationBuilder builder(WebApplicationType type) {
+        return new SpringApplicationBuilder(HotelApplication.class)
+                .web(type)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                        "spring.datasource.initialization-mode=never",
+                        "spring.h2.console.enabled=false",
+                        "logging.level.root=warn",
+                        "logging.level.com.booking.hotel=warn");
+    }
+}
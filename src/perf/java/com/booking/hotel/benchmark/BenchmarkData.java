@@ -0,0 +1,127 @@
+package com.booking.hotel.benchmark;
+
+import com.booking.hotel.entity.Booking;
+import com.booking.hotel.entity.Hotel;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seeds hotels and bookings straight through JDBC, which keeps the set-up of
+ * large data volumes out of the measured code paths.
+ */
+public final class BenchmarkData {
+
+    private static final int BATCH_SIZE = 10_000;
+    private static final String INSERT_BOOKING = "insert into booking (id, customer_name, customer_surname, pax, " +
+            "price_amount, currency, hotel_id) values (next value for booking_seq, ?, ?, ?, ?, ?, ?)";
+    private static final String[] SURNAMES = {"Papadopoulos", "Petridis", "Papazoglou", "Papadakis", "Georgiou"};
+    private static final String[] CURRENCIES = {"EUR", "USD", "GBP"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Insert hotels named Hotel-0, Hotel-1, ... with the same number of bookings each.
+     *
+     * @param jdbcTemplate the jdbc template
+     * @param hotels the number of hotels
+     * @param bookingsPerHotel the number of bookings of every hotel
+     * @return the hotel ids
+     */
+    public static List<Long> seed(JdbcTemplate jdbcTemplate, int hotels, int bookingsPerHotel) {
+        List<Long> hotelIds = new ArrayList<>(hotels);
+        for (int i = 0; i < hotels; i++) {
+            long hotelId = createHotel(jdbcTemplate, hotelName(i));
+            createBookings(jdbcTemplate, hotelId, bookingsPerHotel);
+            hotelIds.add(hotelId);
+        }
+        return hotelIds;
+    }
+
+    public static String hotelName(int index) {
+        return "Hotel-" + index;
+    }
+
+    public static String surname(int index) {
+        return SURNAMES[index % SURNAMES.length];
+    }
+
+    /**
+     * Insert a hotel.
+     *
+     * @param jdbcTemplate the jdbc template
+     * @param name the hotel name
+     * @return the hotel id
+     */
+    public static long createHotel(JdbcTemplate jdbcTemplate, String name) {
+        jdbcTemplate.update("insert into hotel (id, name, address, star_rating) " +
+                "values (next value for hotel_seq, ?, ?, ?)", name, "Benchmark street 1", 4);
+        return jdbcTemplate.queryForObject("select id from hotel where name = ?", Long.class, name);
+    }
+
+    /**
+     * Insert the given number of bookings for a hotel.
+     *
+     * @param jdbcTemplate the jdbc template
+     * @param hotelId the hotel id
+     * @param count the number of bookings
+     */
+    public static void createBookings(JdbcTemplate jdbcTemplate, long hotelId, int count) {
+        for (int offset = 0; offset < count; offset += BATCH_SIZE) {
+            int start = offset;
+            int size = Math.min(BATCH_SIZE, count - offset);
+            jdbcTemplate.batchUpdate(INSERT_BOOKING, new BatchPreparedStatementSetter() {
+
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    int n = start + i;
+                    ps.setString(1, "Customer" + n);
+                    ps.setString(2, SURNAMES[n % SURNAMES.length]);
+                    ps.setInt(3, 1 + n % 6);
+                    ps.setBigDecimal(4, BigDecimal.valueOf(100 + n % 900, 2));
+                    ps.setString(5, CURRENCIES[n % CURRENCIES.length]);
+                    ps.setLong(6, hotelId);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            });
+        }
+    }
+
+    /**
+     * Build bookings in memory, all of the same hotel.
+     *
+     * @param size the number of bookings
+     * @return the bookings
+     */
+    public static List<Booking> bookings(int size) {
+        Hotel hotel = Hotel.builder()
+                .id(1L)
+                .name("Hra")
+                .address("Panepistimiou 5")
+                .starRating(2)
+                .build();
+        List<Booking> bookings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            bookings.add(Booking.builder()
+                    .id((long) i)
+                    .customerName("Customer" + i)
+                    .customerSurname(surname(i))
+                    .pax(2)
+                    .priceAmount(BigDecimal.valueOf(22011, 2))
+                    .currency("EUR")
+                    .hotel(hotel)
+                    .build());
+        }
+        return bookings;
+    }
+}
@@ -0,0 +1,90 @@
+package com.booking.hotel.benchmark;
+
+import com.booking.hotel.entity.Booking;
+import com.booking.hotel.entity.Hotel;
+import com.booking.hotel.exception.ResourceNotFoundException;
+import com.booking.hotel.service.BookingService;
+import com.booking.hotel.service.SurnameIndexService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read paths of {@link BookingService} against an embedded H2 database.
+ * Run with {@code -p hotels=... -p bookingsPerHotel=...} to change the data volume.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BookingServiceBenchmark {
+
+    @Param({"10"})
+    public int hotels;
+
+    @Param({"1000", "10000"})
+    public int bookingsPerHotel;
+
+    private ConfigurableApplicationContext context;
+    private BookingService bookingService;
+    private List<Long> hotelIds;
+    private long firstBookingId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        hotelIds = BenchmarkData.seed(jdbcTemplate, hotels, bookingsPerHotel);
+        firstBookingId = jdbcTemplate.queryForObject("select min(id) from booking", Long.class);
+        context.getBean(SurnameIndexService.class).rebuild();
+        bookingService = context.getBean(BookingService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Booking getBookingById() throws ResourceNotFoundException {
+        return bookingService.getBookingById(firstBookingId);
+    }
+
+    @Benchmark
+    public List<Booking> getBookingsPage() {
+        return bookingService.getBookingsAfter(0L, 100);
+    }
+
+    @Benchmark
+    public List<Booking> getBookingsBySingleHotel() {
+        return bookingService.getBookingsByHotels(Collections.singletonList(hotelIds.get(0)));
+    }
+
+    @Benchmark
+    public List<Hotel> getHotelsByBookingSurname() {
+        return bookingService.getHotelsByBookingSurname(BenchmarkData.surname(0));
+    }
+
+    @Benchmark
+    public List<Hotel> getHotelsByBookingSurnamePrefix() {
+        return bookingService.getHotelsByBookingSurnamePrefix(BenchmarkData.surname(0).substring(0, 3));
+    }
+}
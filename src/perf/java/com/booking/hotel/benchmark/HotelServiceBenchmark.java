@@ -0,0 +1,82 @@
+package com.booking.hotel.benchmark;
+
+import com.booking.hotel.entity.Booking;
+import com.booking.hotel.entity.Hotel;
+import com.booking.hotel.service.HotelBookingStatsService;
+import com.booking.hotel.service.HotelService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read paths of {@link HotelService} against an embedded H2 database.
+ * Run with {@code -p hotels=... -p bookingsPerHotel=...} to change the data volume.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class HotelServiceBenchmark {
+
+    @Param({"100"})
+    public int hotels;
+
+    @Param({"100", "1000"})
+    public int bookingsPerHotel;
+
+    private ConfigurableApplicationContext context;
+    private HotelService hotelService;
+    private String hotelName;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        BenchmarkData.seed(context.getBean(JdbcTemplate.class), hotels, bookingsPerHotel);
+        context.getBean(HotelBookingStatsService.class).rebuild();
+        hotelService = context.getBean(HotelService.class);
+        hotelName = BenchmarkData.hotelName(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Hotel getHotelByName() {
+        return hotelService.getHotelByName(hotelName);
+    }
+
+    @Benchmark
+    public List<Hotel> getAllHotels() {
+        return hotelService.getAllHotels();
+    }
+
+    @Benchmark
+    public List<Booking> getBookingsByHotel() {
+        return hotelService.getBookingsByHotel(hotelName);
+    }
+
+    @Benchmark
+    public BigDecimal getTotalBookingAmountByHotel() {
+        return hotelService.getTotalBookingAmountByHotel(hotelName);
+    }
+}
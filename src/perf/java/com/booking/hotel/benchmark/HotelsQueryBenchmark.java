@@ -0,0 +1,77 @@
+package com.booking.hotel.benchmark;
+
+import com.booking.hotel.entity.Booking;
+import com.booking.hotel.exception.ServiceBusyException;
+import com.booking.hotel.service.BookingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the bookings of many hotels, queried in chunks one after the other with fanOutThreads=0
+ * or at the same time, collected in one list or passed on chunk by chunk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class HotelsQueryBenchmark {
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(1);
+
+    @Param({"100", "500"})
+    public int hotels;
+
+    @Param({"200"})
+    public int bookingsPerHotel;
+
+    @Param({"0", "4"})
+    public int fanOutThreads;
+
+    private ConfigurableApplicationContext context;
+    private BookingService bookingService;
+    private List<Long> hotelIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start(
+                "booking.execution.fan-out-threads=" + fanOutThreads,
+                "spring.datasource.hikari.maximum-pool-size=" + (fanOutThreads + 2));
+        hotelIds = BenchmarkData.seed(context.getBean(JdbcTemplate.class), hotels, bookingsPerHotel);
+        bookingService = context.getBean(BookingService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Booking> getBookingsByHotels() throws ServiceBusyException {
+        return bookingService.getBookingsByHotels(hotelIds, TIMEOUT);
+    }
+
+    @Benchmark
+    public void streamBookingsByHotels(Blackhole blackhole) throws ServiceBusyException {
+        bookingService.streamBookingsByHotels(hotelIds, TIMEOUT, blackhole::consume);
+    }
+}
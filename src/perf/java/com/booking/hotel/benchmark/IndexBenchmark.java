@@ -0,0 +1,89 @@
+package com.booking.hotel.benchmark;
+
+import com.booking.hotel.entity.Booking;
+import com.booking.hotel.repository.BookingRepository;
+import com.booking.hotel.service.BookingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the queries served by the booking indexes, with the indexes of the schema migrations
+ * and with them dropped, as the booking table grows.
+ * The surname query searches a surname that only a few bookings have, and the page of a hotel starts
+ * in the middle of its bookings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IndexBenchmark {
+
+    private static final int HOTELS = 10;
+    private static final String RARE_SURNAME = "Zafeiriou";
+
+    @Param({"10000", "100000", "1000000"})
+    public int bookings;
+
+    @Param({"true", "false"})
+    public boolean indexed;
+
+    private ConfigurableApplicationContext context;
+    private BookingService bookingService;
+    private BookingRepository bookingRepository;
+    private String hotelName;
+    private long middleBookingId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Long> hotelIds = BenchmarkData.seed(jdbcTemplate, HOTELS, bookings / HOTELS);
+        for (Long hotelId : hotelIds) {
+            jdbcTemplate.update("update booking set customer_surname = ? where id = " +
+                    "(select min(id) from booking where hotel_id = ?)", RARE_SURNAME, hotelId);
+        }
+        if (!indexed) {
+            jdbcTemplate.execute("drop index idx_booking_customer_surname");
+            jdbcTemplate.execute("drop index idx_booking_hotel_id_id");
+        }
+        jdbcTemplate.execute("analyze");
+        hotelName = BenchmarkData.hotelName(HOTELS / 2);
+        middleBookingId = jdbcTemplate.queryForObject("select min(id) + " + bookings / HOTELS / 2 +
+                " from booking where hotel_id = ?", Long.class, hotelIds.get(HOTELS / 2));
+        bookingService = context.getBean(BookingService.class);
+        bookingRepository = context.getBean(BookingRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Booking> findBookingsByRareSurname() {
+        return bookingRepository.findBookingsByCustomerSurname(RARE_SURNAME);
+    }
+
+    @Benchmark
+    public List<Booking> getBookingsPageOfHotel() {
+        return bookingService.getBookingsByHotelNameAfter(hotelName, middleBookingId, 100);
+    }
+}
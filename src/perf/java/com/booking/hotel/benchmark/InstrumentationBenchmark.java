@@ -0,0 +1,94 @@
+package com.booking.hotel.benchmark;
+
+import com.booking.hotel.entity.Booking;
+import com.booking.hotel.metrics.LayerTimingAspect;
+import com.booking.hotel.metrics.SqlStatementCounter;
+import com.booking.hotel.repository.BookingRepository;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the layer timing and of the SQL statement count, on a repository that does no work.
+ * The difference between {@link #proxied()} and {@link #timed()} is the cost of the timing advice
+ * with a Prometheus registry, and {@link #countStatement()} the cost added to every SQL statement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(4)
+@Fork(1)
+public class InstrumentationBenchmark {
+
+    private static final List<Booking> BOOKINGS = Collections.singletonList(new Booking());
+
+    private BookingRepository proxied;
+    private BookingRepository timed;
+    private SqlStatementCounter sqlStatementCounter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BookingRepository target = (BookingRepository) Proxy.newProxyInstance(
+                BookingRepository.class.getClassLoader(), new Class<?>[]{BookingRepository.class},
+                (proxy, method, args) -> BOOKINGS);
+        proxied = new AspectJProxyFactory(target).getProxy();
+
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.addAspect(new LayerTimingAspect(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT)));
+        timed = proxyFactory.getProxy();
+
+        sqlStatementCounter = new SqlStatementCounter();
+    }
+
+    @Benchmark
+    public List<Booking> proxied() {
+        return proxied.findBookingsByCustomerSurname("Papadopoulos");
+    }
+
+    @Benchmark
+    public List<Booking> timed() {
+        return timed.findBookingsByCustomerSurname("Papadopoulos");
+    }
+
+    @Benchmark
+    public String countStatement(CountingThread countingThread) {
+        return sqlStatementCounter.inspect("select * from booking");
+    }
+
+    /**
+     * Keeps a statement count started on every benchmark thread, like a request thread.
+     */
+    @State(Scope.Thread)
+    public static class CountingThread {
+
+        @Setup(Level.Iteration)
+        public void start() {
+            SqlStatementCounter.start();
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop() {
+            SqlStatementCounter.stop();
+        }
+    }
+}
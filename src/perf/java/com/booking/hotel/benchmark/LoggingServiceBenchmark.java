@@ -0,0 +1,92 @@
+package com.booking.hotel.benchmark;
+
+import ch.qos.logback.classic.Logger;
+import com.booking.hotel.entity.Booking;
+import com.booking.hotel.logging.AsyncLogWriter;
+import com.booking.hotel.logging.LogMode;
+import com.booking.hotel.logging.LoggingPolicies;
+import com.booking.hotel.logging.LoggingProperties;
+import com.booking.hotel.service.LoggingService;
+import com.booking.hotel.service.LoggingServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of logging one request and its response on the request thread, per logging mode.
+ * The log writer thread runs, but its output is turned off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoggingServiceBenchmark {
+
+    @Param({"NONE", "METADATA", "FULL"})
+    public LogMode mode;
+
+    @Param({"1000"})
+    public int responseSize;
+
+    private AsyncLogWriter asyncLogWriter;
+    private LoggingService loggingService;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private List<Booking> responseBody;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger(AsyncLogWriter.class)).setLevel(ch.qos.logback.classic.Level.WARN);
+        LoggingProperties.Policy policy = new LoggingProperties.Policy();
+        policy.setPattern("/bookings/**");
+        policy.setMode(mode);
+        LoggingProperties loggingProperties = new LoggingProperties();
+        loggingProperties.setHeaders(Collections.singletonList("Content-Type"));
+        loggingProperties.setPolicies(Collections.singletonList(policy));
+        asyncLogWriter = new AsyncLogWriter(loggingProperties);
+        asyncLogWriter.start();
+        loggingService = new LoggingServiceImpl(asyncLogWriter, new LoggingPolicies(loggingProperties),
+                loggingProperties);
+
+        request = new MockHttpServletRequest("GET", "/bookings");
+        request.setQueryString("size=1000");
+        request.addHeader("Content-Type", "application/json");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/bookings");
+        response = new MockHttpServletResponse();
+        response.setHeader("Content-Type", "application/json");
+        responseBody = BenchmarkData.bookings(responseSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        asyncLogWriter.stop();
+    }
+
+    @Benchmark
+    public void logRequestAndResponse() {
+        loggingService.startRequest(request);
+        loggingService.logRequest(request, null);
+        loggingService.captureResponseBody(request, responseBody);
+        loggingService.logResponse(request, response, null);
+    }
+}
@@ -0,0 +1,137 @@
+package com.booking.hotel.benchmark;
+
+import com.booking.hotel.dto.BookingSummary;
+import com.booking.hotel.dto.NormalizedBookings;
+import com.booking.hotel.entity.Booking;
+import com.booking.hotel.entity.Hotel;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Jackson serialization of booking and hotel lists in the formats the application negotiates,
+ * configured like the application's object mappers.
+ * The bookings reference {@link #HOTELS} hotels, which the normalized view sends once.
+ * The serialized and gzipped sizes of every format are printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private static final int HOTELS = 100;
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    private ObjectMapper objectMapper;
+    private List<Booking> bookings;
+    private List<Hotel> hotels;
+    private NormalizedBookings normalizedBookings;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        objectMapper = objectMapper(format);
+        bookings = BenchmarkData.bookings(size);
+        for (Booking booking : bookings) {
+            long hotelId = booking.getId() % HOTELS;
+            booking.setHotel(Hotel.builder()
+                    .id(hotelId)
+                    .name("Hotel-" + hotelId)
+                    .address("Panepistimiou 5")
+                    .starRating(3)
+                    .version(0L)
+                    .build());
+        }
+        hotels = bookings.stream()
+                .map(booking -> Hotel.builder()
+                        .id(booking.getId())
+                        .name("Hotel-" + booking.getId())
+                        .address("Panepistimiou 5")
+                        .starRating(3)
+                        .build())
+                .collect(Collectors.toList());
+        List<Hotel> distinctHotels = bookings.stream()
+                .map(Booking::getHotel)
+                .collect(Collectors.toMap(Hotel::getId, hotel -> hotel, (first, second) -> first))
+                .values().stream()
+                .sorted(Comparator.comparing(Hotel::getId))
+                .collect(Collectors.toList());
+        normalizedBookings = new NormalizedBookings(distinctHotels, bookings.stream()
+                .map(booking -> new BookingSummary(booking.getId(), booking.getCustomerName(),
+                        booking.getCustomerSurname(), booking.getPax(), booking.getPriceAmount(),
+                        booking.getCurrency(), booking.getHotel().getId()))
+                .collect(Collectors.toList()));
+
+        System.out.printf("%n%s, %d bookings: %d bytes (%d gzipped), normalized %d bytes (%d gzipped)%n",
+                format, size, serializeBookings().length, gzipBookings().length,
+                serializeNormalizedBookings().length, gzip(serializeNormalizedBookings()).length);
+    }
+
+    @Benchmark
+    public byte[] serializeBookings() throws IOException {
+        return objectMapper.writeValueAsBytes(bookings);
+    }
+
+    @Benchmark
+    public byte[] serializeNormalizedBookings() throws IOException {
+        return objectMapper.writeValueAsBytes(normalizedBookings);
+    }
+
+    @Benchmark
+    public byte[] serializeHotels() throws IOException {
+        return objectMapper.writeValueAsBytes(hotels);
+    }
+
+    /**
+     * What a compressed response costs, at the default compression level of the server.
+     */
+    @Benchmark
+    public byte[] gzipBookings() throws IOException {
+        return gzip(serializeBookings());
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static ObjectMapper objectMapper(String format) {
+        switch (format) {
+            case "smile":
+                return Jackson2ObjectMapperBuilder.smile().build();
+            case "cbor":
+                return Jackson2ObjectMapperBuilder.cbor().build();
+            default:
+                return Jackson2ObjectMapperBuilder.json().build();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.booking.hotel.benchmark;
+
+import com.booking.hotel.service.HotelBookingStatsService;
+import com.booking.hotel.service.SurnameIndexService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time until the application is ready with the given number of bookings: started on a new in-memory
+ * database that is seeded, or started on an existing file database of the persistent profile.
+ * Both include the rebuild of the in-memory booking statistics and surname index, which the seeded
+ * database does again after the seeding.
+ * Closing the application is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StartupBenchmark {
+
+    private static final int HOTELS = 100;
+
+    @Param({"1000000"})
+    public int bookings;
+
+    private Path dataDirectory;
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void createStore() throws IOException {
+        dataDirectory = Files.createTempDirectory("booking-startup");
+        try (ConfigurableApplicationContext context = startPersistent()) {
+            BenchmarkData.seed(context.getBean(JdbcTemplate.class), HOTELS, bookings / HOTELS);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() {
+        context.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteStore() throws IOException {
+        FileSystemUtils.deleteRecursively(dataDirectory);
+    }
+
+    @Benchmark
+    public void coldInMemorySeeded() {
+        context = BenchmarkApplication.start();
+        BenchmarkData.seed(context.getBean(JdbcTemplate.class), HOTELS, bookings / HOTELS);
+        context.getBean(HotelBookingStatsService.class).rebuild();
+        context.getBean(SurnameIndexService.class).rebuild();
+    }
+
+    @Benchmark
+    public void warmFromExistingStore() {
+        context = startPersistent();
+    }
+
+    private ConfigurableApplicationContext startPersistent() {
+        return BenchmarkApplication.start(
+                "spring.profiles.active=persistent",
+                "booking.data-dir=" + dataDirectory.toAbsolutePath());
+    }
+}
@@ -0,0 +1,61 @@
+package com.booking.hotel.benchmark;
+
+import com.booking.hotel.event.BookingChangedEvent;
+import com.booking.hotel.event.BookingSnapshot;
+import com.booking.hotel.service.SurnameIndexServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exact and prefix lookups in the surname index, without the database.
+ * Surnames are Surname-0, Surname-1, ..., spread over 100 hotels, so the prefix Surname-12
+ * matches about 1% of the surnames.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SurnameIndexBenchmark {
+
+    private static final int HOTELS = 100;
+
+    @Param({"10000", "100000", "1000000"})
+    public int surnames;
+
+    private SurnameIndexServiceImpl surnameIndexService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        surnameIndexService = new SurnameIndexServiceImpl(null);
+        for (int i = 0; i < surnames; i++) {
+            surnameIndexService.onBookingChanged(BookingChangedEvent.created(new BookingSnapshot(
+                    (long) i, (long) (i % HOTELS), "Name-" + i, "Surname-" + i, 2, BigDecimal.TEN, "EUR")));
+        }
+    }
+
+    @Benchmark
+    public List<Long> findHotelIds() {
+        return surnameIndexService.findHotelIds("Surname-1234");
+    }
+
+    @Benchmark
+    public List<Long> findHotelIdsByPrefix() {
+        return surnameIndexService.findHotelIdsByPrefix("Surname-12");
+    }
+}
@@ -0,0 +1,82 @@
+package com.booking.hotel.benchmark;
+
+import com.booking.hotel.dto.CurrencyAmount;
+import com.booking.hotel.entity.Booking;
+import com.booking.hotel.service.BookingService;
+import com.booking.hotel.service.HotelBookingStatsService;
+import com.booking.hotel.service.HotelService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the ways of calculating the total booking amount of a hotel: the materialized
+ * statistics behind {@code /bookings/amount}, the database aggregate and summing the loaded bookings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TotalBookingAmountBenchmark {
+
+    private static final String HOTEL_NAME = "Benchmark Hotel";
+
+    @Param({"10000", "100000", "1000000"})
+    public int bookings;
+
+    private ConfigurableApplicationContext context;
+    private HotelService hotelService;
+    private BookingService bookingService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        long hotelId = BenchmarkData.createHotel(jdbcTemplate, HOTEL_NAME);
+        BenchmarkData.createBookings(jdbcTemplate, hotelId, bookings);
+        context.getBean(HotelBookingStatsService.class).rebuild();
+        hotelService = context.getBean(HotelService.class);
+        bookingService = context.getBean(BookingService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BigDecimal materializedStats() {
+        return hotelService.getTotalBookingAmountByHotel(HOTEL_NAME);
+    }
+
+    @Benchmark
+    public BigDecimal aggregateQuery() {
+        return bookingService.getTotalAmountsByHotelName(HOTEL_NAME).stream()
+                .map(CurrencyAmount::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    @Benchmark
+    public BigDecimal loadAndSum() {
+        return hotelService.getBookingsByHotel(HOTEL_NAME).stream()
+                .map(Booking::getPriceAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
@@ -0,0 +1,255 @@
+package com.booking.hotel.loadtest;
+
+import com.booking.hotel.benchmark.BenchmarkApplication;
+import com.booking.hotel.benchmark.BenchmarkData;
+import com.booking.hotel.loadtest.Workload.Endpoint;
+import com.booking.hotel.loadtest.Workload.Request;
+import com.booking.hotel.service.HotelBookingStatsService;
+import com.booking.hotel.service.SurnameIndexService;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.HdrHistogram.Recorder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the application on a random port and sends it a mixed read/write workload at a fixed
+ * arrival rate.
+ * <p>
+ * Every request has an intended start time on the arrival schedule, and its latency is measured
+ * from that time rather than from the moment a client thread got around to send it. A server stall
+ * therefore shows up in the latency of all the requests that should have been sent meanwhile,
+ * instead of silently lowering the request rate (coordinated omission).
+ * <p>
+ * For every endpoint the latencies, in microseconds, are written to {@code <endpoint>.hlog}
+ * (one interval histogram per second) and {@code <endpoint>.hgrm} (the percentile distribution
+ * of the whole run, in milliseconds), which can be compared between builds with the HdrHistogram tools.
+ * <pre>
+ * mvn -Pperf test-compile exec:exec@load-test -Dloadtest.args="rate=500 duration=60 hotels=100 mode=async"
+ * mvn -Pperf test-compile exec:exec@load-test -Dloadtest.args="database=file app.booking.pool.adaptive.enabled=true"
+ * </pre>
+ */
+public final class LoadTestDriver {
+
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private final LoadTestOptions options;
+    private final Workload workload;
+    private final String baseUrl;
+    private final Map<Endpoint, Recorder> recorders = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, Histogram> totals = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, HistogramLogWriter> logWriters = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, AtomicLong> errors = new EnumMap<>(Endpoint.class);
+
+    private LoadTestDriver(LoadTestOptions options, Workload workload, String baseUrl) {
+        this.options = options;
+        this.workload = workload;
+        this.baseUrl = baseUrl;
+        for (Endpoint endpoint : Endpoint.values()) {
+            recorders.put(endpoint, new Recorder(HIGHEST_LATENCY_MICROS, SIGNIFICANT_DIGITS));
+            totals.put(endpoint, new Histogram(HIGHEST_LATENCY_MICROS, SIGNIFICANT_DIGITS));
+            errors.put(endpoint, new AtomicLong());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        // Keep one idle connection per client thread instead of the default five.
+        System.setProperty("http.maxConnections", String.valueOf(options.connections));
+
+        Files.createDirectories(options.outputDirectory);
+        try (ConfigurableApplicationContext context = BenchmarkApplication.startServer(
+                applicationProperties(options))) {
+            List<Long> hotelIds = BenchmarkData.seed(context.getBean(JdbcTemplate.class),
+                    options.hotels, options.bookingsPerHotel);
+            context.getBean(HotelBookingStatsService.class).rebuild();
+            context.getBean(SurnameIndexService.class).rebuild();
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            Workload workload = new Workload(hotelIds, options.writePercent, options.pageSize);
+
+            System.out.println("Load test " + options + " against " + baseUrl);
+            new LoadTestDriver(options, workload, baseUrl).run();
+            writePoolSummary(context.getBean(MeterRegistry.class));
+        }
+    }
+
+    private static String[] applicationProperties(LoadTestOptions options) {
+        List<String> properties = new ArrayList<>();
+        properties.add("booking.execution.mode=" + options.mode);
+        if (options.database.equals("file")) {
+            Path file = options.outputDirectory.toAbsolutePath().resolve("loadtest-" + UUID.randomUUID());
+            properties.add("spring.datasource.url=jdbc:h2:file:" + file + ";QUERY_CACHE_SIZE=64");
+        }
+        properties.addAll(options.applicationProperties);
+        return properties.toArray(new String[0]);
+    }
+
+    /**
+     * Tell whether the latency came from waiting for a pooled connection or from using it.
+     */
+    private static void writePoolSummary(MeterRegistry meterRegistry) {
+        Timer acquire = meterRegistry.find("hikaricp.connections.acquire").timer();
+        Timer usage = meterRegistry.find("hikaricp.connections.usage").timer();
+        Gauge max = meterRegistry.find("hikaricp.connections.max").gauge();
+        if (acquire == null || usage == null || max == null) {
+            return;
+        }
+        System.out.printf("pool: final size %.0f, connection wait mean %.2f ms max %.2f ms, " +
+                        "connection use mean %.2f ms max %.2f ms%n",
+                max.value(), acquire.mean(TimeUnit.MILLISECONDS), acquire.max(TimeUnit.MILLISECONDS),
+                usage.mean(TimeUnit.MILLISECONDS), usage.max(TimeUnit.MILLISECONDS));
+    }
+
+    private void run() throws IOException, InterruptedException {
+        Files.createDirectories(options.outputDirectory);
+        openLogs();
+        ExecutorService clients = Executors.newFixedThreadPool(options.connections);
+        ScheduledExecutorService intervals = Executors.newSingleThreadScheduledExecutor();
+        intervals.scheduleAtFixedRate(this::writeIntervals, 1, 1, TimeUnit.SECONDS);
+        try {
+            sendAtFixedRate(clients);
+        } finally {
+            clients.shutdown();
+            clients.awaitTermination(1, TimeUnit.MINUTES);
+            intervals.shutdown();
+            intervals.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        writeIntervals();
+        closeLogs();
+        writeSummary();
+    }
+
+    /**
+     * Hand the requests to the client threads on the arrival schedule, without waiting for
+     * the responses. Requests that find all the client threads busy wait in the queue, and that time is
+     * part of their latency.
+     */
+    private void sendAtFixedRate(ExecutorService clients) {
+        long start = System.nanoTime();
+        long recordFrom = start + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        long end = recordFrom + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+        for (long i = 0; ; i++) {
+            long intendedStart = start + i * TimeUnit.SECONDS.toNanos(1) / options.rate;
+            if (intendedStart >= end) {
+                return;
+            }
+            long now;
+            while ((now = System.nanoTime()) < intendedStart) {
+                LockSupport.parkNanos(intendedStart - now);
+            }
+            Request request = workload.next();
+            boolean recorded = intendedStart >= recordFrom;
+            clients.execute(() -> send(request, intendedStart, recorded));
+        }
+    }
+
+    private void send(Request request, long intendedStart, boolean recorded) {
+        boolean failed;
+        try {
+            failed = execute(request) >= 400;
+        } catch (IOException e) {
+            failed = true;
+        }
+        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart);
+        if (recorded) {
+            recorders.get(request.endpoint).recordValue(Math.min(latencyMicros, HIGHEST_LATENCY_MICROS));
+            if (failed) {
+                errors.get(request.endpoint).incrementAndGet();
+            }
+        }
+    }
+
+    private int execute(Request request) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + request.path).openConnection();
+        connection.setRequestMethod(request.method);
+        if (request.body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(request.body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        // Read the whole response so that the connection goes back to the keep-alive pool.
+        try (InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream()) {
+            if (in != null) {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) != -1) {
+                    // discard
+                }
+            }
+        }
+        return status;
+    }
+
+    private void openLogs() throws IOException {
+        long now = System.currentTimeMillis();
+        for (Endpoint endpoint : Endpoint.values()) {
+            HistogramLogWriter writer = new HistogramLogWriter(
+                    options.outputDirectory.resolve(endpoint.fileName + ".hlog").toFile());
+            writer.outputComment("Load test " + options + ", latency in microseconds");
+            writer.outputLogFormatVersion();
+            writer.outputStartTime(now);
+            writer.setBaseTime(now);
+            writer.outputLegend();
+            logWriters.put(endpoint, writer);
+        }
+    }
+
+    private synchronized void writeIntervals() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            Histogram interval = recorders.get(endpoint).getIntervalHistogram();
+            totals.get(endpoint).add(interval);
+            logWriters.get(endpoint).outputIntervalHistogram(interval);
+        }
+    }
+
+    private void closeLogs() {
+        logWriters.values().forEach(HistogramLogWriter::close);
+    }
+
+    private void writeSummary() throws IOException {
+        System.out.printf("%-16s %10s %8s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Endpoint endpoint : Endpoint.values()) {
+            Histogram total = totals.get(endpoint);
+            try (PrintStream out = new PrintStream(
+                    options.outputDirectory.resolve(endpoint.fileName + ".hgrm").toFile(), "UTF-8")) {
+                total.outputPercentileDistribution(out, MICROS_PER_MILLI);
+            }
+            System.out.printf("%-16s %10d %8d %10.2f %10.2f %10.2f %10.2f%n",
+                    endpoint.fileName, total.getTotalCount(), errors.get(endpoint).get(),
+                    total.getValueAtPercentile(50) / MICROS_PER_MILLI,
+                    total.getValueAtPercentile(99) / MICROS_PER_MILLI,
+                    total.getValueAtPercentile(99.9) / MICROS_PER_MILLI,
+                    total.getMaxValue() / MICROS_PER_MILLI);
+        }
+        System.out.println("Histograms written to " + options.outputDirectory.toAbsolutePath());
+    }
+}
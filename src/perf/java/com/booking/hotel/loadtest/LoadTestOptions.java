@@ -0,0 +1,94 @@
+package com.booking.hotel.loadtest;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings of a load test run, given as key=value program arguments.
+ * Arguments starting with {@value #APPLICATION_PREFIX} are passed to the application as properties,
+ * e.g. app.booking.pool.adaptive.enabled=true.
+ */
+final class LoadTestOptions {
+
+    static final String APPLICATION_PREFIX = "app.";
+
+    /** Requests started per second, whatever the response times are. */
+    final int rate;
+    /** Seconds of load before the histograms start recording. */
+    final int warmupSeconds;
+    /** Seconds of recorded load. */
+    final int durationSeconds;
+    /** Number of client threads, which is also the number of open connections. */
+    final int connections;
+    /** Percentage of the requests that create a booking. */
+    final int writePercent;
+    final int hotels;
+    final int bookingsPerHotel;
+    /** Page size of the /bookings requests. */
+    final int pageSize;
+    final Path outputDirectory;
+    /** Execution mode of the application under test: blocking, async or virtual. */
+    final String mode;
+    /** Database of the application under test: mem, or file for an H2 file in the output directory. */
+    final String database;
+    /** Extra application properties as key=value. */
+    final List<String> applicationProperties = new ArrayList<>();
+
+    private LoadTestOptions(Map<String, String> values) {
+        rate = intValue(values, "rate", 200);
+        warmupSeconds = intValue(values, "warmup", 10);
+        durationSeconds = intValue(values, "duration", 60);
+        connections = intValue(values, "connections", 32);
+        writePercent = intValue(values, "writePercent", 10);
+        hotels = intValue(values, "hotels", 100);
+        bookingsPerHotel = intValue(values, "bookingsPerHotel", 1000);
+        pageSize = intValue(values, "pageSize", 100);
+        outputDirectory = Paths.get(values.getOrDefault("output", "target/loadtest"));
+        mode = values.getOrDefault("mode", "blocking");
+        database = values.getOrDefault("database", "mem");
+        values.forEach((key, value) -> {
+            if (key.startsWith(APPLICATION_PREFIX)) {
+                applicationProperties.add(key.substring(APPLICATION_PREFIX.length()) + "=" + value);
+            }
+        });
+        if (!database.equals("mem") && !database.equals("file")) {
+            throw new IllegalArgumentException("database must be mem or file");
+        }
+        if (rate <= 0 || connections <= 0 || hotels <= 0) {
+            throw new IllegalArgumentException("rate, connections and hotels must be positive");
+        }
+        if (writePercent < 0 || writePercent > 100) {
+            throw new IllegalArgumentException("writePercent must be between 0 and 100");
+        }
+    }
+
+    static LoadTestOptions parse(String... args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value but got " + arg);
+            }
+            values.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return new LoadTestOptions(values);
+    }
+
+    private static int intValue(Map<String, String> values, String key, int defaultValue) {
+        String value = values.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    @Override
+    public String toString() {
+        return "rate=" + rate + "/s warmup=" + warmupSeconds + "s duration=" + durationSeconds + "s" +
+                " connections=" + connections + " writePercent=" + writePercent +
+                " hotels=" + hotels + " bookingsPerHotel=" + bookingsPerHotel + " pageSize=" + pageSize +
+                " mode=" + mode + " database=" + database +
+                (applicationProperties.isEmpty() ? "" : " " + applicationProperties);
+    }
+}
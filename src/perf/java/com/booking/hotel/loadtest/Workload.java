@@ -0,0 +1,87 @@
+package com.booking.hotel.loadtest;
+
+import com.booking.hotel.benchmark.BenchmarkData;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The mix of requests sent by the load test. Writes take the configured share of the
+ * requests and the reads are spread evenly over the read endpoints, on random hotels
+ * and surnames of the seeded data.
+ */
+final class Workload {
+
+    enum Endpoint {
+        BOOKINGS("bookings"),
+        BOOKINGS_BY_HOTEL("bookings-hotel"),
+        BOOKINGS_AMOUNT("bookings-amount"),
+        HOTELS_BY_SURNAME("hotels-booking"),
+        CREATE_BOOKING("bookings-create");
+
+        private static final Endpoint[] READS = {BOOKINGS, BOOKINGS_BY_HOTEL, BOOKINGS_AMOUNT, HOTELS_BY_SURNAME};
+
+        /** Name of the histogram files of the endpoint. */
+        final String fileName;
+
+        Endpoint(String fileName) {
+            this.fileName = fileName;
+        }
+    }
+
+    static final class Request {
+
+        final Endpoint endpoint;
+        final String method;
+        final String path;
+        final String body;
+
+        private Request(Endpoint endpoint, String method, String path, String body) {
+            this.endpoint = endpoint;
+            this.method = method;
+            this.path = path;
+            this.body = body;
+        }
+    }
+
+    private final List<Long> hotelIds;
+    private final int writePercent;
+    private final int pageSize;
+
+    Workload(List<Long> hotelIds, int writePercent, int pageSize) {
+        this.hotelIds = hotelIds;
+        this.writePercent = writePercent;
+        this.pageSize = pageSize;
+    }
+
+    Request next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int hotel = random.nextInt(hotelIds.size());
+        if (random.nextInt(100) < writePercent) {
+            return createBooking(hotel, random.nextInt(1000));
+        }
+        Endpoint endpoint = Endpoint.READS[random.nextInt(Endpoint.READS.length)];
+        switch (endpoint) {
+            case BOOKINGS:
+                return get(endpoint, "/bookings?size=" + pageSize);
+            case BOOKINGS_BY_HOTEL:
+                return get(endpoint, "/bookings/hotel?name=" + BenchmarkData.hotelName(hotel));
+            case BOOKINGS_AMOUNT:
+                return get(endpoint, "/bookings/amount?name=" + BenchmarkData.hotelName(hotel));
+            default:
+                return get(endpoint, "/hotels/booking?surname=" + BenchmarkData.surname(random.nextInt(1000)));
+        }
+    }
+
+    private Request createBooking(int hotel, int customer) {
+        String body = "{\"customerName\":\"Customer" + customer + "\"," +
+                "\"customerSurname\":\"" + BenchmarkData.surname(customer) + "\"," +
+                "\"pax\":2,\"priceAmount\":120.50,\"currency\":\"EUR\"," +
+                "\"hotel\":{\"id\":" + hotelIds.get(hotel) + ",\"name\":\"" + BenchmarkData.hotelName(hotel) + "\"}}";
+        return new Request(Endpoint.CREATE_BOOKING, "POST", "/bookings", body);
+    }
+
+    private static Request get(Endpoint endpoint, String path) {
+        return new Request(endpoint, "GET", path, null);
+    }
+}
@@ -0,0 +1,123 @@
+package com.booking.hotel.config;
+
+import com.booking.hotel.entity.Hotel;
+import com.booking.hotel.exception.PreconditionFailedException;
+import com.booking.hotel.repository.HotelRepository;
+import com.booking.hotel.service.BookingService;
+import com.booking.hotel.service.HotelBookingStatsService;
+import com.booking.hotel.service.HotelService;
+import com.booking.hotel.service.HotelServiceImpl;
+import com.booking.hotel.service.TableVersionService;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CacheConfigTest {
+
+    private AnnotationConfigApplicationContext context;
+    private HotelService hotelService;
+    private HotelRepository hotelRepository;
+    private Cache hotelsById;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(TestConfig.class);
+        hotelService = context.getBean(HotelService.class);
+        hotelRepository = context.getBean(HotelRepository.class);
+        hotelsById = context.getBean(CacheManager.class).getCache(CacheConfig.HOTELS_BY_ID);
+        when(hotelRepository.findById(1L)).thenAnswer(invocation ->
+                Optional.of(Hotel.builder().id(1L).name("Hra").version(1L).build()));
+    }
+
+    @AfterEach
+    void close() {
+        context.close();
+    }
+
+    @Test
+    void whenHotelReadTwice_thenQueryOnce() throws Exception {
+        hotelService.getHotelById(1L);
+        hotelService.getHotelById(1L);
+
+        verify(hotelRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void whenHotelUpdated_thenEvictAfterCommit() throws Exception {
+        hotelService.getHotelById(1L);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(
+                context.getBean(PlatformTransactionManager.class));
+
+        transactionTemplate.execute(status -> {
+            try {
+                hotelService.patchHotel(1L, Hotel.builder().starRating(5).build(), 1L);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            assertThat(hotelsById.get(1L)).isNotNull();
+            return null;
+        });
+
+        assertThat(hotelsById.get(1L)).isNull();
+    }
+
+    @Test
+    void whenUpdateRollsBack_thenKeepCache() throws Exception {
+        hotelService.getHotelById(1L);
+
+        assertThatThrownBy(() -> hotelService.patchHotel(1L, Hotel.builder().starRating(5).build(), 0L))
+                .isInstanceOf(PreconditionFailedException.class);
+
+        assertThat(hotelsById.get(1L)).isNotNull();
+    }
+
+    /**
+     * Registered by the test only, so it is not a component that the application scan would pick up
+     * when it runs from the test classes, as in the load test.
+     */
+    @EnableTransactionManagement
+    @Import(CacheConfig.class)
+    static class TestConfig {
+
+        @Bean
+        public PlatformTransactionManager transactionManager() {
+            JdbcDataSource dataSource = new JdbcDataSource();
+            dataSource.setURL("jdbc:h2:mem:cache-" + UUID.randomUUID());
+            return new DataSourceTransactionManager(dataSource);
+        }
+
+        @Bean
+        public HotelRepository hotelRepository() {
+            return mock(HotelRepository.class);
+        }
+
+        @Bean
+        public HotelService hotelService(HotelRepository hotelRepository,
+                                         PlatformTransactionManager transactionManager, CacheManager cacheManager) {
+            return new HotelServiceImpl(hotelRepository, mock(BookingService.class),
+                    mock(HotelBookingStatsService.class), mock(EntityManager.class),
+                    mock(TableVersionService.class), transactionManager, cacheManager);
+        }
+    }
+}
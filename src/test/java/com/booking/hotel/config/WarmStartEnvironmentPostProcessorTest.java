@@ -0,0 +1,100 @@
+package com.booking.hotel.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WarmStartEnvironmentPostProcessorTest {
+
+    private final WarmStartEnvironmentPostProcessor postProcessor = new WarmStartEnvironmentPostProcessor();
+
+    private Path directory;
+    private String url;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("warm-start");
+        url = "jdbc:h2:file:" + directory.resolve("booking").toAbsolutePath() + ";WRITE_DELAY=500";
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Test
+    void whenFileDatabaseHasHotels_thenSkipSeeding() throws SQLException {
+        execute("CREATE TABLE hotel (id BIGINT PRIMARY KEY)", "INSERT INTO hotel VALUES (1)");
+        MockEnvironment environment = environment();
+
+        postProcessor.postProcessEnvironment(environment, null);
+
+        assertThat(environment.getProperty("spring.datasource.initialization-mode")).isEqualTo("never");
+    }
+
+    @Test
+    void whenFileDatabaseExistsWithoutHotels_thenSeed() throws SQLException {
+        execute("CREATE TABLE hotel (id BIGINT PRIMARY KEY)");
+        MockEnvironment environment = environment();
+
+        postProcessor.postProcessEnvironment(environment, null);
+
+        assertThat(environment.getProperty("spring.datasource.initialization-mode")).isNull();
+    }
+
+    @Test
+    void whenFileDatabaseExistsWithoutSchema_thenSeed() throws SQLException {
+        execute();
+        MockEnvironment environment = environment();
+
+        postProcessor.postProcessEnvironment(environment, null);
+
+        assertThat(environment.getProperty("spring.datasource.initialization-mode")).isNull();
+    }
+
+    @Test
+    void whenFileDatabaseIsNew_thenSeedWithoutCreatingIt() {
+        MockEnvironment environment = environment();
+
+        postProcessor.postProcessEnvironment(environment, null);
+
+        assertThat(environment.getProperty("spring.datasource.initialization-mode")).isNull();
+        assertThat(WarmStartEnvironmentPostProcessor.storeFile(url)).doesNotExist();
+    }
+
+    @Test
+    void whenInMemoryDatabase_thenNoStoreFile() {
+        assertThat(WarmStartEnvironmentPostProcessor.storeFile("jdbc:h2:mem:testdb")).isNull();
+        assertThat(WarmStartEnvironmentPostProcessor.storeFile("jdbc:h2:file:./data/booking;CACHE_SIZE=1024"))
+                .isEqualTo(Paths.get("./data/booking.mv.db"));
+    }
+
+    private MockEnvironment environment() {
+        return new MockEnvironment()
+                .withProperty("spring.datasource.url", url)
+                .withProperty("spring.datasource.username", "sa")
+                .withProperty("spring.datasource.password", "password");
+    }
+
+    private void execute(String... statements) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url, "sa", "password");
+             Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.booking.hotel.controller;
+
+import com.booking.hotel.entity.Booking;
+import com.booking.hotel.entity.Hotel;
+import com.booking.hotel.exception.PreconditionFailedException;
+import com.booking.hotel.exception.ServiceBusyException;
+import com.booking.hotel.execution.ExecutionMode;
+import com.booking.hotel.execution.ExecutionProperties;
+import com.booking.hotel.execution.FanOutExecutor;
+import com.booking.hotel.execution.JdbcExecutor;
+import com.booking.hotel.service.BookingService;
+import com.booking.hotel.service.HotelService;
+import com.booking.hotel.service.TableVersionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class BookingControllerTest {
+
+    @Mock
+    private HotelService hotelService;
+    @Mock
+    private BookingService bookingService;
+    @Mock
+    private TableVersionService tableVersionService;
+
+    private FanOutExecutor fanOutExecutor;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        ExecutionProperties properties = new ExecutionProperties();
+        fanOutExecutor = new FanOutExecutor(properties, mock(PlatformTransactionManager.class));
+        mockMvc = mockMvc(properties);
+    }
+
+    private MockMvc mockMvc(ExecutionProperties properties) {
+        BookingController bookingController = new BookingController(hotelService, bookingService,
+                new ObjectMapper(), new JdbcExecutor(properties), fanOutExecutor, tableVersionService, 5);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(bookingController).build();
+        CompletedFutureReturnValueHandler.install(mockMvc.getDispatcherServlet().getWebApplicationContext()
+                .getBean(RequestMappingHandlerAdapter.class));
+        return mockMvc;
+    }
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        fanOutExecutor.stop();
+    }
+
+    @Test
+    void whenPutWithIfMatch_thenExpectThatVersionAndAnswerTheNewOne() throws Exception {
+        when(hotelService.getHotelByName("Hra")).thenReturn(Hotel.builder().id(1L).name("Hra").build());
+        when(bookingService.updateBooking(eq(1L), any(Booking.class), eq(3L)))
+                .thenReturn(Booking.builder().id(1L).version(4L).build());
+
+        mockMvc.perform(put("/bookings").param("id", "1")
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"customerSurname\":\"Petridis\",\"hotel\":{\"name\":\"Hra\"},\"version\":1}"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+    }
+
+    @Test
+    void whenDatabaseWorkRunsOnAnotherThread_thenAnswerInAsyncDispatch() throws Exception {
+        ExecutionProperties properties = new ExecutionProperties();
+        properties.setMode(ExecutionMode.ASYNC);
+        MockMvc asyncMockMvc = mockMvc(properties);
+        CountDownLatch started = new CountDownLatch(1);
+        when(bookingService.getBookingById(1L)).thenAnswer(invocation -> {
+            started.await(5, TimeUnit.SECONDS);
+            return Booking.builder().id(1L).version(2L).build();
+        });
+
+        MvcResult result = asyncMockMvc.perform(get("/bookings/1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        started.countDown();
+
+        asyncMockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""));
+    }
+
+    @Test
+    void whenPatchWithStaleVersion_thenPreconditionFailed() throws Exception {
+        when(bookingService.patchBooking(eq(1L), any(Booking.class), eq(3L)))
+                .thenThrow(new PreconditionFailedException("Booking with ID=1 has version 4, not 3"));
+
+        mockMvc.perform(patch("/bookings").param("id", "1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"pax\":3,\"version\":3}"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void whenPostWithStaleVersionOfExistingBooking_thenPreconditionFailed() throws Exception {
+        when(hotelService.getHotelByName("Hra")).thenReturn(Hotel.builder().id(1L).name("Hra").build());
+        when(bookingService.createOrUpdateBooking(any(Booking.class)))
+                .thenThrow(new PreconditionFailedException("Booking with ID=1 has version 4, not 3"));
+
+        mockMvc.perform(post("/bookings")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"id\":1,\"hotel\":{\"name\":\"Hra\"},\"version\":3}"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void whenStreamCompletes_thenWriteWholeArray() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<Booking> consumer = invocation.getArgument(2);
+            consumer.accept(Booking.builder().id(1L).build());
+            consumer.accept(Booking.builder().id(2L).build());
+            return null;
+        }).when(bookingService).streamBookingsByHotels(eq(Arrays.asList(1L, 2L)), any(Duration.class), any());
+
+        mockMvc.perform(get("/bookings/hotels").param("hotelId", "1", "2").param("stream", "true"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"id\":1},{\"id\":2}]"));
+    }
+
+    @Test
+    void whenFanOutBusyBeforeFirstBooking_thenServiceUnavailable() throws Exception {
+        doThrow(new ServiceBusyException("Too many chunks are waiting for a fan-out thread"))
+                .when(bookingService).streamBookingsByHotels(any(), any(Duration.class), any());
+
+        mockMvc.perform(get("/bookings/hotels").param("hotelId", "1").param("stream", "true"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void whenDeadlinePassesBeforeResponseIsCommitted_thenServiceUnavailable() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<Booking> consumer = invocation.getArgument(2);
+            consumer.accept(Booking.builder().id(1L).build());
+            throw new ServiceBusyException("Query chunks did not complete within 10 ms");
+        }).when(bookingService).streamBookingsByHotels(any(), any(Duration.class), any());
+
+        mockMvc.perform(get("/bookings/hotels").param("hotelId", "1", "2").param("stream", "true")
+                .param("timeoutMs", "10"))
+                .andExpect(status().isServiceUnavailable());
+    }
+}
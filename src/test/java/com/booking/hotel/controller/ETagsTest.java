@@ -0,0 +1,34 @@
+package com.booking.hotel.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ETagsTest {
+
+    @Test
+    void whenIfNoneMatchHasTheCurrentTag_thenMatch() {
+        String eTag = ETags.ofTables("hotels", 255L);
+
+        assertThat(eTag).isEqualTo("W/\"hotels-ff\"");
+        assertThat(ETags.matches("\"other\", W/\"hotels-ff\"", eTag)).isTrue();
+        assertThat(ETags.matches("\"hotels-ff\"", eTag)).isTrue();
+        assertThat(ETags.matches("*", eTag)).isTrue();
+    }
+
+    @Test
+    void whenIfNoneMatchHasAnOlderTag_thenDoNotMatch() {
+        String eTag = ETags.ofTables("amounts", 2L, 1L);
+
+        assertThat(ETags.matches("W/\"amounts-1-1\"", eTag)).isFalse();
+        assertThat(ETags.matches(null, eTag)).isFalse();
+    }
+
+    @Test
+    void whenIfMatch_thenReadExpectedVersion() {
+        assertThat(ETags.expectedVersion("\"3\"")).isEqualTo(3L);
+        assertThat(ETags.expectedVersion("W/\"3\"")).isEqualTo(3L);
+        assertThat(ETags.expectedVersion("*")).isNull();
+        assertThat(ETags.expectedVersion("\"unknown\"")).isEqualTo(-1L);
+    }
+}
@@ -0,0 +1,124 @@
+package com.booking.hotel.controller;
+
+import com.booking.hotel.entity.Hotel;
+import com.booking.hotel.exception.PreconditionFailedException;
+import com.booking.hotel.exception.ResourceNotFoundException;
+import com.booking.hotel.service.BookingService;
+import com.booking.hotel.service.HotelBookingStatsService;
+import com.booking.hotel.service.HotelService;
+import com.booking.hotel.service.TableVersionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class HotelControllerTest {
+
+    @Mock
+    private HotelService hotelService;
+    @Mock
+    private BookingService bookingService;
+    @Mock
+    private HotelBookingStatsService hotelBookingStatsService;
+    @Mock
+    private TableVersionService tableVersionService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        HotelController hotelController = new HotelController(hotelService, bookingService,
+                hotelBookingStatsService, new ObjectMapper(), tableVersionService, 5);
+        mockMvc = MockMvcBuilders.standaloneSetup(hotelController).build();
+    }
+
+    @Test
+    void whenPutWithIfMatch_thenExpectThatVersionAndAnswerTheNewOne() throws Exception {
+        when(hotelService.updateHotel(eq(1L), any(Hotel.class), eq(3L)))
+                .thenReturn(Hotel.builder().id(1L).name("Hra").version(4L).build());
+
+        mockMvc.perform(put("/hotels").param("id", "1")
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Hra\",\"version\":1}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+    }
+
+    @Test
+    void whenPutWithStaleIfMatch_thenPreconditionFailed() throws Exception {
+        when(hotelService.updateHotel(eq(1L), any(Hotel.class), eq(3L)))
+                .thenThrow(new PreconditionFailedException("Hotel with ID=1 has version 4, not 3"));
+
+        mockMvc.perform(put("/hotels").param("id", "1")
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Hra\"}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void whenPatchWithAnyIfMatch_thenUpdateAnyVersion() throws Exception {
+        when(hotelService.patchHotel(eq(1L), any(Hotel.class), isNull()))
+                .thenReturn(Hotel.builder().id(1L).starRating(4).version(4L).build());
+
+        mockMvc.perform(patch("/hotels").param("id", "1")
+                .header(HttpHeaders.IF_MATCH, "*")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"starRating\":4,\"version\":3}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+    }
+
+    @Test
+    void whenPatchMissingHotel_thenNotFound() throws Exception {
+        when(hotelService.patchHotel(eq(2L), any(Hotel.class), isNull()))
+                .thenThrow(new ResourceNotFoundException("Hotel with ID=2 not found"));
+
+        mockMvc.perform(patch("/hotels").param("id", "2")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"starRating\":4}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void whenPostWithStaleVersionOfExistingHotel_thenPreconditionFailed() throws Exception {
+        when(hotelService.createOrUpdateHotel(any(Hotel.class)))
+                .thenThrow(new PreconditionFailedException("Hotel with ID=1 has version 4, not 3"));
+
+        mockMvc.perform(post("/hotels")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"id\":1,\"name\":\"Hra\",\"version\":3}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void whenPostNewHotel_thenAnswerTheCreatedHotel() throws Exception {
+        when(hotelService.createOrUpdateHotel(any(Hotel.class)))
+                .thenReturn(Hotel.builder().id(51L).name("Hra").version(0L).build());
+
+        mockMvc.perform(post("/hotels")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Hra\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(51));
+    }
+}
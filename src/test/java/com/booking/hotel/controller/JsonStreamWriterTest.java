@@ -0,0 +1,73 @@
+package com.booking.hotel.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JsonStreamWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void whenCompleted_thenWriteWholeArrayAndCloseStream() throws IOException {
+        ClosingOutputStream outputStream = new ClosingOutputStream();
+
+        try (JsonStreamWriter writer = JsonStreamWriter.array(objectMapper, outputStream)) {
+            writer.accept(1);
+            writer.accept(2);
+            writer.complete();
+        }
+
+        assertThat(outputStream.content()).isEqualTo("[1,2]");
+        assertThat(outputStream.closed).isTrue();
+    }
+
+    @Test
+    void whenFailedHalfWay_thenLeaveArrayOpenAndStreamUnclosed() {
+        ClosingOutputStream outputStream = new ClosingOutputStream();
+
+        assertThatThrownBy(() -> {
+            try (JsonStreamWriter writer = JsonStreamWriter.array(objectMapper, outputStream)) {
+                writer.accept(1);
+                throw new IllegalStateException("read failed");
+            }
+        }).isInstanceOf(IllegalStateException.class);
+
+        assertThat(outputStream.content()).isEqualTo("[1");
+        assertThat(outputStream.closed).isFalse();
+    }
+
+    @Test
+    void whenNewlineDelimitedCompleted_thenWriteOneValuePerLine() throws IOException {
+        ClosingOutputStream outputStream = new ClosingOutputStream();
+
+        try (JsonStreamWriter writer = JsonStreamWriter.newlineDelimited(objectMapper, outputStream)) {
+            writer.accept(1);
+            writer.accept(2);
+            writer.complete();
+        }
+
+        assertThat(outputStream.content()).isEqualTo("1\n2\n");
+        assertThat(outputStream.closed).isTrue();
+    }
+
+    private static final class ClosingOutputStream extends ByteArrayOutputStream {
+
+        private boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        private String content() {
+            return new String(toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
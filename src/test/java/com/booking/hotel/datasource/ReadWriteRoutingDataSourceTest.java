@@ -0,0 +1,136 @@
+package com.booking.hotel.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadWriteRoutingDataSourceTest {
+
+    private static final String REPLICA = "replica-0";
+    private static final String UPDATE_HEARTBEAT = "UPDATE replication_heartbeat SET beat_millis = ?";
+
+    private SimpleMeterRegistry meterRegistry;
+    private JdbcTemplate primaryDatabase;
+    private JdbcTemplate replicaDatabase;
+    private ReadWriteRoutingDataSource routingDataSource;
+    private ReplicaLagMonitor replicaLagMonitor;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnlyTransaction;
+    private TransactionTemplate readWriteTransaction;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        JdbcDataSource primary = h2("primary");
+        JdbcDataSource replica = h2("replica");
+        primaryDatabase = new JdbcTemplate(primary);
+        replicaDatabase = new JdbcTemplate(replica);
+        routingDataSource = new ReadWriteRoutingDataSource(primary, Collections.singletonMap(REPLICA, replica),
+                meterRegistry);
+        ReplicaProperties properties = new ReplicaProperties();
+        properties.setMaxLagMs(5000);
+        replicaLagMonitor = new ReplicaLagMonitor(routingDataSource, properties);
+
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        readWriteTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void whenReplicaNotChecked_thenReadFromPrimary() {
+        assertThat(readOnlyNode()).isEqualTo("primary");
+    }
+
+    @Test
+    void whenReplicaUpToDate_thenReadOnlyFromReplicaAndWriteToPrimary() {
+        replicaLagMonitor.check();
+        replicate();
+        replicaLagMonitor.check();
+
+        assertThat(readOnlyNode()).isEqualTo("replica");
+        assertThat(readWriteNode()).isEqualTo("primary");
+        assertThat(jdbcTemplate.queryForObject("SELECT name FROM node", String.class)).isEqualTo("primary");
+        assertThat(routeCount(REPLICA, "read-only")).isEqualTo(1);
+        assertThat(routeCount(ReadWriteRoutingDataSource.PRIMARY, "read-only")).isEqualTo(0);
+    }
+
+    @Test
+    void whenReplicaLagsBehind_thenReadFromPrimaryUntilItCatchesUp() {
+        replicaDatabase.update(UPDATE_HEARTBEAT, System.currentTimeMillis() - 60_000);
+        replicaLagMonitor.check();
+
+        assertThat(routingDataSource.isReplicaUsable(REPLICA)).isFalse();
+        assertThat(replicaLagMonitor.getLagMillis(REPLICA)).isGreaterThanOrEqualTo(60_000);
+        assertThat(readOnlyNode()).isEqualTo("primary");
+        assertThat(routeCount(ReadWriteRoutingDataSource.PRIMARY, "read-only")).isEqualTo(1);
+
+        replicate();
+        replicaLagMonitor.check();
+
+        assertThat(routingDataSource.isReplicaUsable(REPLICA)).isTrue();
+        assertThat(readOnlyNode()).isEqualTo("replica");
+    }
+
+    @Test
+    void whenReplicaCannotBeRead_thenReadFromPrimary() {
+        replicaDatabase.execute("DROP TABLE replication_heartbeat");
+        replicaLagMonitor.check();
+
+        assertThat(replicaLagMonitor.getLagMillis(REPLICA)).isEqualTo(-1);
+        assertThat(readOnlyNode()).isEqualTo("primary");
+    }
+
+    private String readOnlyNode() {
+        String node = readOnlyTransaction.execute(status -> node());
+        return node;
+    }
+
+    private String readWriteNode() {
+        String node = readWriteTransaction.execute(status -> node());
+        return node;
+    }
+
+    private String node() {
+        return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    /**
+     * Copy the last heartbeat of the primary database to the replica, as replication would.
+     */
+    private void replicate() {
+        Long beatMillis = primaryDatabase.queryForObject(ReplicaLagMonitor.HEARTBEAT_QUERY, Long.class);
+        replicaDatabase.update(UPDATE_HEARTBEAT, beatMillis);
+    }
+
+    private double routeCount(String route, String transaction) {
+        return meterRegistry.get(ReadWriteRoutingDataSource.ROUTE_COUNTER)
+                .tag("route", route)
+                .tag("transaction", transaction)
+                .counter()
+                .count();
+    }
+
+    private static JdbcDataSource h2(String node) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + node + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE node (name VARCHAR(20))");
+        jdbcTemplate.update("INSERT INTO node (name) VALUES (?)", node);
+        jdbcTemplate.execute("CREATE TABLE replication_heartbeat (id INTEGER PRIMARY KEY, beat_millis BIGINT)");
+        jdbcTemplate.update("INSERT INTO replication_heartbeat (id, beat_millis) VALUES (1, 0)");
+        return dataSource;
+    }
+}
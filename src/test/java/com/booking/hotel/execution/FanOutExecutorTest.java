@@ -0,0 +1,166 @@
+package com.booking.hotel.execution;
+
+import com.booking.hotel.exception.ServiceBusyException;
+import com.booking.hotel.metrics.SqlStatementCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class FanOutExecutorTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private FanOutExecutor fanOutExecutor;
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        SqlStatementCounter.stop();
+        if (fanOutExecutor != null) {
+            fanOutExecutor.stop();
+        }
+    }
+
+    @Test
+    void whenQueryAll_thenMergeChunksInOrderOnPoolThreads() throws ServiceBusyException {
+        fanOutExecutor = new FanOutExecutor(properties(4, 3), mock(PlatformTransactionManager.class));
+        SqlStatementCounter counter = new SqlStatementCounter();
+        SqlStatementCounter.start();
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        List<Long> ids = ids(10);
+
+        List<Long> results = fanOutExecutor.queryAll(ids, chunk -> {
+            threads.add(Thread.currentThread());
+            counter.inspect("select 1");
+            return chunk;
+        }, TIMEOUT);
+
+        assertThat(results).isEqualTo(ids);
+        assertThat(threads).doesNotContain(Thread.currentThread());
+        assertThat(SqlStatementCounter.stop()).isEqualTo(4);
+    }
+
+    @Test
+    void whenQueryEach_thenConsumeEveryResultOnCallingThread() throws ServiceBusyException {
+        fanOutExecutor = new FanOutExecutor(properties(4, 3), mock(PlatformTransactionManager.class));
+        List<Long> consumed = new ArrayList<>();
+        Set<Thread> consumers = ConcurrentHashMap.newKeySet();
+
+        fanOutExecutor.queryEach(ids(10), chunk -> chunk, TIMEOUT, id -> {
+            consumers.add(Thread.currentThread());
+            consumed.add(id);
+        });
+
+        assertThat(consumed).containsExactlyInAnyOrderElementsOf(ids(10));
+        assertThat(consumers).containsExactly(Thread.currentThread());
+    }
+
+    @Test
+    void whenDuplicateIds_thenQueryEveryIdOnce() throws ServiceBusyException {
+        fanOutExecutor = new FanOutExecutor(properties(2, 2), mock(PlatformTransactionManager.class));
+
+        List<Long> results = fanOutExecutor.queryAll(Arrays.asList(1L, 2L, 1L, 3L, 2L), chunk -> chunk, TIMEOUT);
+
+        assertThat(results).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void whenChunksTooSlow_thenServiceBusy() {
+        fanOutExecutor = new FanOutExecutor(properties(1, 1), mock(PlatformTransactionManager.class));
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            assertThatThrownBy(() -> fanOutExecutor.queryAll(ids(2), chunk -> {
+                await(release);
+                return chunk;
+            }, Duration.ofMillis(50))).isInstanceOf(ServiceBusyException.class);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void whenQueryFails_thenRethrowItsException() {
+        fanOutExecutor = new FanOutExecutor(properties(2, 1), mock(PlatformTransactionManager.class));
+
+        assertThatThrownBy(() -> fanOutExecutor.queryAll(ids(2), chunk -> {
+            throw new IllegalStateException("broken");
+        }, TIMEOUT)).isInstanceOf(IllegalStateException.class).hasMessage("broken");
+    }
+
+    @Test
+    void whenNoThreads_thenRunChunksOnCallingThread() throws ServiceBusyException {
+        fanOutExecutor = new FanOutExecutor(properties(0, 3), mock(PlatformTransactionManager.class));
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        List<Long> results = fanOutExecutor.queryAll(ids(7), chunk -> {
+            threads.add(Thread.currentThread());
+            return chunk;
+        }, TIMEOUT);
+
+        assertThat(results).isEqualTo(ids(7));
+        assertThat(threads).isEqualTo(Collections.singleton(Thread.currentThread()));
+    }
+
+    @Test
+    void whenQueueFull_thenServiceBusyBeforeFirstResult() {
+        ExecutionProperties properties = properties(1, 1);
+        properties.setFanOutQueueCapacity(1);
+        fanOutExecutor = new FanOutExecutor(properties, mock(PlatformTransactionManager.class));
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> consumed = new ArrayList<>();
+
+        try {
+            assertThatThrownBy(() -> fanOutExecutor.queryEach(ids(3), chunk -> {
+                await(release);
+                return chunk;
+            }, TIMEOUT, consumed::add)).isInstanceOf(ServiceBusyException.class);
+        } finally {
+            release.countDown();
+        }
+        assertThat(consumed).isEmpty();
+    }
+
+    @Test
+    void whenNoThreadsAndDeadlinePassed_thenServiceBusyBeforeFirstResult() {
+        fanOutExecutor = new FanOutExecutor(properties(0, 3), mock(PlatformTransactionManager.class));
+        List<Long> consumed = new ArrayList<>();
+
+        assertThatThrownBy(() -> fanOutExecutor.queryEach(ids(7), chunk -> chunk, Duration.ZERO, consumed::add))
+                .isInstanceOf(ServiceBusyException.class);
+        assertThat(consumed).isEmpty();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<Long> ids(int count) {
+        return LongStream.rangeClosed(1, count).boxed().collect(Collectors.toList());
+    }
+
+    private static ExecutionProperties properties(int threads, int chunkSize) {
+        ExecutionProperties properties = new ExecutionProperties();
+        properties.setFanOutThreads(threads);
+        properties.setFanOutChunkSize(chunkSize);
+        return properties;
+    }
+}
@@ -0,0 +1,94 @@
+package com.booking.hotel.execution;
+
+import com.booking.hotel.exception.ServiceBusyException;
+import com.booking.hotel.metrics.SqlStatementCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JdbcExecutorTest {
+
+    private JdbcExecutor jdbcExecutor;
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        SqlStatementCounter.stop();
+        if (jdbcExecutor != null) {
+            jdbcExecutor.stop();
+        }
+    }
+
+    @Test
+    void whenBlocking_thenRunOnCallingThread() throws Exception {
+        jdbcExecutor = new JdbcExecutor(properties(ExecutionMode.BLOCKING, 1));
+
+        CompletableFuture<Thread> future = jdbcExecutor.supply(Thread::currentThread);
+
+        assertThat(future).isDone();
+        assertThat(future.get()).isSameAs(Thread.currentThread());
+    }
+
+    @Test
+    void whenAsync_thenCountStatementsWithCallingThread() throws Exception {
+        jdbcExecutor = new JdbcExecutor(properties(ExecutionMode.ASYNC, 1));
+        SqlStatementCounter counter = new SqlStatementCounter();
+        SqlStatementCounter.start();
+
+        Thread worker = jdbcExecutor.supply(() -> {
+            counter.inspect("select 1");
+            return Thread.currentThread();
+        }).get(5, TimeUnit.SECONDS);
+
+        assertThat(worker).isNotSameAs(Thread.currentThread());
+        assertThat(SqlStatementCounter.stop()).isEqualTo(1);
+    }
+
+    @Test
+    void whenNoPermitInTime_thenServiceBusy() throws Exception {
+        ExecutionProperties properties = properties(ExecutionMode.ASYNC, 1);
+        properties.setThreads(2);
+        properties.setAcquireTimeoutMs(10);
+        jdbcExecutor = new JdbcExecutor(properties);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> holder = jdbcExecutor.supply(() -> {
+            started.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        });
+        started.await(5, TimeUnit.SECONDS);
+
+        CompletableFuture<String> rejected = jdbcExecutor.supply(() -> "too late");
+
+        assertThatThrownBy(() -> rejected.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(ServiceBusyException.class);
+        release.countDown();
+        assertThat(holder.get(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void whenMaxConcurrentQueriesChanged_thenFollowTheNewLimit() {
+        jdbcExecutor = new JdbcExecutor(properties(ExecutionMode.BLOCKING, 10));
+
+        jdbcExecutor.setMaxConcurrentQueries(4);
+        assertThat(jdbcExecutor.getAvailablePermits()).isEqualTo(4);
+
+        jdbcExecutor.setMaxConcurrentQueries(12);
+        assertThat(jdbcExecutor.getAvailablePermits()).isEqualTo(12);
+        assertThat(jdbcExecutor.getMaxConcurrentQueries()).isEqualTo(12);
+    }
+
+    private static ExecutionProperties properties(ExecutionMode mode, int maxConcurrentQueries) {
+        ExecutionProperties properties = new ExecutionProperties();
+        properties.setMode(mode);
+        properties.setMaxConcurrentQueries(maxConcurrentQueries);
+        return properties;
+    }
+}
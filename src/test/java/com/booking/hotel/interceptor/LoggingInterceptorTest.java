@@ -0,0 +1,94 @@
+package com.booking.hotel.interceptor;
+
+import com.booking.hotel.service.LoggingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class LoggingInterceptorTest {
+
+    @Mock
+    private LoggingService loggingService;
+
+    private final CompletableFuture<String> result = new CompletableFuture<>();
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new TestController(result))
+                .addInterceptors(new LoggingInterceptor(loggingService))
+                .build();
+    }
+
+    @Test
+    void whenRequestCompletes_thenLogItOnce() throws Exception {
+        mockMvc.perform(get("/sync"))
+                .andExpect(status().isOk());
+
+        verify(loggingService, times(1)).startRequest(any());
+        verify(loggingService, times(1)).logRequest(any(), isNull());
+        verify(loggingService, times(1)).logResponse(any(), any(), isNull());
+    }
+
+    @Test
+    void whenAsyncRequestCompletes_thenLogTheResponseOfItsAsyncDispatch() throws Exception {
+        MvcResult asyncResult = mockMvc.perform(get("/async"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        verify(loggingService, never()).logResponse(any(), any(), any());
+
+        result.complete("done");
+        mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk());
+
+        verify(loggingService, times(1)).startRequest(any());
+        verify(loggingService, times(1)).logRequest(any(), isNull());
+        verify(loggingService, times(1)).logResponse(any(), any(), isNull());
+    }
+
+    /**
+     * Mapped without being a component, so the application scan does not pick it up when it runs from the test
+     * classes, as in the load test.
+     */
+    @RequestMapping
+    @ResponseBody
+    static class TestController {
+
+        private final CompletableFuture<String> result;
+
+        TestController(CompletableFuture<String> result) {
+            this.result = result;
+        }
+
+        @GetMapping("/sync")
+        public String sync() {
+            return "done";
+        }
+
+        @GetMapping("/async")
+        public CompletableFuture<String> async() {
+            return result;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.booking.hotel.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AsyncLogWriterTest {
+
+    @Test
+    void whenQueueIsFull_thenDropAndCountEvents() {
+        LoggingProperties loggingProperties = new LoggingProperties();
+        loggingProperties.setQueueCapacity(1);
+        AsyncLogWriter asyncLogWriter = new AsyncLogWriter(loggingProperties);
+        LogEvent event = LogEvent.builder()
+                .type(LogEvent.Type.REQUEST)
+                .method("GET")
+                .path("/bookings")
+                .build();
+
+        assertThat(asyncLogWriter.offer(event)).isTrue();
+        assertThat(asyncLogWriter.offer(event)).isFalse();
+        assertThat(asyncLogWriter.getQueueSize()).isEqualTo(1);
+        assertThat(asyncLogWriter.getDroppedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void whenFormatResponse_thenIncludeStatusAndBody() {
+        LogEvent event = LogEvent.builder()
+                .type(LogEvent.Type.RESPONSE)
+                .method("GET")
+                .path("/hotels")
+                .status(200)
+                .durationMillis(12)
+                .body("[]")
+                .build();
+
+        assertThat(AsyncLogWriter.format(event))
+                .isEqualTo("RESPONSE method=[GET] path=[/hotels] status=[200] duration=[12ms] body=[[]]");
+    }
+
+    @Test
+    void whenStopped_thenWriteQueuedEventsFirst() throws InterruptedException {
+        AsyncLogWriter asyncLogWriter = new AsyncLogWriter(new LoggingProperties());
+        asyncLogWriter.start();
+        for (int i = 0; i < 100; i++) {
+            asyncLogWriter.offer(LogEvent.builder().type(LogEvent.Type.REQUEST).method("GET").path("/hotels").build());
+        }
+
+        asyncLogWriter.stop();
+
+        assertThat(asyncLogWriter.getQueueSize()).isZero();
+        assertThat(asyncLogWriter.getDroppedCount()).isZero();
+    }
+
+    @Test
+    void whenBodyIsLong_thenTruncateIt() {
+        String body = LogBodies.render(Arrays.asList("first", "second", "third"), 10);
+
+        assertThat(body).isEqualTo("[first, se...(truncated) (3 elements)");
+    }
+}
@@ -0,0 +1,66 @@
+package com.booking.hotel.logging;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoggingPoliciesTest {
+
+    private LoggingPolicies loggingPolicies;
+
+    @BeforeEach
+    void setUp() {
+        LoggingProperties.Policy export = new LoggingProperties.Policy();
+        export.setPattern("/bookings/export");
+        export.setMode(LogMode.NONE);
+        LoggingProperties.Policy bookings = new LoggingProperties.Policy();
+        bookings.setPattern("/bookings/**");
+        bookings.setMode(LogMode.SAMPLED);
+        bookings.setSampleRate(3);
+        LoggingProperties loggingProperties = new LoggingProperties();
+        loggingProperties.setDefaultMode(LogMode.METADATA);
+        loggingProperties.setSlowThresholdMs(500);
+        loggingProperties.setPolicies(Arrays.asList(export, bookings));
+        loggingPolicies = new LoggingPolicies(loggingProperties);
+    }
+
+    @Test
+    void whenFirstPolicyMatches_thenUseIt() {
+        assertThat(loggingPolicies.decide(request("/bookings/export"))).isEqualTo(LogMode.NONE);
+    }
+
+    @Test
+    void whenSampled_thenLogOneInSampleRateRequests() {
+        MockHttpServletRequest request = request("/bookings/{id}");
+
+        assertThat(loggingPolicies.decide(request)).isEqualTo(LogMode.FULL);
+        assertThat(loggingPolicies.decide(request)).isEqualTo(LogMode.NONE);
+        assertThat(loggingPolicies.decide(request)).isEqualTo(LogMode.NONE);
+        assertThat(loggingPolicies.decide(request)).isEqualTo(LogMode.FULL);
+    }
+
+    @Test
+    void whenNoPolicyMatches_thenUseDefaultMode() {
+        assertThat(loggingPolicies.decide(request("/hotels"))).isEqualTo(LogMode.METADATA);
+        assertThat(loggingPolicies.decide(new MockHttpServletRequest())).isEqualTo(LogMode.METADATA);
+    }
+
+    @Test
+    void whenErrorOrSlow_thenAlwaysLog() {
+        assertThat(loggingPolicies.isAlwaysLogged(404, 0)).isTrue();
+        assertThat(loggingPolicies.isAlwaysLogged(200, TimeUnit.MILLISECONDS.toNanos(500))).isTrue();
+        assertThat(loggingPolicies.isAlwaysLogged(200, TimeUnit.MILLISECONDS.toNanos(10))).isFalse();
+    }
+
+    private static MockHttpServletRequest request(String route) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, route);
+        return request;
+    }
+}
@@ -0,0 +1,64 @@
+package com.booking.hotel.metrics;
+
+import com.booking.hotel.entity.Booking;
+import com.booking.hotel.repository.BookingRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LayerTimingAspectTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private BookingRepository bookingRepository;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        BookingRepository target = mock(BookingRepository.class);
+        when(target.findBookingsByCustomerSurname("Papadopoulos"))
+                .thenReturn(Arrays.asList(new Booking(), new Booking()));
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.addInterface(BookingRepository.class);
+        proxyFactory.addAspect(new LayerTimingAspect(meterRegistry));
+        bookingRepository = proxyFactory.getProxy();
+    }
+
+    @Test
+    void whenRepositoryCalled_thenTimeCallAndCountRows() {
+        bookingRepository.findBookingsByCustomerSurname("Papadopoulos");
+        bookingRepository.findBookingsByCustomerSurname("Papadopoulos");
+
+        Timer timer = meterRegistry.get(LayerTimingAspect.REPOSITORY_TIMER)
+                .tag("component", "BookingRepository")
+                .tag("method", "findBookingsByCustomerSurname")
+                .timer();
+        DistributionSummary rows = meterRegistry.get(LayerTimingAspect.REPOSITORY_ROWS)
+                .tag("method", "findBookingsByCustomerSurname")
+                .summary();
+        assertThat(timer.count()).isEqualTo(2);
+        assertThat(rows.count()).isEqualTo(2);
+        assertThat(rows.totalAmount()).isEqualTo(4);
+    }
+
+    @Test
+    void whenStatementsInspected_thenCountOnlyWhileStarted() {
+        SqlStatementCounter counter = new SqlStatementCounter();
+        counter.inspect("select 1");
+
+        SqlStatementCounter.start();
+        counter.inspect("select 1");
+        counter.inspect("select 2");
+
+        assertThat(SqlStatementCounter.stop()).isEqualTo(2);
+        assertThat(SqlStatementCounter.stop()).isEqualTo(0);
+    }
+}
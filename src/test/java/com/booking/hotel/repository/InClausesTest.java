@@ -0,0 +1,49 @@
+package com.booking.hotel.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InClausesTest {
+
+    @Test
+    void whenMoreIdsThanChunkSize_thenQueryEveryChunk() {
+        List<Long> ids = LongStream.rangeClosed(1, 5).boxed().collect(Collectors.toList());
+        List<List<Long>> chunks = new ArrayList<>();
+
+        List<Long> results = InClauses.inChunks(ids, 2, chunk -> {
+            chunks.add(new ArrayList<>(chunk));
+            return chunk;
+        });
+
+        assertThat(chunks).containsExactly(Arrays.asList(1L, 2L), Arrays.asList(3L, 4L), Arrays.asList(5L));
+        assertThat(results).isEqualTo(ids);
+    }
+
+    @Test
+    void whenDuplicateIds_thenQueryEveryIdOnce() {
+        List<List<Long>> chunks = new ArrayList<>();
+
+        InClauses.inChunks(Arrays.asList(1L, 2L, 1L), 2, chunk -> {
+            chunks.add(new ArrayList<>(chunk));
+            return chunk;
+        });
+
+        assertThat(chunks).containsExactly(Arrays.asList(1L, 2L));
+    }
+
+    @Test
+    void whenNoIds_thenDoNotQuery() {
+        List<Long> results = InClauses.inChunks(new ArrayList<>(), 2, chunk -> {
+            throw new AssertionError("Unexpected query");
+        });
+
+        assertThat(results).isEmpty();
+    }
+}
@@ -1,23 +1,42 @@
 package com.booking.hotel.service;
 
+import com.booking.hotel.dto.BookingBatchResult;
+import com.booking.hotel.dto.BookingSummary;
+import com.booking.hotel.dto.CurrencyAmount;
 import com.booking.hotel.entity.Booking;
 import com.booking.hotel.entity.Hotel;
+import com.booking.hotel.event.BookingChangedEvent;
+import com.booking.hotel.event.BookingSnapshot;
+import com.booking.hotel.exception.PreconditionFailedException;
 import com.booking.hotel.exception.ResourceNotFoundException;
+import com.booking.hotel.execution.FanOutExecutor;
 import com.booking.hotel.repository.BookingRepository;
+import com.booking.hotel.repository.HotelRepository;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -29,6 +48,22 @@ class BookingServiceTest {
     private BookingServiceImpl bookingService;
     @Mock
     private BookingRepository bookingRepository;
+    @Mock
+    private HotelRepository hotelRepository;
+    @Mock
+    private HotelService hotelService;
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private SurnameIndexService surnameIndexService;
+    @Mock
+    private TableVersionService tableVersionService;
+    @Mock
+    private FanOutExecutor fanOutExecutor;
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
     @Test
     public void whenFindAll_thenReturnBookings() {
@@ -65,6 +100,45 @@ class BookingServiceTest {
         assertThat(actualBooking).isEqualTo(booking);
     }
 
+    @Test
+    void whenPatchBooking_thenChangeOnlyTheGivenDetails() throws Exception {
+        Booking booking = Booking.builder()
+                .id(1L)
+                .customerName("Petros")
+                .customerSurname("Petridis")
+                .priceAmount(BigDecimal.valueOf(100))
+                .currency("EUR")
+                .hotel(Hotel.builder().id(1L).build())
+                .version(3L)
+                .build();
+        when(bookingRepository.findById(1L)).thenReturn(Optional.of(booking));
+
+        Booking actualBooking = bookingService.patchBooking(1L,
+                Booking.builder().priceAmount(BigDecimal.valueOf(120)).build(), 3L);
+
+        assertThat(actualBooking.getPriceAmount()).isEqualTo(BigDecimal.valueOf(120));
+        assertThat(actualBooking.getCustomerName()).isEqualTo("Petros");
+        assertThat(actualBooking.getCurrency()).isEqualTo("EUR");
+        verify(entityManager).flush();
+    }
+
+    @Test
+    void whenUpdateStaleBookingVersion_thenPreconditionFailed() {
+        Booking booking = Booking.builder()
+                .id(1L)
+                .customerName("Petros")
+                .hotel(Hotel.builder().id(1L).build())
+                .version(3L)
+                .build();
+        when(bookingRepository.findById(1L)).thenReturn(Optional.of(booking));
+
+        Assertions.assertThrows(PreconditionFailedException.class, () ->
+                bookingService.updateBooking(1L, Booking.builder().customerName("Nikos").build(), 2L));
+
+        assertThat(booking.getCustomerName()).isEqualTo("Petros");
+        verify(entityManager, never()).flush();
+    }
+
     @Test
     void testBookingResourceNotFoundExpectedException() {
         Assertions.assertThrows(ResourceNotFoundException.class, () -> {
@@ -73,7 +147,7 @@ class BookingServiceTest {
     }
 
     @Test
-    void testSaveBooking() {
+    void testSaveBooking() throws PreconditionFailedException {
         Booking booking = Booking.builder()
                 .id(1L)
                 .customerName("Petros")
@@ -88,6 +162,66 @@ class BookingServiceTest {
         verify(bookingRepository, times(1)).save(booking);
     }
 
+    @Test
+    void whenUpdateBooking_thenPublishPreviousAndCurrentState() throws PreconditionFailedException {
+        Booking previousBooking = Booking.builder()
+                .id(1L)
+                .customerSurname("Petridis")
+                .priceAmount(BigDecimal.valueOf(100))
+                .currency("EUR")
+                .hotel(Hotel.builder().id(1L).build())
+                .build();
+        Booking booking = Booking.builder()
+                .id(1L)
+                .customerSurname("Petridis")
+                .priceAmount(BigDecimal.valueOf(150))
+                .currency("EUR")
+                .hotel(Hotel.builder().id(2L).build())
+                .build();
+        when(bookingRepository.findById(1L)).thenReturn(Optional.of(previousBooking));
+        BookingSnapshot previous = BookingSnapshot.of(previousBooking);
+
+        bookingService.createOrUpdateBooking(booking);
+
+        verify(eventPublisher, times(1)).publishEvent(
+                new BookingChangedEvent(previous, BookingSnapshot.of(booking)));
+        verify(bookingRepository, never()).save(booking);
+    }
+
+    @Test
+    void whenCreateBookingWithUnknownIdAndVersion_thenCreateItAsNew() throws PreconditionFailedException {
+        Booking booking = Booking.builder()
+                .id(7L)
+                .customerSurname("Petridis")
+                .hotel(Hotel.builder().id(1L).build())
+                .version(3L)
+                .build();
+        when(bookingRepository.findById(7L)).thenReturn(Optional.empty());
+
+        Booking created = bookingService.createOrUpdateBooking(booking);
+
+        assertThat(created.getId()).isNull();
+        assertThat(created.getVersion()).isNull();
+        verify(bookingRepository).save(booking);
+        verify(eventPublisher).publishEvent(BookingChangedEvent.created(BookingSnapshot.of(booking)));
+    }
+
+    @Test
+    void whenCreateBookingWithStaleVersionOfExistingBooking_thenPreconditionFailed() {
+        Booking existing = Booking.builder()
+                .id(1L)
+                .customerSurname("Petridis")
+                .hotel(Hotel.builder().id(1L).build())
+                .version(4L)
+                .build();
+        when(bookingRepository.findById(1L)).thenReturn(Optional.of(existing));
+
+        Assertions.assertThrows(PreconditionFailedException.class, () -> bookingService.createOrUpdateBooking(
+                Booking.builder().id(1L).customerSurname("Georgiou").version(3L).build()));
+        assertThat(existing.getCustomerSurname()).isEqualTo("Petridis");
+        verify(bookingRepository, never()).save(any());
+    }
+
     @Test
     void testDeleteHotel() throws ResourceNotFoundException {
         Booking booking = Booking.builder()
@@ -114,16 +248,10 @@ class BookingServiceTest {
                 .starRating(5)
                 .build();
         List<Hotel> hotels = Collections.singletonList(hotel);
-        Booking booking = Booking.builder()
-                .id(1L)
-                .customerName("Petros")
-                .customerSurname("Petridis")
-                .hotel(hotel)
-                .build();
-        List<Booking> bookings = Collections.singletonList(booking);
-        doReturn(bookings).when(bookingRepository).findBookingsByCustomerSurname(booking.getCustomerSurname());
+        doReturn(Collections.singletonList(1L)).when(surnameIndexService).findHotelIds("Petridis");
+        doReturn(hotels).when(hotelRepository).findAllById(Collections.singletonList(1L));
 
-        List<Hotel> actualHotels = bookingService.getHotelsByBookingSurname(booking.getCustomerSurname());
+        List<Hotel> actualHotels = bookingService.getHotelsByBookingSurname("Petridis");
 
         assertThat(actualHotels).isEqualTo(hotels);
     }
@@ -144,10 +272,152 @@ class BookingServiceTest {
                 .build();
         List<Long> ids = Collections.singletonList(hotel.getId());
         List<Booking> expectedBookings = Collections.singletonList(booking);
+        doCallRealMethod().when(bookingRepository).findBookingsByHotelIdsInChunks(ids);
         doReturn(expectedBookings).when(bookingRepository).findBookingsByHotelIds(ids);
 
         List<Booking> actualBookings = bookingService.getBookingsByHotels(ids);
 
         assertThat(actualBookings).isEqualTo(expectedBookings);
     }
-}
\ No newline at end of file
+
+    @Test
+    void whenFindHotelName_thenReturnTotalAmounts() {
+        List<CurrencyAmount> expectedAmounts = Collections.singletonList(
+                new CurrencyAmount("EUR", BigDecimal.valueOf(100)));
+        doReturn(expectedAmounts).when(bookingRepository).sumPriceAmountsByHotelName("h1");
+
+        List<CurrencyAmount> actualAmounts = bookingService.getTotalAmountsByHotelName("h1");
+
+        assertThat(actualAmounts).isEqualTo(expectedAmounts);
+    }
+
+    @Test
+    void whenFindAfterId_thenReturnPage() {
+        Booking booking = Booking.builder()
+                .id(11L)
+                .customerName("Petros")
+                .customerSurname("Petridis")
+                .hotel(new Hotel())
+                .build();
+        List<Booking> expectedBookings = Collections.singletonList(booking);
+        doReturn(expectedBookings).when(bookingRepository).findBookingsAfter(10L, PageRequest.of(0, 5));
+
+        List<Booking> actualBookings = bookingService.getBookingsAfter(10L, 5);
+
+        assertThat(actualBookings).isEqualTo(expectedBookings);
+    }
+
+    @Test
+    void whenFindSummariesAfterId_thenReturnPage() {
+        BookingSummary summary = new BookingSummary(11L, "Petros", "Petridis", 2, BigDecimal.valueOf(100), "EUR", 1L);
+        List<BookingSummary> expectedSummaries = Collections.singletonList(summary);
+        doReturn(expectedSummaries).when(bookingRepository).findBookingSummariesAfter(10L, PageRequest.of(0, 5));
+
+        List<BookingSummary> actualSummaries = bookingService.getBookingSummariesAfter(10L, 5);
+
+        assertThat(actualSummaries).isEqualTo(expectedSummaries);
+    }
+
+    @Test
+    void whenStreamAll_thenConsumeAndDetachBookings() {
+        Booking booking = Booking.builder()
+                .id(1L)
+                .customerName("Petros")
+                .customerSurname("Petridis")
+                .hotel(new Hotel())
+                .build();
+        doReturn(Stream.of(booking)).when(bookingRepository).streamAllBookings();
+        List<Booking> consumedBookings = new ArrayList<>();
+
+        bookingService.streamAllBookings(consumedBookings::add);
+
+        assertThat(consumedBookings).containsExactly(booking);
+        verify(entityManager, times(1)).detach(booking);
+    }
+
+    @Test
+    void whenExportRange_thenConsumeAndDetachBookings() {
+        Booking booking = Booking.builder()
+                .id(5L)
+                .customerName("Petros")
+                .customerSurname("Petridis")
+                .hotel(new Hotel())
+                .build();
+        doReturn(Stream.of(booking)).when(bookingRepository).streamBookingsByHotelId(1L, 0L, 10L);
+        List<Booking> consumedBookings = new ArrayList<>();
+
+        bookingService.exportBookings(1L, 0L, 10L, consumedBookings::add);
+
+        assertThat(consumedBookings).containsExactly(booking);
+        verify(entityManager, times(1)).detach(booking);
+    }
+
+    @Test
+    void whenCreateBatch_thenPersistBookingsAndRejectMissingHotels() {
+        Hotel hotel = Hotel.builder()
+                .id(1L)
+                .name("h1")
+                .address("kifisias")
+                .starRating(5)
+                .build();
+        Booking booking = Booking.builder()
+                .customerName("Petros")
+                .customerSurname("Petridis")
+                .hotel(Hotel.builder().name("h1").build())
+                .build();
+        Booking bookingWithoutHotel = Booking.builder()
+                .customerName("Giannis")
+                .customerSurname("Papadakis")
+                .build();
+        doReturn(Collections.singletonList(hotel)).when(hotelRepository)
+                .findHotelsByNameIn(Collections.singleton("h1"));
+
+        List<BookingBatchResult> results = bookingService.createBookings(Arrays.asList(booking, bookingWithoutHotel));
+
+        assertThat(results).extracting(BookingBatchResult::getStatus)
+                .containsExactly(BookingBatchResult.Status.CREATED, BookingBatchResult.Status.REJECTED);
+        assertThat(booking.getHotel()).isEqualTo(hotel);
+        verify(entityManager, times(1)).persist(booking);
+        verify(entityManager, times(1)).flush();
+        verify(hotelService, never()).getOrCreateHotel(any());
+        verify(tableVersionService, times(1)).bookingsChanged();
+    }
+
+    @Test
+    void whenCreateBatchWithNewHotel_thenGetOrCreateItThroughHotelService() {
+        Hotel requestedHotel = Hotel.builder().name("h2").build();
+        Hotel hotel = Hotel.builder()
+                .id(2L)
+                .name("h2")
+                .build();
+        Booking booking = Booking.builder()
+                .customerName("Petros")
+                .customerSurname("Petridis")
+                .hotel(requestedHotel)
+                .build();
+        doReturn(Collections.emptyList()).when(hotelRepository).findHotelsByNameIn(Collections.singleton("h2"));
+        doReturn(hotel).when(hotelService).getOrCreateHotel(requestedHotel);
+
+        List<BookingBatchResult> results = bookingService.createBookings(Collections.singletonList(booking));
+
+        assertThat(results).extracting(BookingBatchResult::getStatus)
+                .containsExactly(BookingBatchResult.Status.CREATED);
+        assertThat(booking.getHotel()).isEqualTo(hotel);
+        verify(hotelRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void whenCreateBatchRejectsEveryBooking_thenKeepBookingsVersion() {
+        Booking bookingWithoutHotel = Booking.builder()
+                .customerName("Giannis")
+                .customerSurname("Papadakis")
+                .build();
+
+        List<BookingBatchResult> results = bookingService.createBookings(
+                Collections.singletonList(bookingWithoutHotel));
+
+        assertThat(results).extracting(BookingBatchResult::getStatus)
+                .containsExactly(BookingBatchResult.Status.REJECTED);
+        verify(tableVersionService, never()).bookingsChanged();
+    }
+}
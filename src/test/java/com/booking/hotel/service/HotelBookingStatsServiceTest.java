@@ -0,0 +1,151 @@
+package com.booking.hotel.service;
+
+import com.booking.hotel.dto.CurrencyAmount;
+import com.booking.hotel.dto.HotelBookingStats;
+import com.booking.hotel.dto.HotelCurrencyTotals;
+import com.booking.hotel.event.BookingChangedEvent;
+import com.booking.hotel.event.BookingSnapshot;
+import com.booking.hotel.repository.BookingAggregates;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+
+@ExtendWith(MockitoExtension.class)
+class HotelBookingStatsServiceTest {
+
+    @InjectMocks
+    private HotelBookingStatsServiceImpl hotelBookingStatsService;
+    @Mock
+    private BookingAggregates bookingAggregates;
+
+    private ExecutorService committer;
+
+    @BeforeEach
+    void setUp() {
+        committer = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    void stop() {
+        committer.shutdownNow();
+    }
+
+    @Test
+    void whenRebuild_thenReturnDatabaseTotals() {
+        doReturn(Arrays.asList(
+                new HotelCurrencyTotals(1L, "EUR", 2L, 5L, BigDecimal.valueOf(300)),
+                new HotelCurrencyTotals(1L, "USD", 1L, 2L, BigDecimal.valueOf(50))))
+                .when(bookingAggregates).sumTotalsByHotelAndCurrency();
+
+        hotelBookingStatsService.rebuild();
+        HotelBookingStats stats = hotelBookingStatsService.getStats(1L);
+
+        assertThat(stats.getBookingCount()).isEqualTo(3);
+        assertThat(stats.getTotalPax()).isEqualTo(7);
+        assertThat(stats.getAmounts()).containsExactlyInAnyOrder(
+                new CurrencyAmount("EUR", BigDecimal.valueOf(300)),
+                new CurrencyAmount("USD", BigDecimal.valueOf(50)));
+    }
+
+    @Test
+    void whenBookingMovesToAnotherHotel_thenMoveItsTotals() {
+        BookingSnapshot booking = new BookingSnapshot(1L, 1L, "Nikos", "Petridis", 2,
+                BigDecimal.valueOf(100), "EUR");
+        BookingSnapshot movedBooking = new BookingSnapshot(1L, 2L, "Nikos", "Petridis", 3,
+                BigDecimal.valueOf(120), "EUR");
+
+        hotelBookingStatsService.onBookingChanged(BookingChangedEvent.created(booking));
+        hotelBookingStatsService.onBookingChanged(new BookingChangedEvent(booking, movedBooking));
+
+        assertThat(hotelBookingStatsService.getStats(1L).getBookingCount()).isZero();
+        assertThat(hotelBookingStatsService.getStats(1L).getAmounts()).isEmpty();
+        HotelBookingStats stats = hotelBookingStatsService.getStats(2L);
+        assertThat(stats.getBookingCount()).isEqualTo(1);
+        assertThat(stats.getTotalPax()).isEqualTo(3);
+        assertThat(stats.getAmounts()).containsExactly(new CurrencyAmount("EUR", BigDecimal.valueOf(120)));
+    }
+
+    @Test
+    void whenStatsDrift_thenVerifyRepairsThem() {
+        BookingSnapshot booking = new BookingSnapshot(1L, 1L, "Nikos", "Petridis", 2,
+                BigDecimal.valueOf(100), "EUR");
+        hotelBookingStatsService.onBookingChanged(BookingChangedEvent.created(booking));
+        doReturn(Collections.emptyList()).when(bookingAggregates).sumTotalsByHotelAndCurrency();
+
+        boolean consistent = hotelBookingStatsService.verify();
+
+        assertThat(consistent).isFalse();
+        assertThat(hotelBookingStatsService.getStats(1L).getBookingCount()).isZero();
+        assertThat(hotelBookingStatsService.verify()).isTrue();
+    }
+
+    @Test
+    void whenBookingCommittedWhileTotalsAreRead_thenApplyItToTheNewTotals() throws Exception {
+        AtomicReference<Future<?>> change = new AtomicReference<>();
+        doAnswer(invocation -> {
+            change.set(committer.submit(() -> hotelBookingStatsService.onBookingChanged(
+                    BookingChangedEvent.created(booking(1L)))));
+            try {
+                change.get().get(200, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // the change waits for the totals to be replaced
+            }
+            return Collections.emptyList();
+        }).when(bookingAggregates).sumTotalsByHotelAndCurrency();
+
+        hotelBookingStatsService.rebuild();
+        change.get().get(5, TimeUnit.SECONDS);
+
+        assertThat(hotelBookingStatsService.getStats(1L).getBookingCount()).isEqualTo(1);
+    }
+
+    @Test
+    void whenBookingIsCommitting_thenVerifyWaitsForItsChange() throws Exception {
+        doReturn(Collections.singletonList(new HotelCurrencyTotals(1L, "EUR", 1L, 2L, BigDecimal.valueOf(100))))
+                .when(bookingAggregates).sumTotalsByHotelAndCurrency();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            hotelBookingStatsService.onBookingChanging(BookingChangedEvent.created(booking(1L)));
+            TransactionSynchronizationUtils.triggerBeforeCommit(false);
+
+            Future<Boolean> verification = committer.submit(hotelBookingStatsService::verify);
+            assertThatThrownBy(() -> verification.get(200, TimeUnit.MILLISECONDS))
+                    .isInstanceOf(TimeoutException.class);
+
+            hotelBookingStatsService.onBookingChanged(BookingChangedEvent.created(booking(1L)));
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                    TransactionSynchronizationManager.getSynchronizations(),
+                    TransactionSynchronization.STATUS_COMMITTED);
+
+            assertThat(verification.get(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static BookingSnapshot booking(long hotelId) {
+        return new BookingSnapshot(1L, hotelId, "Nikos", "Petridis", 2, BigDecimal.valueOf(100), "EUR");
+    }
+}
@@ -1,7 +1,11 @@
 package com.booking.hotel.service;
 
+import com.booking.hotel.config.CacheConfig;
+import com.booking.hotel.dto.CurrencyAmount;
+import com.booking.hotel.dto.HotelBookingStats;
 import com.booking.hotel.entity.Booking;
 import com.booking.hotel.entity.Hotel;
+import com.booking.hotel.exception.PreconditionFailedException;
 import com.booking.hotel.exception.ResourceNotFoundException;
 import com.booking.hotel.repository.HotelRepository;
 import org.junit.jupiter.api.Assertions;
@@ -10,14 +14,27 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -31,6 +48,18 @@ class HotelServiceTest {
     private HotelRepository hotelRepository;
     @Mock
     private BookingService bookingService;
+    @Mock
+    private HotelBookingStatsService hotelBookingStatsService;
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private TableVersionService tableVersionService;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private CacheManager cacheManager;
+
+    private final Cache hotelsByName = new ConcurrentMapCache(CacheConfig.HOTELS_BY_NAME);
 
     @Test
     public void whenFindAll_thenReturnHotels() {
@@ -70,6 +99,22 @@ class HotelServiceTest {
         });
     }
 
+    @Test
+    void whenFindAfterId_thenReturnPage() {
+        Hotel hotel = Hotel.builder()
+                .id(11L)
+                .name("h1")
+                .address("kifisias")
+                .starRating(5)
+                .build();
+        List<Hotel> expectedHotels = Collections.singletonList(hotel);
+        doReturn(expectedHotels).when(hotelRepository).findHotelsAfter(10L, PageRequest.of(0, 5));
+
+        List<Hotel> actualHotels = hotelService.getHotelsAfter(10L, 5);
+
+        assertThat(actualHotels).isEqualTo(expectedHotels);
+    }
+
     @Test
     void whenFindName_thenReturnHotel() {
         Hotel hotel = Hotel.builder()
@@ -86,7 +131,7 @@ class HotelServiceTest {
     }
 
     @Test
-    void testSaveHotel() {
+    void testSaveHotel() throws PreconditionFailedException {
         Hotel hotel = Hotel.builder()
                 .id(1L)
                 .name("h1")
@@ -99,6 +144,135 @@ class HotelServiceTest {
         verify(hotelRepository, times(1)).save(hotel);
     }
 
+    @Test
+    void whenCreateHotelWithUnknownIdAndVersion_thenCreateItAsNew() throws PreconditionFailedException {
+        Hotel hotel = Hotel.builder()
+                .id(7L)
+                .name("h1")
+                .version(3L)
+                .build();
+        doReturn(Optional.empty()).when(hotelRepository).findById(7L);
+        doReturn(hotel).when(hotelRepository).save(hotel);
+
+        Hotel created = hotelService.createOrUpdateHotel(hotel);
+
+        assertThat(created.getId()).isNull();
+        assertThat(created.getVersion()).isNull();
+    }
+
+    @Test
+    void whenCreateHotelWithIdOfExistingHotel_thenUpdateIt() throws PreconditionFailedException {
+        Hotel existing = hotel(3L);
+        doReturn(Optional.of(existing)).when(hotelRepository).findById(1L);
+
+        Hotel updated = hotelService.createOrUpdateHotel(
+                Hotel.builder().id(1L).name("h2").address("patision").starRating(4).version(3L).build());
+
+        assertThat(updated).isSameAs(existing);
+        assertThat(updated.getName()).isEqualTo("h2");
+        verify(entityManager).flush();
+        verify(hotelRepository, never()).save(any());
+    }
+
+    @Test
+    void whenUpdateHotel_thenReplaceAllDetails() throws Exception {
+        Hotel existing = hotel(3L);
+        doReturn(Optional.of(existing)).when(hotelRepository).findById(1L);
+
+        Hotel updated = hotelService.updateHotel(1L, Hotel.builder().name("h2").build(), 3L);
+
+        assertThat(updated.getName()).isEqualTo("h2");
+        assertThat(updated.getAddress()).isNull();
+        assertThat(updated.getStarRating()).isNull();
+        verify(tableVersionService).hotelsChanged();
+        verify(entityManager).flush();
+    }
+
+    @Test
+    void whenUpdateStaleHotelVersion_thenPreconditionFailed() {
+        Hotel existing = hotel(4L);
+        doReturn(Optional.of(existing)).when(hotelRepository).findById(1L);
+
+        Assertions.assertThrows(PreconditionFailedException.class, () ->
+                hotelService.updateHotel(1L, Hotel.builder().name("h2").build(), 3L));
+        assertThat(existing.getName()).isEqualTo("h1");
+        verify(entityManager, never()).flush();
+    }
+
+    @Test
+    void whenUpdateMissingHotel_thenNotFound() {
+        doReturn(Optional.empty()).when(hotelRepository).findById(1L);
+
+        Assertions.assertThrows(ResourceNotFoundException.class, () ->
+                hotelService.updateHotel(1L, Hotel.builder().name("h2").build(), null));
+    }
+
+    @Test
+    void whenPatchHotel_thenChangeOnlyTheGivenDetails() throws Exception {
+        Hotel existing = hotel(3L);
+        doReturn(Optional.of(existing)).when(hotelRepository).findById(1L);
+
+        Hotel patched = hotelService.patchHotel(1L, Hotel.builder().starRating(4).build(), null);
+
+        assertThat(patched.getStarRating()).isEqualTo(4);
+        assertThat(patched.getName()).isEqualTo("h1");
+        assertThat(patched.getAddress()).isEqualTo("kifisias");
+        verify(entityManager).flush();
+    }
+
+    @Test
+    void whenPatchHotelChangedConcurrently_thenPreconditionFailed() {
+        doReturn(Optional.of(hotel(3L))).when(hotelRepository).findById(1L);
+        doThrow(new OptimisticLockException()).when(entityManager).flush();
+
+        Assertions.assertThrows(PreconditionFailedException.class, () ->
+                hotelService.patchHotel(1L, Hotel.builder().starRating(4).build(), 3L));
+    }
+
+    @Test
+    void whenGetOrCreateExistingHotel_thenReturnIt() {
+        Hotel hotel = Hotel.builder()
+                .id(1L)
+                .name("h1")
+                .build();
+        doReturn(hotel).when(hotelRepository).findHotelByName("h1");
+
+        Hotel actualHotel = hotelService.getOrCreateHotel(Hotel.builder().name("h1").build());
+
+        assertThat(actualHotel).isEqualTo(hotel);
+        verify(hotelRepository, never()).saveAndFlush(any(Hotel.class));
+    }
+
+    @Test
+    void whenGetOrCreateMissingHotel_thenCreateIt() {
+        Hotel hotel = Hotel.builder()
+                .name("h1")
+                .address("kifisias")
+                .starRating(5)
+                .build();
+        when(hotelRepository.saveAndFlush(hotel)).thenReturn(hotel);
+
+        Hotel actualHotel = hotelService.getOrCreateHotel(hotel);
+
+        assertThat(actualHotel).isEqualTo(hotel);
+        verify(hotelRepository, times(2)).findHotelByName("h1");
+    }
+
+    @Test
+    void whenGetOrCreateHotelCreatedConcurrently_thenReturnTheOtherHotel() {
+        Hotel hotel = Hotel.builder()
+                .id(1L)
+                .name("h1")
+                .build();
+        when(hotelRepository.findHotelByName("h1")).thenReturn(null, null, hotel);
+        when(hotelRepository.saveAndFlush(any(Hotel.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_hotel_name"));
+
+        Hotel actualHotel = hotelService.getOrCreateHotel(Hotel.builder().name("h1").build());
+
+        assertThat(actualHotel).isEqualTo(hotel);
+    }
+
     @Test
     void testDeleteHotel() throws ResourceNotFoundException {
         Hotel hotel = Hotel.builder()
@@ -122,7 +296,6 @@ class HotelServiceTest {
                 .address("kifisias")
                 .starRating(5)
                 .build();
-        List<Hotel> hotels = Collections.singletonList(hotel);
         Booking booking = Booking.builder()
                 .id(1L)
                 .customerName("Petros")
@@ -130,11 +303,9 @@ class HotelServiceTest {
                 .hotel(hotel)
                 .build();
         List<Booking> expectedBookings = Collections.singletonList(booking);
-        doReturn(hotels).when(hotelRepository).findBookingsByName(booking.getCustomerSurname());
-        List<Long> ids = Collections.singletonList(hotel.getId());
-        doReturn(expectedBookings).when(bookingService).getBookingsByHotels(ids);
+        doReturn(expectedBookings).when(bookingService).getBookingsByHotelName(hotel.getName());
 
-        List<Booking> actualBookings = hotelService.getBookingsByHotel(booking.getCustomerSurname());
+        List<Booking> actualBookings = hotelService.getBookingsByHotel(hotel.getName());
 
         assertThat(actualBookings).isEqualTo(expectedBookings);
     }
@@ -144,25 +315,54 @@ class HotelServiceTest {
         Hotel hotel = Hotel.builder()
                 .id(1L)
                 .name("h1")
-                .address("kifisias")
-                .starRating(5)
                 .build();
-        List<Hotel> hotels = Collections.singletonList(hotel);
-        Booking booking = Booking.builder()
+        List<CurrencyAmount> amounts = Arrays.asList(
+                new CurrencyAmount("EUR", BigDecimal.valueOf(100)),
+                new CurrencyAmount("USD", BigDecimal.valueOf(50)));
+        doReturn(hotelsByName).when(cacheManager).getCache(CacheConfig.HOTELS_BY_NAME);
+        doReturn(hotel).when(hotelRepository).findHotelByName("h1");
+        doReturn(new HotelBookingStats(1L, 2, 4, amounts)).when(hotelBookingStatsService).getStats(1L);
+
+        BigDecimal totalAmount = hotelService.getTotalBookingAmountByHotel("h1");
+
+        assertThat(totalAmount).isEqualTo(BigDecimal.valueOf(150));
+    }
+
+    @Test
+    void getTotalBookingAmountsByHotel() {
+        Hotel hotel = Hotel.builder()
                 .id(1L)
-                .customerName("Petros")
-                .customerSurname("Petridis")
-                .priceAmount(BigDecimal.valueOf(100))
-                .currency("EUR")
-                .hotel(hotel)
+                .name("h1")
                 .build();
-        List<Booking> expectedBookings = Collections.singletonList(booking);
-        doReturn(hotels).when(hotelRepository).findBookingsByName(booking.getCustomerSurname());
-        List<Long> ids = Collections.singletonList(hotel.getId());
-        doReturn(expectedBookings).when(bookingService).getBookingsByHotels(ids);
+        List<CurrencyAmount> expectedAmounts = Collections.singletonList(
+                new CurrencyAmount("EUR", BigDecimal.valueOf(100)));
+        doReturn(hotelsByName).when(cacheManager).getCache(CacheConfig.HOTELS_BY_NAME);
+        doReturn(hotel).when(hotelRepository).findHotelByName("h1");
+        doReturn(new HotelBookingStats(1L, 1, 2, expectedAmounts)).when(hotelBookingStatsService).getStats(1L);
+
+        hotelService.getTotalBookingAmountsByHotel("h1");
+        List<CurrencyAmount> actualAmounts = hotelService.getTotalBookingAmountsByHotel("h1");
 
-        BigDecimal totalAmount = hotelService.getTotalBookingAmountByHotel(booking.getCustomerSurname());
+        assertThat(actualAmounts).isEqualTo(expectedAmounts);
+        verify(hotelRepository, times(1)).findHotelByName("h1");
+    }
 
-        assertThat(totalAmount).isEqualTo((booking.getPriceAmount()));
+    @Test
+    void getTotalBookingAmountsByUnknownHotel() {
+        doReturn(hotelsByName).when(cacheManager).getCache(CacheConfig.HOTELS_BY_NAME);
+
+        List<CurrencyAmount> actualAmounts = hotelService.getTotalBookingAmountsByHotel("unknown");
+
+        assertThat(actualAmounts).isEmpty();
+    }
+
+    private static Hotel hotel(long version) {
+        return Hotel.builder()
+                .id(1L)
+                .name("h1")
+                .address("kifisias")
+                .starRating(5)
+                .version(version)
+                .build();
     }
-}
\ No newline at end of file
+}
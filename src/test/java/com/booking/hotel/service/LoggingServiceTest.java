@@ -0,0 +1,68 @@
+package com.booking.hotel.service;
+
+import com.booking.hotel.logging.AsyncLogWriter;
+import com.booking.hotel.logging.LogEvent;
+import com.booking.hotel.logging.LogMode;
+import com.booking.hotel.logging.LoggingPolicies;
+import com.booking.hotel.logging.LoggingProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class LoggingServiceTest {
+
+    @Mock
+    private AsyncLogWriter asyncLogWriter;
+
+    private LoggingServiceImpl loggingService;
+
+    @BeforeEach
+    void setUp() {
+        LoggingProperties loggingProperties = new LoggingProperties();
+        loggingProperties.setDefaultMode(LogMode.FULL);
+        loggingProperties.setMaxBodyLength(10);
+        loggingService = new LoggingServiceImpl(asyncLogWriter, new LoggingPolicies(loggingProperties),
+                loggingProperties);
+    }
+
+    @Test
+    void whenRequestLogged_thenCaptureItsBodyRendered() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/bookings/batch");
+        loggingService.startRequest(request);
+
+        loggingService.logRequest(request, Arrays.asList("first", "second", "third"));
+
+        assertThat(offeredEvent().getBody()).isEqualTo("[first, se...(truncated) (3 elements)");
+    }
+
+    @Test
+    void whenResponseLogged_thenCaptureItsBodyRendered() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/bookings");
+        loggingService.startRequest(request);
+        StringBuilder body = new StringBuilder("[]");
+
+        loggingService.captureResponseBody(request, body);
+        body.append(" changed after the response");
+        loggingService.logResponse(request, new MockHttpServletResponse(), null);
+
+        assertThat(offeredEvent().getBody()).isEqualTo("[]");
+    }
+
+    private LogEvent offeredEvent() {
+        ArgumentCaptor<LogEvent> event = ArgumentCaptor.forClass(LogEvent.class);
+        verify(asyncLogWriter, times(1)).offer(event.capture());
+        return event.getValue();
+    }
+}
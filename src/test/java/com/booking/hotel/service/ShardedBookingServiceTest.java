@@ -0,0 +1,151 @@
+package com.booking.hotel.service;
+
+import com.booking.hotel.dto.BookingBatchResult;
+import com.booking.hotel.entity.Booking;
+import com.booking.hotel.entity.Hotel;
+import com.booking.hotel.event.BookingChangedEvent;
+import com.booking.hotel.exception.PreconditionFailedException;
+import com.booking.hotel.execution.FanOutExecutor;
+import com.booking.hotel.repository.HotelRepository;
+import com.booking.hotel.sharding.BookingSequence;
+import com.booking.hotel.sharding.ShardedBookingRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ShardedBookingServiceTest {
+
+    @InjectMocks
+    private ShardedBookingServiceImpl bookingService;
+    @Mock
+    private ShardedBookingRepository shardedBookingRepository;
+    @Mock
+    private BookingSequence bookingSequence;
+    @Mock
+    private HotelRepository hotelRepository;
+    @Mock
+    private HotelService hotelService;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private SurnameIndexService surnameIndexService;
+    @Mock
+    private TableVersionService tableVersionService;
+    @Mock
+    private FanOutExecutor fanOutExecutor;
+
+    @Test
+    void whenCreateBooking_thenPublishItsEventBeforeItIsWritten() throws Exception {
+        Booking booking = booking(null, 1L);
+        when(bookingSequence.nextId()).thenReturn(51L);
+
+        Booking created = bookingService.createOrUpdateBooking(booking);
+
+        assertThat(created.getId()).isEqualTo(51L);
+        assertThat(created.getVersion()).isEqualTo(0L);
+        InOrder order = inOrder(eventPublisher, shardedBookingRepository, tableVersionService);
+        order.verify(eventPublisher).publishEvent(any(BookingChangedEvent.class));
+        order.verify(shardedBookingRepository).insert(Collections.singletonList(booking));
+        order.verify(tableVersionService).bookingsChanged();
+    }
+
+    @Test
+    void whenUpdatedConcurrently_thenFailAndKeepBookingsVersion() {
+        Booking booking = booking(1L, 1L);
+        booking.setVersion(3L);
+        when(shardedBookingRepository.findById(1L)).thenReturn(Optional.of(booking));
+        doReturn(Collections.singletonList(hotel(1L))).when(hotelRepository).findAllById(Collections.singletonList(1L));
+        when(shardedBookingRepository.update(booking, 1L, 3L)).thenReturn(false);
+
+        Assertions.assertThrows(PreconditionFailedException.class,
+                () -> bookingService.updateBooking(1L, booking(null, 1L), 3L));
+
+        verify(tableVersionService, never()).bookingsChanged();
+    }
+
+    @Test
+    void whenPatchBookingToAnotherHotel_thenMoveItFromItsPreviousHotel() throws Exception {
+        Booking booking = booking(1L, 1L);
+        booking.setVersion(3L);
+        when(shardedBookingRepository.findById(1L)).thenReturn(Optional.of(booking));
+        doReturn(Collections.singletonList(hotel(1L))).when(hotelRepository).findAllById(Collections.singletonList(1L));
+        when(shardedBookingRepository.update(booking, 1L, 3L)).thenReturn(true);
+
+        Booking updated = bookingService.patchBooking(1L, Booking.builder().hotel(hotel(2L)).build(), 3L);
+
+        assertThat(updated.getHotel().getId()).isEqualTo(2L);
+        assertThat(updated.getCustomerSurname()).isEqualTo("Petridis");
+        assertThat(updated.getVersion()).isEqualTo(4L);
+        verify(tableVersionService, times(1)).bookingsChanged();
+    }
+
+    @Test
+    void whenCreateBatch_thenInsertTheBookingsOfAllTheHotelsAtOnce() {
+        Booking first = Booking.builder().customerSurname("Petridis").hotel(Hotel.builder().name("h1").build())
+                .build();
+        Booking second = Booking.builder().customerSurname("Georgiou").hotel(Hotel.builder().name("h2").build())
+                .build();
+        Booking withoutHotel = Booking.builder().customerSurname("Papadakis").build();
+        Hotel h1 = Hotel.builder().id(1L).name("h1").build();
+        Hotel h2 = Hotel.builder().id(2L).name("h2").build();
+        doReturn(Arrays.asList(h1, h2)).when(hotelRepository).findHotelsByNameIn(any());
+        when(bookingSequence.nextId()).thenReturn(51L, 52L);
+
+        List<BookingBatchResult> results = bookingService.createBookings(Arrays.asList(first, second, withoutHotel));
+
+        assertThat(results).extracting(BookingBatchResult::getId).containsExactly(51L, 52L, null);
+        assertThat(first.getHotel()).isEqualTo(h1);
+        assertThat(second.getHotel()).isEqualTo(h2);
+        verify(shardedBookingRepository, times(1)).insert(Arrays.asList(first, second));
+        verify(eventPublisher, times(2)).publishEvent(any(BookingChangedEvent.class));
+        verify(tableVersionService, times(1)).bookingsChanged();
+    }
+
+    @Test
+    void whenFindByHotelName_thenAttachTheHotel() {
+        Hotel hotel = hotel(1L);
+        when(hotelService.getHotelByName("h1")).thenReturn(hotel);
+        when(shardedBookingRepository.findBookingsByHotelIds(Collections.singletonList(1L)))
+                .thenReturn(Collections.singletonList(booking(1L, 1L)));
+
+        List<Booking> bookings = bookingService.getBookingsByHotelName("h1");
+
+        assertThat(bookings).extracting(Booking::getHotel).containsExactly(hotel);
+    }
+
+    private static Booking booking(Long id, long hotelId) {
+        return Booking.builder()
+                .id(id)
+                .customerName("Petros")
+                .customerSurname("Petridis")
+                .priceAmount(BigDecimal.valueOf(100))
+                .currency("EUR")
+                .hotel(Hotel.builder().id(hotelId).build())
+                .build();
+    }
+
+    private static Hotel hotel(long id) {
+        return Hotel.builder().id(id).name("h" + id).build();
+    }
+}
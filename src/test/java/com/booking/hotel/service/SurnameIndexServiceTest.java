@@ -0,0 +1,124 @@
+package com.booking.hotel.service;
+
+import com.booking.hotel.dto.SurnameHotelCount;
+import com.booking.hotel.event.BookingChangedEvent;
+import com.booking.hotel.event.BookingSnapshot;
+import com.booking.hotel.repository.BookingAggregates;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+
+@ExtendWith(MockitoExtension.class)
+class SurnameIndexServiceTest {
+
+    @InjectMocks
+    private SurnameIndexServiceImpl surnameIndexService;
+    @Mock
+    private BookingAggregates bookingAggregates;
+
+    @Test
+    void whenRebuild_thenFindDistinctHotelsByExactSurnameAndPrefix() {
+        doReturn(Arrays.asList(
+                new SurnameHotelCount("Papadopoulos", 2L, 3L),
+                new SurnameHotelCount("Papadakis", 1L, 1L),
+                new SurnameHotelCount("Papadakis", 2L, 1L),
+                new SurnameHotelCount("Petridis", 3L, 1L)))
+                .when(bookingAggregates).countBookingsBySurnameAndHotel();
+
+        surnameIndexService.rebuild();
+
+        assertThat(surnameIndexService.findHotelIds("Papadakis")).containsExactly(1L, 2L);
+        assertThat(surnameIndexService.findHotelIds("Papadopoulos")).containsExactly(2L);
+        assertThat(surnameIndexService.findHotelIdsByPrefix("Papad")).containsExactly(1L, 2L);
+        assertThat(surnameIndexService.findHotelIdsByPrefix("P")).containsExactly(1L, 2L, 3L);
+        assertThat(surnameIndexService.findHotelIdsByPrefix("Pe")).containsExactly(3L);
+        assertThat(surnameIndexService.findHotelIds("Georgiou")).isEmpty();
+    }
+
+    @Test
+    void whenSurnameStoredInOtherCase_thenFindItByPrefixOnly() {
+        doReturn(Arrays.asList(
+                new SurnameHotelCount("Petridis", 1L, 1L),
+                new SurnameHotelCount("PETRIDIS", 2L, 1L)))
+                .when(bookingAggregates).countBookingsBySurnameAndHotel();
+
+        surnameIndexService.rebuild();
+
+        assertThat(surnameIndexService.findHotelIds("Petridis")).containsExactly(1L);
+        assertThat(surnameIndexService.findHotelIds("PETRIDIS")).containsExactly(2L);
+        assertThat(surnameIndexService.findHotelIds("petridis")).isEmpty();
+        assertThat(surnameIndexService.findHotelIdsByPrefix("petr")).containsExactly(1L, 2L);
+        assertThat(surnameIndexService.findHotelIdsByPrefix("Petridis")).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void whenBookingCommittedWhileIndexIsRead_thenApplyItToTheNewIndex() throws Exception {
+        ExecutorService committer = Executors.newSingleThreadExecutor();
+        try {
+            AtomicReference<Future<?>> change = new AtomicReference<>();
+            doAnswer(invocation -> {
+                change.set(committer.submit(() -> surnameIndexService.onBookingChanged(BookingChangedEvent.created(
+                        new BookingSnapshot(1L, 1L, "Nikos", "Petridis", 2, BigDecimal.valueOf(100), "EUR")))));
+                try {
+                    change.get().get(200, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // the change waits for the index to be replaced
+                }
+                return Collections.emptyList();
+            }).when(bookingAggregates).countBookingsBySurnameAndHotel();
+
+            surnameIndexService.rebuild();
+            change.get().get(5, TimeUnit.SECONDS);
+
+            assertThat(surnameIndexService.findHotelIds("Petridis")).containsExactly(1L);
+        } finally {
+            committer.shutdownNow();
+        }
+    }
+
+    @Test
+    void whenLastBookingOfHotelChangesSurname_thenMoveHotel() {
+        BookingSnapshot booking = new BookingSnapshot(1L, 1L, "Nikos", "Petridis", 2,
+                BigDecimal.valueOf(100), "EUR");
+        BookingSnapshot renamedBooking = new BookingSnapshot(1L, 1L, "Nikos", "Georgiou", 2,
+                BigDecimal.valueOf(100), "EUR");
+
+        surnameIndexService.onBookingChanged(BookingChangedEvent.created(booking));
+        assertThat(surnameIndexService.findHotelIds("Petridis")).containsExactly(1L);
+
+        surnameIndexService.onBookingChanged(new BookingChangedEvent(booking, renamedBooking));
+
+        assertThat(surnameIndexService.findHotelIds("Petridis")).isEmpty();
+        assertThat(surnameIndexService.findHotelIds("Georgiou")).containsExactly(1L);
+    }
+
+    @Test
+    void whenOneOfManyBookingsDeleted_thenKeepHotel() {
+        BookingSnapshot booking = new BookingSnapshot(1L, 1L, "Nikos", "Petridis", 2,
+                BigDecimal.valueOf(100), "EUR");
+        BookingSnapshot otherBooking = new BookingSnapshot(2L, 1L, "Nikos", "Petridis", 2,
+                BigDecimal.valueOf(100), "EUR");
+        surnameIndexService.onBookingChanged(BookingChangedEvent.created(booking));
+        surnameIndexService.onBookingChanged(BookingChangedEvent.created(otherBooking));
+
+        surnameIndexService.onBookingChanged(BookingChangedEvent.deleted(booking));
+
+        assertThat(surnameIndexService.findHotelIds("Petridis")).containsExactly(1L);
+    }
+}
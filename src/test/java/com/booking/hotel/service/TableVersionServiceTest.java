@@ -0,0 +1,69 @@
+package com.booking.hotel.service;
+
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TableVersionServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private TableVersionServiceImpl tableVersionService;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:versions-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        tableVersionService = new TableVersionServiceImpl(jdbcTemplate, 60_000);
+    }
+
+    @Test
+    void whenWriteCommits_thenIncreaseVersionOncePerTable() {
+        long hotels = tableVersionService.getHotelsVersion();
+        long bookings = tableVersionService.getBookingsVersion();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            tableVersionService.bookingsChanged();
+            tableVersionService.bookingsChanged();
+            tableVersionService.hotelsChanged();
+        });
+
+        assertThat(tableVersionService.getBookingsVersion()).isEqualTo(bookings + 1);
+        assertThat(tableVersionService.getHotelsVersion()).isEqualTo(hotels + 1);
+    }
+
+    @Test
+    void whenWriteRollsBack_thenKeepVersion() {
+        long bookings = tableVersionService.getBookingsVersion();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            tableVersionService.bookingsChanged();
+            status.setRollbackOnly();
+        });
+
+        assertThat(tableVersionService.getBookingsVersion()).isEqualTo(bookings);
+    }
+
+    @Test
+    void whenOtherNodeWrites_thenSeeItAfterTheCacheExpires() {
+        long hotels = tableVersionService.getHotelsVersion();
+        TableVersionServiceImpl otherNode = new TableVersionServiceImpl(jdbcTemplate, 0);
+
+        transactionTemplate.executeWithoutResult(status -> otherNode.hotelsChanged());
+
+        assertThat(otherNode.getHotelsVersion()).isEqualTo(hotels + 1);
+        assertThat(tableVersionService.getHotelsVersion()).isEqualTo(hotels);
+        assertThat(new TableVersionServiceImpl(jdbcTemplate, 0).getHotelsVersion()).isEqualTo(hotels + 1);
+    }
+}
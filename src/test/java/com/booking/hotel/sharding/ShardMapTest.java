@@ -0,0 +1,56 @@
+package com.booking.hotel.sharding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardMapTest {
+
+    private static final int HOTELS = 10_000;
+
+    @Test
+    void whenHotelsAssigned_thenSpreadThemEvenly() {
+        ShardMap shardMap = new ShardMap(Arrays.asList("shard-0", "shard-1", "shard-2"), 128);
+
+        Map<String, Integer> hotelsByShard = new HashMap<>();
+        for (long hotelId = 1; hotelId <= HOTELS; hotelId++) {
+            hotelsByShard.merge(shardMap.shardOf(hotelId), 1, Integer::sum);
+        }
+
+        assertThat(hotelsByShard).hasSize(3);
+        assertThat(hotelsByShard.values()).allSatisfy(hotels -> assertThat(hotels).isBetween(2_500, 4_200));
+    }
+
+    @Test
+    void whenShardAdded_thenOnlyMoveHotelsToIt() {
+        ShardMap shardMap = new ShardMap(Arrays.asList("shard-0", "shard-1"), 128);
+        ShardMap extended = shardMap.withShard("shard-2");
+
+        int moved = 0;
+        for (long hotelId = 1; hotelId <= HOTELS; hotelId++) {
+            String shard = extended.shardOf(hotelId);
+            if (!shard.equals(shardMap.shardOf(hotelId))) {
+                assertThat(shard).isEqualTo("shard-2");
+                moved++;
+            }
+        }
+
+        assertThat(moved).isBetween(HOTELS / 5, HOTELS / 2);
+    }
+
+    @Test
+    void whenHotelsGrouped_thenGroupEveryHotelOnceUnderItsShard() {
+        ShardMap shardMap = new ShardMap(Arrays.asList("shard-0", "shard-1"), 128);
+
+        Map<String, List<Long>> hotelIdsByShard = shardMap.groupByShard(Arrays.asList(1L, 2L, 3L, 2L, 4L));
+
+        assertThat(hotelIdsByShard.values().stream().mapToInt(List::size).sum()).isEqualTo(4);
+        hotelIdsByShard.forEach((shard, hotelIds) ->
+                hotelIds.forEach(hotelId -> assertThat(shardMap.shardOf(hotelId)).isEqualTo(shard)));
+    }
+}
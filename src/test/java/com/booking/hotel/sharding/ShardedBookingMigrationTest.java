@@ -0,0 +1,76 @@
+package com.booking.hotel.sharding;
+
+import com.booking.hotel.entity.Booking;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class ShardedBookingMigrationTest {
+
+    private JdbcTemplate mainJdbc;
+    private ShardedBookingRepository shardedBookingRepository;
+    private ShardedBookingMigration migration;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource mainDataSource = new JdbcDataSource();
+        mainDataSource.setURL("jdbc:h2:mem:main-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        Flyway.configure().dataSource(mainDataSource).locations("classpath:db/migration").load().migrate();
+        mainJdbc = new JdbcTemplate(mainDataSource);
+        mainJdbc.update("INSERT INTO hotel (id, name) VALUES (NEXT VALUE FOR hotel_seq, 'Hra')");
+        for (String surname : new String[]{"Petridis", "Georgiou", "Papadakis"}) {
+            mainJdbc.update("INSERT INTO booking (id, customer_name, customer_surname, pax, price_amount, currency, " +
+                    "hotel_id) VALUES (NEXT VALUE FOR booking_seq, 'Nikos', ?, 2, 100, 'EUR', " +
+                    "(SELECT id FROM hotel WHERE name = 'Hra'))", surname);
+        }
+        JdbcDataSource shardDataSource = new JdbcDataSource();
+        shardDataSource.setURL("jdbc:h2:mem:shard-0-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        Flyway.configure().dataSource(shardDataSource).locations("classpath:db/shard").load().migrate();
+        Map<String, DataSource> dataSources = Collections.singletonMap("shard-0", shardDataSource);
+        shardedBookingRepository = new ShardedBookingRepository(dataSources,
+                new ShardMap(Collections.singletonList("shard-0"), 128), mock(ShardRingStore.class),
+                Executors.newSingleThreadExecutor());
+        migration = new ShardedBookingMigration(shardedBookingRepository, mainJdbc);
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        shardedBookingRepository.close();
+    }
+
+    @Test
+    void whenMigrated_thenMoveTheBookingsOfTheMainDatabaseToTheShards() {
+        migration.migrate();
+        migration.migrate();
+
+        assertThat(mainJdbc.queryForObject("SELECT COUNT(*) FROM booking", Long.class)).isZero();
+        assertThat(shardedBookingRepository.findBookingsAfter(null, 0, Long.MAX_VALUE, 10))
+                .extracting(Booking::getCustomerSurname)
+                .containsExactly("Petridis", "Georgiou", "Papadakis");
+    }
+
+    @Test
+    void whenMigrated_thenGiveNewBookingsTheIdsAfterTheMovedOnes() {
+        migration.migrate();
+        BookingSequence sequence = new BookingSequence(mainJdbc);
+
+        long first = sequence.nextId();
+        long second = sequence.nextId();
+
+        assertThat(shardedBookingRepository.findBookingsAfter(null, 0, Long.MAX_VALUE, 10))
+                .allSatisfy(booking -> assertThat(booking.getId()).isLessThan(first));
+        assertThat(second).isEqualTo(first + 1);
+    }
+}
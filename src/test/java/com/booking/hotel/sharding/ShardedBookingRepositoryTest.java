@@ -0,0 +1,259 @@
+package com.booking.hotel.sharding;
+
+import com.booking.hotel.dto.HotelCurrencyTotals;
+import com.booking.hotel.dto.SurnameHotelCount;
+import com.booking.hotel.entity.Booking;
+import com.booking.hotel.entity.Hotel;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardedBookingRepositoryTest {
+
+    private static final int HOTELS = 20;
+    private static final int BOOKINGS_PER_HOTEL = 5;
+
+    private ShardRingStore ringStore;
+    private ShardedBookingRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, DataSource> dataSources = new LinkedHashMap<>();
+        for (String shard : Arrays.asList("shard-0", "shard-1", "shard-2")) {
+            JdbcDataSource dataSource = new JdbcDataSource();
+            dataSource.setURL("jdbc:h2:mem:" + shard + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+            Flyway.configure().dataSource(dataSource).locations("classpath:db/shard").load().migrate();
+            dataSources.put(shard, dataSource);
+        }
+        JdbcDataSource mainDataSource = new JdbcDataSource();
+        mainDataSource.setURL("jdbc:h2:mem:main-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        Flyway.configure().dataSource(mainDataSource).locations("classpath:db/migration").load().migrate();
+        ringStore = new ShardRingStore(new JdbcTemplate(mainDataSource));
+        repository = new ShardedBookingRepository(dataSources,
+                new ShardMap(ringStore.load(Arrays.asList("shard-0", "shard-1")), 128), ringStore,
+                Executors.newFixedThreadPool(2));
+        List<Booking> bookings = new ArrayList<>();
+        long id = 0;
+        for (long hotelId = 1; hotelId <= HOTELS; hotelId++) {
+            for (int i = 0; i < BOOKINGS_PER_HOTEL; i++) {
+                bookings.add(booking(++id, hotelId, i % 2 == 0 ? "Petridis" : "Georgiou"));
+            }
+        }
+        repository.insert(bookings);
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        repository.close();
+    }
+
+    @Test
+    void whenInserted_thenStoreEveryHotelOnItsShardOnly() {
+        Map<String, Long> counts = repository.countByShard();
+
+        assertThat(counts.get("shard-0") + counts.get("shard-1")).isEqualTo(HOTELS * BOOKINGS_PER_HOTEL);
+        assertThat(counts.get("shard-0")).isPositive();
+        assertThat(counts.get("shard-1")).isPositive();
+        assertThat(counts.get("shard-2")).isZero();
+    }
+
+    @Test
+    void whenFindByHotels_thenReturnTheirBookingsFromTheirShards() {
+        List<Booking> bookings = repository.findBookingsByHotelIds(Arrays.asList(3L, 7L, 11L));
+
+        assertThat(bookings).hasSize(3 * BOOKINGS_PER_HOTEL);
+        assertThat(bookings).extracting(booking -> booking.getHotel().getId()).containsOnly(3L, 7L, 11L);
+        assertThat(bookings).isSortedAccordingTo((a, b) -> Long.compare(a.getId(), b.getId()));
+    }
+
+    @Test
+    void whenPagedBySurname_thenMergeTheShardsInIdOrder() {
+        List<Long> ids = new ArrayList<>();
+        long after = 0;
+        List<Booking> page;
+        do {
+            page = repository.findBookingsByCustomerSurname("Petridis", after, 7);
+            page.forEach(booking -> ids.add(booking.getId()));
+            if (!page.isEmpty()) {
+                after = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == 7);
+
+        List<Long> expected = LongStream.rangeClosed(1, HOTELS * BOOKINGS_PER_HOTEL)
+                .filter(id -> (id - 1) % BOOKINGS_PER_HOTEL % 2 == 0)
+                .boxed()
+                .collect(Collectors.toList());
+        assertThat(ids).isEqualTo(expected);
+    }
+
+    @Test
+    void whenPagedByHotel_thenReturnTheBookingsBelowTheUpperId() {
+        List<Booking> page = repository.findBookingsAfter(2L, 6L, 9L, 10);
+
+        assertThat(page).extracting(Booking::getId).containsExactly(7L, 8L);
+    }
+
+    @Test
+    void whenShardAdded_thenMoveItsHotelsAndKeepAllBookings() {
+        ShardMap extended = repository.getShardMap().withShard("shard-2");
+
+        long moved = repository.rebalance(extended);
+
+        Map<String, Long> counts = repository.countByShard();
+        assertThat(moved).isPositive();
+        assertThat(counts.get("shard-2")).isEqualTo(moved);
+        assertThat(counts.values().stream().mapToLong(Long::longValue).sum())
+                .isEqualTo(HOTELS * BOOKINGS_PER_HOTEL);
+        assertThat(repository.findBookingsAfter(null, 0, Long.MAX_VALUE, 1000))
+                .hasSize(HOTELS * BOOKINGS_PER_HOTEL);
+        for (long hotelId = 1; hotelId <= HOTELS; hotelId++) {
+            assertThat(repository.findBookingsByHotelIds(Arrays.asList(hotelId))).hasSize(BOOKINGS_PER_HOTEL);
+        }
+    }
+
+    @Test
+    void whenShardAdded_thenKeepTheRingAfterARestart() {
+        repository.rebalance(repository.getShardMap().withShard("shard-2"));
+
+        assertThat(ringStore.load(Arrays.asList("shard-0", "shard-1")))
+                .containsExactly("shard-0", "shard-1", "shard-2");
+    }
+
+    @Test
+    void whenUpdatedWithItsVersion_thenStoreTheNewVersion() {
+        Booking booking = booking(1L, 1L, "Papadakis");
+        booking.setVersion(1L);
+
+        assertThat(repository.update(booking, 1L, 0L)).isTrue();
+
+        Booking stored = repository.findById(1L).orElseThrow(IllegalStateException::new);
+        assertThat(stored.getCustomerSurname()).isEqualTo("Papadakis");
+        assertThat(stored.getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    void whenUpdatedWithAnotherVersion_thenKeepTheBooking() {
+        Booking booking = booking(1L, 1L, "Papadakis");
+        booking.setVersion(6L);
+
+        assertThat(repository.update(booking, 1L, 5L)).isFalse();
+
+        assertThat(repository.findById(1L).map(Booking::getCustomerSurname)).hasValue("Petridis");
+    }
+
+    @Test
+    void whenMovedToAHotelOfAnotherShard_thenStoreItOnTheNewShardOnly() {
+        long otherHotelId = LongStream.rangeClosed(2, HOTELS)
+                .filter(hotelId -> !repository.getShardMap().shardOf(hotelId)
+                        .equals(repository.getShardMap().shardOf(1L)))
+                .findFirst()
+                .orElseThrow(IllegalStateException::new);
+        Booking booking = booking(1L, otherHotelId, "Petridis");
+        booking.setVersion(1L);
+
+        assertThat(repository.update(booking, 1L, 0L)).isTrue();
+
+        assertThat(repository.findBookingsByHotelIds(Collections.singletonList(1L)))
+                .extracting(Booking::getId)
+                .doesNotContain(1L);
+        assertThat(repository.findBookingsByHotelIds(Collections.singletonList(otherHotelId)))
+                .extracting(Booking::getId)
+                .contains(1L);
+        assertThat(repository.countByShard().values().stream().mapToLong(Long::longValue).sum())
+                .isEqualTo(HOTELS * BOOKINGS_PER_HOTEL);
+    }
+
+    @Test
+    void whenDeletedWithAnotherVersion_thenKeepTheBooking() {
+        assertThat(repository.delete(1L, 1L, 3L)).isFalse();
+        assertThat(repository.delete(2L, 1L, 0L)).isTrue();
+
+        assertThat(repository.findBookingsByHotelIds(Collections.singletonList(1L)))
+                .extracting(Booking::getId)
+                .contains(1L)
+                .doesNotContain(2L);
+    }
+
+    @Test
+    void whenWrittenWithASynchronization_thenCommitJustBeforeIt() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            repository.insert(Collections.singletonList(booking(1000L, 1L, "Papadakis")));
+            assertThat(repository.findById(1000L)).isEmpty();
+
+            TransactionSynchronizationUtils.triggerBeforeCommit(false);
+            assertThat(repository.findById(1000L)).isPresent();
+
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                    TransactionSynchronizationManager.getSynchronizations(),
+                    TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void whenSynchronizationRolledBack_thenDiscardTheWrite() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            repository.insert(Collections.singletonList(booking(1000L, 1L, "Papadakis")));
+
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                    TransactionSynchronizationManager.getSynchronizations(),
+                    TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(repository.findById(1000L)).isEmpty();
+    }
+
+    @Test
+    void whenAggregated_thenCountTheBookingsOfAllTheShards() {
+        repository.rebalance(repository.getShardMap().withShard("shard-2"));
+
+        List<HotelCurrencyTotals> totals = repository.sumTotalsByHotelAndCurrency();
+        List<SurnameHotelCount> counts = repository.countBookingsBySurnameAndHotel();
+
+        assertThat(totals).hasSize(HOTELS);
+        assertThat(totals).extracting(HotelCurrencyTotals::getBookingCount).containsOnly((long) BOOKINGS_PER_HOTEL);
+        assertThat(totals).extracting(HotelCurrencyTotals::getAmount)
+                .containsOnly(BigDecimal.valueOf(100).multiply(BigDecimal.valueOf(BOOKINGS_PER_HOTEL)).setScale(2));
+        assertThat(counts.stream().mapToLong(SurnameHotelCount::getBookingCount).sum())
+                .isEqualTo(HOTELS * BOOKINGS_PER_HOTEL);
+    }
+
+    private static Booking booking(long id, long hotelId, String surname) {
+        return Booking.builder()
+                .id(id)
+                .customerName("Nikos")
+                .customerSurname(surname)
+                .pax(2)
+                .priceAmount(BigDecimal.valueOf(100))
+                .currency("EUR")
+                .hotel(Hotel.builder().id(hotelId).build())
+                .version(0L)
+                .build();
+    }
+}